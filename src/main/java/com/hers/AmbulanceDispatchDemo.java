@@ -152,7 +152,8 @@ public class AmbulanceDispatchDemo {
         int emergencyNode = graph.findNearestNode(emergencyLat, emergencyLon);
 
         for (Ambulance ambulance : available) {
-            int ambulanceNode = graph.findNearestNode(ambulance.currentLat, ambulance.currentLon);
+            Ambulance.Position position = ambulance.getPosition();
+            int ambulanceNode = graph.findNearestNode(position.lat, position.lon);
             PathResult path = aStar.findPath(ambulanceNode, emergencyNode);
             
             if (path.isPathFound()) {
@@ -0,0 +1,80 @@
+package com.hers;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.GHUtility;
+import com.hers.model.*;
+import com.hers.simulation.DispatchSimulation;
+
+import java.util.*;
+
+/**
+ * Runs a simulated day of dispatch load against the real routing and dispatch code
+ *
+ * Usage: DispatchSimulationDemo [ambulances] [arrivalsPerHour] [hours]
+ */
+public class DispatchSimulationDemo {
+
+    public static void main(String[] args) {
+        int ambulanceCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        double arrivalsPerHour = args.length > 1 ? Double.parseDouble(args[1]) : 250;
+        double hours = args.length > 2 ? Double.parseDouble(args[2]) : 24;
+
+        System.out.println("╔═══════════════════════════════════════════════════╗");
+        System.out.println("║  HERS - Dispatch Load Simulation                 ║");
+        System.out.println("╚═══════════════════════════════════════════════════╝\n");
+
+        System.out.println("📍 Loading Karachi map...");
+        GraphHopper hopper = loadGraphHopper();
+        GraphExtractor graph = new GraphExtractor(hopper);
+        HospitalDatabase hospitals = new HospitalDatabase();
+
+        DispatchSimulation.Config config = new DispatchSimulation.Config();
+        config.arrivalsPerHour = arrivalsPerHour;
+        config.durationHours = hours;
+
+        AmbulanceFleet fleet = createFleet(graph, config, ambulanceCount);
+        System.out.printf("✅ %d ambulances, %.0f calls/hour, %.1f hours%n", ambulanceCount, arrivalsPerHour, hours);
+
+        DispatchSimulation simulation = new DispatchSimulation(graph, fleet, hospitals.getAllHospitals(), config);
+        DispatchSimulation.Report report = simulation.run();
+        report.print();
+    }
+
+    /**
+     * Spread ambulances over stations at road locations inside the service area,
+     * 5 units per station with a BASIC/ADVANCED/CRITICAL mix
+     */
+    private static AmbulanceFleet createFleet(GraphExtractor graph, DispatchSimulation.Config config, int count) {
+        AmbulanceFleet fleet = new AmbulanceFleet(false);
+        Random random = new Random(config.seed + 1);
+        Ambulance.AmbulanceType[] mix = {
+            Ambulance.AmbulanceType.BASIC, Ambulance.AmbulanceType.BASIC, Ambulance.AmbulanceType.ADVANCED,
+            Ambulance.AmbulanceType.ADVANCED, Ambulance.AmbulanceType.CRITICAL
+        };
+
+        Node station = null;
+        for (int i = 0; i < count; i++) {
+            if (i % mix.length == 0) {
+                double lat = config.minLat + random.nextDouble() * (config.maxLat - config.minLat);
+                double lon = config.minLon + random.nextDouble() * (config.maxLon - config.minLon);
+                station = graph.getNode(graph.findNearestNode(lat, lon));
+            }
+            fleet.addAmbulance(String.format("SIM-AMB-%03d", i + 1),
+                "Station " + (i / mix.length + 1), station.lat, station.lon, mix[i % mix.length]);
+        }
+        return fleet;
+    }
+
+    private static GraphHopper loadGraphHopper() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("pakistan-251202.osm.pbf");
+        hopper.setGraphHopperLocation("graph-cache");
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(
+            new Profile("car_profile").setCustomModel(GHUtility.loadCustomModelFromJar("car.json"))
+        );
+        hopper.importOrLoad();
+        return hopper;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hers;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+import com.graphhopper.util.GHUtility;
+import com.hers.model.*;
+import com.hers.simulation.IncidentReplay;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a historical incident log (NDJSON) against the Karachi fleet
+ *
+ * Usage: IncidentReplayDemo <log.ndjson> [speedFactor, 0 = as fast as possible] [threads]
+ */
+public class IncidentReplayDemo {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: IncidentReplayDemo <log.ndjson> [speedFactor] [threads]");
+            return;
+        }
+        File log = new File(args[0]);
+        IncidentReplay.Config config = new IncidentReplay.Config();
+        if (args.length > 1) {
+            config.speedFactor = Double.parseDouble(args[1]);
+        }
+        if (args.length > 2) {
+            config.threads = Integer.parseInt(args[2]);
+        }
+
+        System.out.println("╔═══════════════════════════════════════════════════╗");
+        System.out.println("║  HERS - Incident Log Replay                      ║");
+        System.out.println("╚═══════════════════════════════════════════════════╝\n");
+
+        System.out.println("📍 Loading Karachi map...");
+        GraphHopper hopper = loadGraphHopper();
+        GraphExtractor graph = new GraphExtractor(hopper);
+        AmbulanceFleet fleet = new AmbulanceFleet();
+        HospitalDatabase hospitals = new HospitalDatabase();
+
+        System.out.printf("📼 Replaying %s (%s, %d threads)%n", log.getName(),
+            config.speedFactor > 0 ? config.speedFactor + "x" : "as fast as possible", config.threads);
+        IncidentReplay replay = new IncidentReplay(graph, fleet, hospitals.getAllHospitals(), config);
+        replay.replay(log).print();
+    }
+
+    private static GraphHopper loadGraphHopper() {
+        GraphHopper hopper = new GraphHopper();
+        hopper.setOSMFile("pakistan-251202.osm.pbf");
+        hopper.setGraphHopperLocation("graph-cache");
+        hopper.setEncodedValuesString("car_access, car_average_speed");
+        hopper.setProfiles(
+            new Profile("car_profile").setCustomModel(GHUtility.loadCustomModelFromJar("car.json"))
+        );
+        hopper.importOrLoad();
+        return hopper;
+    }
+}
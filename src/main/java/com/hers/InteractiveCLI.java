@@ -228,7 +228,8 @@ public class InteractiveCLI {
         
         List<AmbulanceAssignmentResult> results = new ArrayList<>();
         for (Ambulance amb : available) {
-            int ambNode = graph.findNearestNode(amb.currentLat, amb.currentLon);
+            Ambulance.Position position = amb.getPosition();
+            int ambNode = graph.findNearestNode(position.lat, position.lon);
             PathResult path = aStar.findPath(ambNode, emergencyNode);
             double dist = amb.distanceTo(lat, lon);
             results.add(new AmbulanceAssignmentResult(amb, path, dist));
@@ -14,11 +14,6 @@ import java.util.*;
 public class AStarAlgorithm {
     
     private final GraphExtractor graph;
-    private Map<Integer, Double> gScore; // actual cost from start
-    private Map<Integer, Double> fScore; // gScore + heuristic
-    private Map<Integer, Integer> parent;
-    private Set<Integer> visited;
-    private int nodesExpanded;
     
     public AStarAlgorithm(GraphExtractor graph) {
         this.graph = graph;
@@ -32,11 +27,11 @@ public class AStarAlgorithm {
         long startTime = System.nanoTime();
         
         // Initialize data structures
-        gScore = new HashMap<>();
-        fScore = new HashMap<>();
-        parent = new HashMap<>();
-        visited = new HashSet<>();
-        nodesExpanded = 0;
+        Map<Integer, Double> gScore = new HashMap<>(); // actual cost from start
+        Map<Integer, Double> fScore = new HashMap<>(); // gScore + heuristic
+        Map<Integer, Integer> parent = new HashMap<>();
+        Set<Integer> visited = new HashSet<>();
+        int nodesExpanded = 0;
         
         Node destNode = graph.getNode(destination);
         
@@ -89,8 +84,8 @@ public class AStarAlgorithm {
         double computeTime = (endTime - startTime) / 1_000_000.0; // in milliseconds
         
         // Reconstruct path
-        List<Integer> path = reconstructPath(source, destination);
-        double totalDistance = calculatePathDistance(path);
+        List<Integer> path = PathUtils.reconstructPath(parent, source, destination);
+        double totalDistance = PathUtils.calculatePathDistance(graph, path);
         double totalTime = gScore.getOrDefault(destination, Double.MAX_VALUE);
         
         return new PathResult(path, totalTime, totalDistance, computeTime, nodesExpanded, "A*");
@@ -117,55 +112,6 @@ public class AStarAlgorithm {
         return distance / 13.89;
     }
     
-    /**
-     * Reconstruct path from source to destination using parent map
-     */
-    private List<Integer> reconstructPath(int source, int destination) {
-        if (!parent.containsKey(destination) && source != destination) {
-            return new ArrayList<>(); // No path found
-        }
-        
-        Stack<Integer> stack = new Stack<>();
-        int current = destination;
-        
-        while (current != source) {
-            stack.push(current);
-            if (!parent.containsKey(current)) {
-                return new ArrayList<>(); // Path broken
-            }
-            current = parent.get(current);
-        }
-        stack.push(source);
-        
-        List<Integer> path = new ArrayList<>();
-        while (!stack.isEmpty()) {
-            path.add(stack.pop());
-        }
-        
-        return path;
-    }
-    
-    /**
-     * Calculate total physical distance of path
-     */
-    private double calculatePathDistance(List<Integer> path) {
-        double totalDist = 0.0;
-        
-        for (int i = 0; i < path.size() - 1; i++) {
-            int from = path.get(i);
-            int to = path.get(i + 1);
-            
-            for (Edge edge : graph.getNeighbors(from)) {
-                if (edge.toNode == to) {
-                    totalDist += edge.distance;
-                    break;
-                }
-            }
-        }
-        
-        return totalDist;
-    }
-    
     /**
      * Helper class for priority queue
      */
@@ -0,0 +1,120 @@
+package com.hers.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Hungarian algorithm (Kuhn-Munkres with potentials) for rectangular assignment problems
+ * Time Complexity: O(n^2 * m) for n rows and m columns (n <= m)
+ * Space Complexity: O(n * m) for the cost matrix, O(m) working memory
+ */
+public class HungarianAlgorithm {
+
+    /**
+     * Cost marking a forbidden pairing; rows left with such a pairing are reported unassigned
+     */
+    public static final double FORBIDDEN = 1e12;
+
+    private HungarianAlgorithm() {
+    }
+
+    /**
+     * Find the minimum-cost assignment of rows to distinct columns
+     * @param cost cost[row][col], use FORBIDDEN for pairs that must not be assigned
+     * @return column assigned to each row, or -1 if the row could not be assigned
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        if (rows == 0) {
+            return new int[0];
+        }
+        int cols = cost[0].length;
+        if (cols == 0) {
+            int[] none = new int[rows];
+            Arrays.fill(none, -1);
+            return none;
+        }
+
+        // The algorithm needs rows <= cols; otherwise solve the transposed problem
+        if (rows > cols) {
+            double[][] transposed = new double[cols][rows];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    transposed[c][r] = cost[r][c];
+                }
+            }
+            int[] colToRow = solve(transposed);
+            int[] rowToCol = new int[rows];
+            Arrays.fill(rowToCol, -1);
+            for (int c = 0; c < cols; c++) {
+                if (colToRow[c] >= 0) {
+                    rowToCol[colToRow[c]] = c;
+                }
+            }
+            return rowToCol;
+        }
+
+        // 1-based arrays: u/v are row/column potentials, p[col] = row matched to col
+        double[] u = new double[rows + 1];
+        double[] v = new double[cols + 1];
+        int[] p = new int[cols + 1];
+        int[] way = new int[cols + 1];
+        double[] minv = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int row = 1; row <= rows; row++) {
+            p[0] = row;
+            int col0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[col0] = true;
+                int row0 = p[col0];
+                double delta = Double.POSITIVE_INFINITY;
+                int col1 = 0;
+                double[] costRow = cost[row0 - 1];
+
+                for (int col = 1; col <= cols; col++) {
+                    if (!used[col]) {
+                        double reduced = costRow[col - 1] - u[row0] - v[col];
+                        if (reduced < minv[col]) {
+                            minv[col] = reduced;
+                            way[col] = col0;
+                        }
+                        if (minv[col] < delta) {
+                            delta = minv[col];
+                            col1 = col;
+                        }
+                    }
+                }
+
+                for (int col = 0; col <= cols; col++) {
+                    if (used[col]) {
+                        u[p[col]] += delta;
+                        v[col] -= delta;
+                    } else {
+                        minv[col] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (p[col0] != 0);
+
+            // Augment along the alternating path
+            do {
+                int col1 = way[col0];
+                p[col0] = p[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, -1);
+        for (int col = 1; col <= cols; col++) {
+            int row = p[col];
+            if (row > 0 && cost[row - 1][col - 1] < FORBIDDEN) {
+                assignment[row - 1] = col - 1;
+            }
+        }
+        return assignment;
+    }
+}
@@ -0,0 +1,339 @@
+package com.hers.algorithms;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+
+import java.util.*;
+
+/**
+ * Dijkstra search that is driven step by step by the caller.
+ *
+ * Supports forward (from sources) and reverse (towards sources, over incoming
+ * edges) searches and multiple sources, and keeps its state between calls, so
+ * callers can settle nodes until their own stopping rule is met (one-to-many
+ * ETAs, nearest-of-many, bounded catchments) and resume later if needed.
+ */
+public class IncrementalDijkstra {
+
+    public enum Direction {
+        FORWARD,  // distances from the sources
+        REVERSE   // distances to the sources
+    }
+
+    /**
+     * What the search minimizes. With DISTANCE the "time" accessors and
+     * bounds are in road meters instead of seconds.
+     */
+    public enum Metric {
+        TIME,      // edge weights (traffic-aware travel time)
+        DISTANCE   // edge lengths, unaffected by traffic
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final GraphExtractor graph;
+    private final Direction direction;
+    private final boolean byDistance;
+    private final long startNanos;
+
+    // Open-addressing table with one slot per reached node (searches are usually
+    // local, so this stays far smaller than per-graph arrays and avoids boxing)
+    private int[] keys;          // node + 1, 0 = empty slot
+    private double[] times;      // best known travel time in seconds
+    private double[] distances;  // road meters along the best path
+    private int[] parents;       // previous node in search order, -1 for sources
+    private boolean[] settledFlags;
+    private int hashShift;       // 32 - log2(table length)
+    private int size;
+    private int settledCount;
+
+    // Binary min-heap of (time, node) with lazy deletion of stale entries
+    private double[] heapTimes = new double[INITIAL_CAPACITY];
+    private int[] heapNodes = new int[INITIAL_CAPACITY];
+    private int heapSize;
+
+    public IncrementalDijkstra(GraphExtractor graph, Direction direction) {
+        this(graph, direction, Metric.TIME);
+    }
+
+    public IncrementalDijkstra(GraphExtractor graph, Direction direction, Metric metric) {
+        this.graph = graph;
+        this.direction = direction;
+        this.byDistance = metric == Metric.DISTANCE;
+        this.startNanos = System.nanoTime();
+        allocateTable(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Convenience constructor for a single-source search
+     */
+    public IncrementalDijkstra(GraphExtractor graph, Direction direction, int source) {
+        this(graph, direction);
+        addSource(source, 0.0);
+    }
+
+    /**
+     * Add a source with an initial cost (e.g. time to reach the node from an off-graph position)
+     */
+    public void addSource(int node, double initialTime) {
+        if (node < 0) {
+            return;
+        }
+        int slot = slotFor(node, true);
+        if (settledFlags[slot] || times[slot] <= initialTime) {
+            return;
+        }
+        times[slot] = initialTime;
+        distances[slot] = 0.0;
+        parents[slot] = -1;
+        push(initialTime, node);
+    }
+
+    /**
+     * Settle the next closest node
+     * @return the settled node, or -1 if the search space is exhausted
+     */
+    public int settleNext() {
+        while (heapSize > 0) {
+            double time = heapTimes[0];
+            int node = heapNodes[0];
+            pop();
+            int slot = slotFor(node, false);
+            if (settledFlags[slot] || time > times[slot]) {
+                continue; // stale heap entry
+            }
+            settledFlags[slot] = true;
+            settledCount++;
+            relax(node, time, distances[slot]);
+            return node;
+        }
+        return -1;
+    }
+
+    private void relax(int node, double nodeTime, double nodeDistance) {
+        List<Edge> edges = direction == Direction.FORWARD ? graph.getNeighbors(node) : graph.getIncoming(node);
+
+        for (Edge edge : edges) {
+            if (edge.blocked) {
+                continue;
+            }
+            int next = direction == Direction.FORWARD ? edge.toNode : edge.fromNode;
+            double newTime = nodeTime + (byDistance ? edge.distance : edge.weight);
+            int slot = slotFor(next, true);
+            if (settledFlags[slot] || newTime >= times[slot]) {
+                continue;
+            }
+            times[slot] = newTime;
+            distances[slot] = nodeDistance + edge.distance;
+            parents[slot] = node;
+            push(newTime, next);
+        }
+    }
+
+    /**
+     * Settle nodes until the frontier passes maxTime
+     * @return number of nodes settled by this call
+     */
+    public int settleUntil(double maxTime) {
+        int count = 0;
+        while (peekTime() <= maxTime && settleNext() >= 0) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Settle nodes until the given node is settled or the frontier passes maxTime
+     * @return the node's travel time, or Double.MAX_VALUE if not reached
+     */
+    public double settleTarget(int target, double maxTime) {
+        while (!isSettled(target) && peekTime() <= maxTime) {
+            if (settleNext() < 0) {
+                break;
+            }
+        }
+        return isSettled(target) ? getTime(target) : Double.MAX_VALUE;
+    }
+
+    /**
+     * Travel time of the next node to be settled (lower bound for all unsettled nodes)
+     */
+    public double peekTime() {
+        while (heapSize > 0) {
+            int slot = slotFor(heapNodes[0], false);
+            if (settledFlags[slot] || heapTimes[0] > times[slot]) {
+                pop();
+                continue;
+            }
+            return heapTimes[0];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    public boolean isSettled(int node) {
+        int slot = slotFor(node, false);
+        return slot >= 0 && settledFlags[slot];
+    }
+
+    /**
+     * Final travel time of a settled node (tentative otherwise), Double.MAX_VALUE if unreached
+     */
+    public double getTime(int node) {
+        int slot = slotFor(node, false);
+        return slot < 0 ? Double.MAX_VALUE : times[slot];
+    }
+
+    /**
+     * Road distance in meters along the best path to/from a reached node
+     */
+    public double getDistance(int node) {
+        int slot = slotFor(node, false);
+        return slot < 0 || times[slot] == Double.MAX_VALUE ? Double.MAX_VALUE : distances[slot];
+    }
+
+    public Set<Integer> getSettledNodes() {
+        Set<Integer> settled = new HashSet<>();
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && settledFlags[slot]) {
+                settled.add(keys[slot] - 1);
+            }
+        }
+        return settled;
+    }
+
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Path for a settled node in driving order:
+     * forward search = source ... node, reverse search = node ... source
+     */
+    public List<Integer> getPath(int node) {
+        if (!isSettled(node)) {
+            return new ArrayList<>();
+        }
+        List<Integer> path = new ArrayList<>();
+        int current = node;
+        while (current >= 0) {
+            path.add(current);
+            current = parents[slotFor(current, false)];
+        }
+        if (direction == Direction.FORWARD) {
+            Collections.reverse(path);
+        }
+        return path;
+    }
+
+    /**
+     * Package a settled node's path as a PathResult
+     */
+    public PathResult toPathResult(int node, String algorithmName) {
+        List<Integer> path = getPath(node);
+        double computeTime = (System.nanoTime() - startNanos) / 1_000_000.0;
+        if (path.isEmpty()) {
+            return new PathResult(path, Double.MAX_VALUE, 0.0, computeTime, settledCount, algorithmName);
+        }
+        return new PathResult(path, getTime(node), getDistance(node), computeTime, settledCount, algorithmName);
+    }
+
+    /**
+     * Find a node's slot; with insert, unreached nodes get a fresh slot with time = MAX_VALUE
+     * @return the slot, or -1 if the node is not in the table and insert is false
+     */
+    private int slotFor(int node, boolean insert) {
+        int mask = keys.length - 1;
+        int slot = (node * 0x9E3779B9) >>> hashShift; // Fibonacci hashing: top bits of the product
+        int key = node + 1;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!insert) {
+            return -1;
+        }
+        if ((size + 1) * 2 > keys.length) {
+            growTable();
+            return slotFor(node, true);
+        }
+        keys[slot] = key;
+        times[slot] = Double.MAX_VALUE;
+        parents[slot] = -1;
+        size++;
+        return slot;
+    }
+
+    private void allocateTable(int capacity) {
+        keys = new int[capacity];
+        times = new double[capacity];
+        distances = new double[capacity];
+        parents = new int[capacity];
+        settledFlags = new boolean[capacity];
+        hashShift = Integer.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+
+    private void growTable() {
+        int[] oldKeys = keys;
+        double[] oldTimes = times;
+        double[] oldDistances = distances;
+        int[] oldParents = parents;
+        boolean[] oldSettled = settledFlags;
+        allocateTable(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotFor(oldKeys[i] - 1, true);
+                times[slot] = oldTimes[i];
+                distances[slot] = oldDistances[i];
+                parents[slot] = oldParents[i];
+                settledFlags[slot] = oldSettled[i];
+            }
+        }
+    }
+
+    private void push(double time, int node) {
+        if (heapSize == heapTimes.length) {
+            heapTimes = Arrays.copyOf(heapTimes, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapTimes[parent] <= time) {
+                break;
+            }
+            heapTimes[i] = heapTimes[parent];
+            heapNodes[i] = heapNodes[parent];
+            i = parent;
+        }
+        heapTimes[i] = time;
+        heapNodes[i] = node;
+    }
+
+    private void pop() {
+        double time = heapTimes[--heapSize];
+        int node = heapNodes[heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heapTimes[child + 1] < heapTimes[child]) {
+                child++;
+            }
+            if (time <= heapTimes[child]) {
+                break;
+            }
+            heapTimes[i] = heapTimes[child];
+            heapNodes[i] = heapNodes[child];
+            i = child;
+        }
+        heapTimes[i] = time;
+        heapNodes[i] = node;
+    }
+}
@@ -0,0 +1,133 @@
+package com.hers.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Minimum-cost flow by successive shortest paths with node potentials
+ * Time Complexity: O(A * (V^2 + E)) for A augmentations (at most the flow sent)
+ * Space Complexity: O(V + E)
+ *
+ * Each augmentation finds the cheapest residual path with a dense Dijkstra over
+ * reduced costs and pushes as much flow along it as its bottleneck allows. The
+ * dense scan suits the small, well-connected networks of allocation problems
+ * (sources, demand groups, facilities, sink); costs must be non-negative.
+ */
+public class MinCostFlow {
+
+    private static final long INFINITE = Long.MAX_VALUE / 4;
+
+    private final int nodeCount;
+    private final int[] head;
+    private int[] next = new int[16];
+    private int[] to = new int[16];
+    private int[] capacity = new int[16];
+    private long[] cost = new long[16];
+    private int edgeCount;   // arcs, each edge is stored with its reverse at index ^ 1
+
+    public MinCostFlow(int nodeCount) {
+        this.nodeCount = nodeCount;
+        this.head = new int[nodeCount];
+        Arrays.fill(head, -1);
+    }
+
+    /**
+     * Add a directed edge
+     * @return edge id for getFlow()
+     */
+    public int addEdge(int from, int target, int edgeCapacity, long edgeCost) {
+        if (edgeCost < 0) {
+            throw new IllegalArgumentException("Edge costs must be non-negative, got " + edgeCost);
+        }
+        if (edgeCount + 2 > to.length) {
+            int size = to.length * 2;
+            next = Arrays.copyOf(next, size);
+            to = Arrays.copyOf(to, size);
+            capacity = Arrays.copyOf(capacity, size);
+            cost = Arrays.copyOf(cost, size);
+        }
+        int id = edgeCount;
+        addArc(from, target, edgeCapacity, edgeCost);
+        addArc(target, from, 0, -edgeCost);
+        return id;
+    }
+
+    private void addArc(int from, int target, int arcCapacity, long arcCost) {
+        to[edgeCount] = target;
+        capacity[edgeCount] = arcCapacity;
+        cost[edgeCount] = arcCost;
+        next[edgeCount] = head[from];
+        head[from] = edgeCount++;
+    }
+
+    /**
+     * Flow currently on an edge returned by addEdge()
+     */
+    public int getFlow(int edge) {
+        return capacity[edge ^ 1];
+    }
+
+    /**
+     * Send up to maxFlow units from source to sink at minimum total cost (once per network)
+     * @return {flow sent, total cost}
+     */
+    public long[] solve(int source, int sink, int maxFlow) {
+        long[] potential = new long[nodeCount];
+        long[] dist = new long[nodeCount];
+        int[] viaEdge = new int[nodeCount];
+        boolean[] done = new boolean[nodeCount];
+        int flow = 0;
+        long totalCost = 0;
+
+        while (flow < maxFlow) {
+            // Dijkstra on reduced costs cost + p(u) - p(v), which stay non-negative
+            Arrays.fill(dist, INFINITE);
+            Arrays.fill(done, false);
+            dist[source] = 0;
+            viaEdge[source] = -1;
+            while (true) {
+                int u = -1;
+                long best = INFINITE;
+                for (int v = 0; v < nodeCount; v++) {
+                    if (!done[v] && dist[v] < best) {
+                        best = dist[v];
+                        u = v;
+                    }
+                }
+                if (u < 0) {
+                    break;
+                }
+                done[u] = true;
+                for (int e = head[u]; e >= 0; e = next[e]) {
+                    if (capacity[e] == 0) {
+                        continue;
+                    }
+                    int v = to[e];
+                    long candidate = best + cost[e] + potential[u] - potential[v];
+                    if (candidate < dist[v]) {
+                        dist[v] = candidate;
+                        viaEdge[v] = e;
+                    }
+                }
+            }
+            if (dist[sink] >= INFINITE) {
+                break; // sink no longer reachable: maximum flow reached
+            }
+            // Capping at the sink distance keeps reduced costs non-negative for nodes not reached
+            for (int v = 0; v < nodeCount; v++) {
+                potential[v] += Math.min(dist[v], dist[sink]);
+            }
+
+            int push = maxFlow - flow;
+            for (int v = sink; v != source; v = to[viaEdge[v] ^ 1]) {
+                push = Math.min(push, capacity[viaEdge[v]]);
+            }
+            for (int v = sink; v != source; v = to[viaEdge[v] ^ 1]) {
+                capacity[viaEdge[v]] -= push;
+                capacity[viaEdge[v] ^ 1] += push;
+            }
+            flow += push;
+            totalCost += (long) push * (potential[sink] - potential[source]);
+        }
+        return new long[]{flow, totalCost};
+    }
+}
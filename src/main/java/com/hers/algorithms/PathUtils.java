@@ -0,0 +1,55 @@
+package com.hers.algorithms;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+
+import java.util.*;
+
+/**
+ * Shared path helpers for search algorithms
+ */
+final class PathUtils {
+
+    private PathUtils() {
+    }
+
+    /**
+     * Reconstruct path from source to destination using parent map
+     */
+    static List<Integer> reconstructPath(Map<Integer, Integer> parent, int source, int destination) {
+        if (!parent.containsKey(destination) && source != destination) {
+            return new ArrayList<>(); // No path found
+        }
+
+        List<Integer> path = new ArrayList<>();
+        int current = destination;
+        while (current != source) {
+            path.add(current);
+            Integer previous = parent.get(current);
+            if (previous == null) {
+                return new ArrayList<>(); // Path broken
+            }
+            current = previous;
+        }
+        path.add(source);
+
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Calculate total physical distance of path
+     */
+    static double calculatePathDistance(GraphExtractor graph, List<Integer> path) {
+        double totalDist = 0.0;
+
+        for (int i = 0; i < path.size() - 1; i++) {
+            Edge edge = graph.findEdge(path.get(i), path.get(i + 1));
+            if (edge != null) {
+                totalDist += edge.distance;
+            }
+        }
+
+        return totalDist;
+    }
+}
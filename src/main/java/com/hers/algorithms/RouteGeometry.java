@@ -0,0 +1,162 @@
+package com.hers.algorithms;
+
+import com.hers.model.GraphExtractor;
+import com.hers.model.Node;
+
+import java.util.*;
+
+/**
+ * Compact route geometry: Douglas-Peucker simplification and encoded polylines
+ * Time Complexity: O(P log P) typical, O(P^2) worst case for simplification; O(P) for encoding
+ * Space Complexity: O(P)
+ *
+ * Coordinates are kept as one interleaved array [lat0, lon0, lat1, lon1, ...]
+ * from graph lookup to encoded string, so no per-point objects are built.
+ * The polyline format is Google's (precision 5; OSRM/Valhalla use 6).
+ */
+public final class RouteGeometry {
+
+    public static final int DEFAULT_PRECISION = 5;
+    public static final int MAX_PRECISION = 7;   // 1e7 still fits the zigzag deltas in a long
+    public static final int MAX_ZOOM = 22;
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final double EQUATOR_METERS_PER_PIXEL = 156_543.03392; // zoom 0, 256 px Web Mercator tiles
+
+    private RouteGeometry() {
+    }
+
+    /**
+     * Interleaved lat/lon of a node path (unknown nodes are skipped)
+     */
+    public static double[] coordinates(GraphExtractor graph, List<Integer> path) {
+        double[] latLon = new double[path.size() * 2];
+        int length = 0;
+        for (int nodeId : path) {
+            Node node = graph.getNode(nodeId);
+            if (node != null) {
+                latLon[length++] = node.lat;
+                latLon[length++] = node.lon;
+            }
+        }
+        return length == latLon.length ? latLon : Arrays.copyOf(latLon, length);
+    }
+
+    /**
+     * Ground size of one screen pixel at a zoom level, used as simplification tolerance
+     * (one pixel, like Leaflet's default smoothFactor)
+     */
+    public static double toleranceForZoom(int zoom, double lat) {
+        int z = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        return EQUATOR_METERS_PER_PIXEL * Math.cos(Math.toRadians(lat)) / (1L << z);
+    }
+
+    /**
+     * Douglas-Peucker: drop points within toleranceMeters of the simplified line.
+     * Endpoints are always kept.
+     */
+    public static double[] simplify(double[] latLon, double toleranceMeters) {
+        int count = latLon.length / 2;
+        if (count < 3 || toleranceMeters <= 0) {
+            return latLon;
+        }
+        // Local equirectangular projection to meters; routes span a city, not a hemisphere
+        double cosLat = Math.cos(Math.toRadians((latLon[0] + latLon[latLon.length - 2]) / 2));
+        double[] x = new double[count];
+        double[] y = new double[count];
+        for (int i = 0; i < count; i++) {
+            y[i] = latLon[2 * i] * METERS_PER_DEGREE;
+            x[i] = latLon[2 * i + 1] * METERS_PER_DEGREE * cosLat;
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        double tolerance2 = toleranceMeters * toleranceMeters;
+        int[] stack = new int[2 * count];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthest2 = tolerance2;
+            for (int i = first + 1; i < last; i++) {
+                double d2 = segmentDistance2(x, y, i, first, last);
+                if (d2 > farthest2) {
+                    farthest2 = d2;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        double[] simplified = new double[kept * 2];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                simplified[length++] = latLon[2 * i];
+                simplified[length++] = latLon[2 * i + 1];
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Squared distance from point p to segment a-b (routes can double back, so not the infinite line)
+     */
+    private static double segmentDistance2(double[] x, double[] y, int p, int a, int b) {
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : ((x[p] - x[a]) * dx + (y[p] - y[a]) * dy) / length2;
+        t = Math.max(0, Math.min(1, t));
+        double ex = x[a] + t * dx - x[p];
+        double ey = y[a] + t * dy - y[p];
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Encoded polyline of interleaved lat/lon at 10^-precision degrees
+     */
+    public static String encodePolyline(double[] latLon, int precision) {
+        if (precision < 0 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Polyline precision must be 0-" + MAX_PRECISION + ": " + precision);
+        }
+        double factor = Math.pow(10, precision);
+        StringBuilder encoded = new StringBuilder(latLon.length * 3);
+        long previousLat = 0;
+        long previousLon = 0;
+        for (int i = 0; i + 1 < latLon.length; i += 2) {
+            long lat = Math.round(latLon[i] * factor);
+            long lon = Math.round(latLon[i + 1] * factor);
+            encodeValue(encoded, lat - previousLat);
+            encodeValue(encoded, lon - previousLon);
+            previousLat = lat;
+            previousLon = lon;
+        }
+        return encoded.toString();
+    }
+
+    private static void encodeValue(StringBuilder encoded, long delta) {
+        long value = delta < 0 ? ~(delta << 1) : delta << 1;
+        while (value >= 0x20) {
+            encoded.append((char) ((0x20 | (value & 0x1f)) + 63));
+            value >>>= 5;
+        }
+        encoded.append((char) (value + 63));
+    }
+}
@@ -0,0 +1,118 @@
+package com.hers.algorithms;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+import com.hers.model.Node;
+import com.hers.simulation.TrafficProfiles;
+
+import java.util.*;
+
+/**
+ * Time-dependent A*: edges are costed at their entry time using traffic profiles.
+ * The heuristic is the straight-line time at 50 km/h scaled by the smallest
+ * profile factor, so it stays admissible even at night when roads are faster.
+ */
+public class TimeDependentAStar {
+
+    private final GraphExtractor graph;
+    private final TrafficProfiles profiles;
+
+    public TimeDependentAStar(GraphExtractor graph, TrafficProfiles profiles) {
+        this.graph = graph;
+        this.profiles = profiles;
+    }
+
+    /**
+     * Find fastest path leaving source at the given time of day
+     * @param departureTime seconds since midnight
+     * @return PathResult whose totalTime is the travel time (arrival - departure)
+     */
+    public PathResult findPath(int source, int destination, double departureTime) {
+        long startTime = System.nanoTime();
+
+        Map<Integer, Double> arrival = new HashMap<>(); // arrival time of day at node
+        Map<Integer, Integer> parent = new HashMap<>();
+        Set<Integer> visited = new HashSet<>();
+        int nodesExpanded = 0;
+        double heuristicFactor = profiles.getMinFactor();
+
+        Node destNode = graph.getNode(destination);
+
+        PriorityQueue<NodeScore> pq = new PriorityQueue<>();
+        arrival.put(source, departureTime);
+        pq.offer(new NodeScore(source, departureTime + heuristic(source, destNode, heuristicFactor)));
+
+        while (!pq.isEmpty()) {
+            NodeScore current = pq.poll();
+            int currentNode = current.nodeId;
+
+            if (visited.contains(currentNode)) {
+                continue;
+            }
+
+            visited.add(currentNode);
+            nodesExpanded++;
+
+            if (currentNode == destination) {
+                break;
+            }
+
+            double now = arrival.get(currentNode);
+            for (Edge edge : graph.getNeighbors(currentNode)) {
+                if (edge.blocked) {
+                    continue;
+                }
+
+                int neighbor = edge.toNode;
+                double newArrival = now + profiles.getTravelTime(edge, now);
+
+                Double known = arrival.get(neighbor);
+                if (known == null || newArrival < known) {
+                    arrival.put(neighbor, newArrival);
+                    parent.put(neighbor, currentNode);
+                    pq.offer(new NodeScore(neighbor, newArrival + heuristic(neighbor, destNode, heuristicFactor)));
+                }
+            }
+        }
+
+        double computeTime = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        List<Integer> path = PathUtils.reconstructPath(parent, source, destination);
+        double totalDistance = PathUtils.calculatePathDistance(graph, path);
+        double totalTime = arrival.containsKey(destination) && !path.isEmpty()
+            ? arrival.get(destination) - departureTime
+            : Double.MAX_VALUE;
+
+        return new PathResult(path, totalTime, totalDistance, computeTime, nodesExpanded, "TD-A*");
+    }
+
+    /**
+     * Straight-line time at 50 km/h, scaled by the fastest possible profile factor
+     */
+    private double heuristic(int nodeId, Node dest, double heuristicFactor) {
+        Node node = graph.getNode(nodeId);
+        if (node == null || dest == null) {
+            return 0.0;
+        }
+        double distance = GraphExtractor.haversineDistance(node.lat, node.lon, dest.lat, dest.lon);
+        return distance / 13.89 * heuristicFactor;
+    }
+
+    /**
+     * Helper class for priority queue
+     */
+    private static class NodeScore implements Comparable<NodeScore> {
+        int nodeId;
+        double fScore;
+
+        NodeScore(int nodeId, double fScore) {
+            this.nodeId = nodeId;
+            this.fScore = fScore;
+        }
+
+        @Override
+        public int compareTo(NodeScore other) {
+            return Double.compare(this.fScore, other.fScore);
+        }
+    }
+}
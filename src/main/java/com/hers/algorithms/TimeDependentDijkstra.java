@@ -0,0 +1,103 @@
+package com.hers.algorithms;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+import com.hers.simulation.TrafficProfiles;
+
+import java.util.*;
+
+/**
+ * Time-dependent Dijkstra: each edge is costed at the time the ambulance reaches it,
+ * using the edge's time-of-day traffic profile.
+ * Labels are arrival times; correct as long as profiles are FIFO (no overtaking by waiting),
+ * which holds for piecewise-linear profiles with moderate slopes.
+ */
+public class TimeDependentDijkstra {
+
+    private final GraphExtractor graph;
+    private final TrafficProfiles profiles;
+
+    public TimeDependentDijkstra(GraphExtractor graph, TrafficProfiles profiles) {
+        this.graph = graph;
+        this.profiles = profiles;
+    }
+
+    /**
+     * Find fastest path leaving source at the given time of day
+     * @param departureTime seconds since midnight
+     * @return PathResult whose totalTime is the travel time (arrival - departure)
+     */
+    public PathResult findPath(int source, int destination, double departureTime) {
+        long startTime = System.nanoTime();
+
+        Map<Integer, Double> arrival = new HashMap<>();
+        Map<Integer, Integer> parent = new HashMap<>();
+        Set<Integer> visited = new HashSet<>();
+        int nodesExpanded = 0;
+
+        PriorityQueue<NodeTime> pq = new PriorityQueue<>();
+        arrival.put(source, departureTime);
+        pq.offer(new NodeTime(source, departureTime));
+
+        while (!pq.isEmpty()) {
+            NodeTime current = pq.poll();
+            int currentNode = current.nodeId;
+
+            if (visited.contains(currentNode)) {
+                continue;
+            }
+
+            visited.add(currentNode);
+            nodesExpanded++;
+
+            if (currentNode == destination) {
+                break;
+            }
+
+            double now = arrival.get(currentNode);
+            for (Edge edge : graph.getNeighbors(currentNode)) {
+                if (edge.blocked) {
+                    continue;
+                }
+
+                int neighbor = edge.toNode;
+                double newArrival = now + profiles.getTravelTime(edge, now);
+
+                Double known = arrival.get(neighbor);
+                if (known == null || newArrival < known) {
+                    arrival.put(neighbor, newArrival);
+                    parent.put(neighbor, currentNode);
+                    pq.offer(new NodeTime(neighbor, newArrival));
+                }
+            }
+        }
+
+        double computeTime = (System.nanoTime() - startTime) / 1_000_000.0;
+
+        List<Integer> path = PathUtils.reconstructPath(parent, source, destination);
+        double totalDistance = PathUtils.calculatePathDistance(graph, path);
+        double totalTime = arrival.containsKey(destination) && !path.isEmpty()
+            ? arrival.get(destination) - departureTime
+            : Double.MAX_VALUE;
+
+        return new PathResult(path, totalTime, totalDistance, computeTime, nodesExpanded, "TD-Dijkstra");
+    }
+
+    /**
+     * Helper class for priority queue
+     */
+    private static class NodeTime implements Comparable<NodeTime> {
+        int nodeId;
+        double time;
+
+        NodeTime(int nodeId, double time) {
+            this.nodeId = nodeId;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo(NodeTime other) {
+            return Double.compare(this.time, other.time);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.hers.algorithms;
+
+/**
+ * Streaming selection of the N smallest keys with a bounded max-heap
+ * Time Complexity: O(log N) per accepted offer, O(1) per rejected one
+ * Space Complexity: O(N)
+ *
+ * Callers offer (key, id) pairs, where the id indexes their own data, and
+ * check accepts() first so that anything costly (objects, paths, text) is
+ * only built for candidates that can still make the cut. Equal keys keep
+ * offer order, as a stable sort would: a later equal key never displaces an
+ * earlier one. For "highest score first", offer the negated score.
+ */
+public class TopNSelector {
+
+    private final int capacity;
+    private final double[] keys;
+    private final int[] ids;
+    private final long[] order;   // offer sequence, breaks ties between equal keys
+    private int size;
+    private long offered;
+
+    public TopNSelector(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.keys = new double[this.capacity];
+        this.ids = new int[this.capacity];
+        this.order = new long[this.capacity];
+    }
+
+    /**
+     * Whether a key would currently be kept
+     */
+    public boolean accepts(double key) {
+        return size < capacity || (capacity > 0 && key < keys[0]);
+    }
+
+    /**
+     * Offer a candidate
+     * @return true if it was kept (possibly evicting the current N-th best)
+     */
+    public boolean offer(double key, int id) {
+        long sequence = offered++;
+        if (size < capacity) {
+            int pos = size++;
+            keys[pos] = key;
+            ids[pos] = id;
+            order[pos] = sequence;
+            siftUp(pos);
+            return true;
+        }
+        if (!accepts(key)) {
+            return false;
+        }
+        keys[0] = key;
+        ids[0] = id;
+        order[0] = sequence;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Key a candidate must beat: +infinity until the selection is full, -infinity if N is 0
+     */
+    public double threshold() {
+        if (capacity == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return size < capacity ? Double.POSITIVE_INFINITY : keys[0];
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Ids of the kept candidates, smallest key first (empties the selector)
+     */
+    public int[] drainSortedIds() {
+        int[] sorted = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            sorted[i] = ids[0];
+            size--;
+            if (size > 0) {
+                keys[0] = keys[size];
+                ids[0] = ids[size];
+                order[0] = order[size];
+                siftDown(0);
+            }
+        }
+        return sorted;
+    }
+
+    // Heap order: larger key first, then later offer first
+    private boolean above(int a, int b) {
+        return keys[a] > keys[b] || (keys[a] == keys[b] && order[a] > order[b]);
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!above(pos, parent)) {
+                break;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int left = 2 * pos + 1;
+            if (left >= size) {
+                break;
+            }
+            int child = left + 1 < size && above(left + 1, left) ? left + 1 : left;
+            if (!above(child, pos)) {
+                break;
+            }
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        long sequence = order[a];
+        order[a] = order[b];
+        order[b] = sequence;
+    }
+}
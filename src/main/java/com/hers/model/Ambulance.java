@@ -1,16 +1,31 @@
 package com.hers.model;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
- * Represents an ambulance with location and status
+ * Represents an ambulance with location and status.
+ * Status and assignment change together as one immutable State behind a
+ * compare-and-set, so concurrent dispatchers can never claim the same unit
+ * twice and nobody ever sees a status without its assignment. The location is
+ * likewise one immutable Position, so a reader never pairs the latitude of one
+ * fix with the longitude of another.
  */
 public class Ambulance {
+    private static final AtomicReferenceFieldUpdater<Ambulance, State> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(Ambulance.class, State.class, "state");
+    private static final AtomicReferenceFieldUpdater<Ambulance, Position> POSITION =
+        AtomicReferenceFieldUpdater.newUpdater(Ambulance.class, Position.class, "position");
+    
     public final String id;
     public final String stationName;
-    public double currentLat;
-    public double currentLon;
-    public AmbulanceStatus status;
-    public String currentAssignment; // Emergency ID or null
+    public final double stationLat;   // units join the fleet at their station
+    public final double stationLon;
+    private volatile Position position;
+    private volatile State state;
     public final AmbulanceType type;
+    private final List<AmbulanceListener> listeners;
     
     public enum AmbulanceStatus {
         AVAILABLE,    // Ready for dispatch
@@ -23,76 +38,198 @@ public class Ambulance {
     public enum AmbulanceType {
         BASIC,        // Basic Life Support (BLS)
         ADVANCED,     // Advanced Life Support (ALS)
-        CRITICAL      // Critical Care Transport
+        CRITICAL;     // Critical Care Transport
+        
+        /**
+         * Check if this unit can serve a patient needing the given type
+         * (higher levels of care can always serve lower ones)
+         */
+        public boolean canServe(AmbulanceType required) {
+            return ordinal() >= required.ordinal();
+        }
+    }
+    
+    /**
+     * Status with the emergency it belongs to (null when not assigned)
+     */
+    public static final class State {
+        static final State IDLE = new State(AmbulanceStatus.AVAILABLE, null);
+        
+        public final AmbulanceStatus status;
+        public final String assignment;
+        
+        State(AmbulanceStatus status, String assignment) {
+            this.status = status;
+            this.assignment = assignment;
+        }
+    }
+    
+    /**
+     * Latitude and longitude of one fix
+     */
+    public static final class Position {
+        public final double lat;
+        public final double lon;
+        
+        public Position(double lat, double lon) {
+            this.lat = lat;
+            this.lon = lon;
+        }
     }
     
     public Ambulance(String id, String stationName, double lat, double lon, AmbulanceType type) {
         this.id = id;
         this.stationName = stationName;
-        this.currentLat = lat;
-        this.currentLon = lon;
-        this.status = AmbulanceStatus.AVAILABLE;
-        this.currentAssignment = null;
+        this.stationLat = lat;
+        this.stationLon = lon;
+        this.position = new Position(lat, lon);
+        this.state = State.IDLE;
         this.type = type;
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+    
+    /**
+     * Register a listener for location and status changes
+     */
+    public void addListener(AmbulanceListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a previously registered listener
+     */
+    public void removeListener(AmbulanceListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void fireStatusChanged(AmbulanceStatus oldStatus) {
+        for (AmbulanceListener listener : listeners) {
+            listener.onStatusChanged(this, oldStatus);
+        }
     }
     
     /**
      * Dispatch this ambulance to an emergency
+     * @throws IllegalStateException if the ambulance is not available
      */
     public void dispatch(String emergencyId) {
-        if (status != AmbulanceStatus.AVAILABLE) {
+        if (!tryDispatch(emergencyId)) {
             throw new IllegalStateException("Ambulance " + id + " is not available");
         }
-        this.status = AmbulanceStatus.DISPATCHED;
-        this.currentAssignment = emergencyId;
+    }
+    
+    /**
+     * Atomically claim this ambulance for an emergency
+     * @return false if another dispatcher claimed it first (or it is busy)
+     */
+    public boolean tryDispatch(String emergencyId) {
+        State claimed = new State(AmbulanceStatus.DISPATCHED, emergencyId);
+        for (State current = state; current.status == AmbulanceStatus.AVAILABLE; current = state) {
+            if (STATE.compareAndSet(this, current, claimed)) {
+                fireStatusChanged(AmbulanceStatus.AVAILABLE);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Atomically move from one status to another
+     * @return false if the current status was not the expected one
+     */
+    public boolean compareAndSetStatus(AmbulanceStatus expected, AmbulanceStatus next) {
+        if (expected == next) {
+            return state.status == expected;
+        }
+        for (State current = state; current.status == expected; current = state) {
+            State updated = next == AmbulanceStatus.AVAILABLE ? State.IDLE : new State(next, current.assignment);
+            if (STATE.compareAndSet(this, current, updated)) {
+                fireStatusChanged(expected);
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
      * Mark ambulance as available
      */
     public void makeAvailable() {
-        this.status = AmbulanceStatus.AVAILABLE;
-        this.currentAssignment = null;
+        AmbulanceStatus oldStatus = STATE.getAndSet(this, State.IDLE).status;
+        if (oldStatus != AmbulanceStatus.AVAILABLE) {
+            fireStatusChanged(oldStatus);
+        }
     }
     
     /**
      * Update ambulance location
      */
     public void updateLocation(double lat, double lon) {
-        this.currentLat = lat;
-        this.currentLon = lon;
+        Position old = POSITION.getAndSet(this, new Position(lat, lon));
+        for (AmbulanceListener listener : listeners) {
+            listener.onLocationChanged(this, old.lat, old.lon);
+        }
+    }
+    
+    /**
+     * Current location, latitude and longitude read together
+     */
+    public Position getPosition() {
+        return position;
+    }
+    
+    /**
+     * Status and assignment, read together
+     */
+    public State getState() {
+        return state;
+    }
+    
+    public AmbulanceStatus getStatus() {
+        return state.status;
+    }
+    
+    /**
+     * Emergency ID the unit is assigned to, or null
+     */
+    public String getCurrentAssignment() {
+        return state.assignment;
     }
     
     /**
      * Check if ambulance is available for dispatch
      */
     public boolean isAvailable() {
-        return status == AmbulanceStatus.AVAILABLE;
+        return state.status == AmbulanceStatus.AVAILABLE;
     }
     
     /**
      * Get distance to a location
      */
     public double distanceTo(double lat, double lon) {
-        return GraphExtractor.haversineDistance(this.currentLat, this.currentLon, lat, lon);
+        Position current = position;
+        return GraphExtractor.haversineDistance(current.lat, current.lon, lat, lon);
     }
     
     @Override
     public String toString() {
+        AmbulanceStatus status = getStatus();
         return String.format("Ambulance %s (%s) - %s - Station: %s - Status: %s",
-            id, type, isAvailable() ? "READY" : "BUSY", stationName, status);
+            id, type, status == AmbulanceStatus.AVAILABLE ? "READY" : "BUSY", stationName, status);
     }
     
     /**
      * Get detailed status string
      */
     public String getDetailedStatus() {
+        State current = state;
         StringBuilder sb = new StringBuilder();
-        sb.append(String.format("ID: %s | Type: %s | Status: %s", id, type, status));
-        if (currentAssignment != null) {
-            sb.append(String.format(" | Assignment: %s", currentAssignment));
+        sb.append(String.format("ID: %s | Type: %s | Status: %s", id, type, current.status));
+        if (current.assignment != null) {
+            sb.append(String.format(" | Assignment: %s", current.assignment));
         }
-        sb.append(String.format(" | Location: (%.4f, %.4f)", currentLat, currentLon));
+        Position at = position;
+        sb.append(String.format(" | Location: (%.4f, %.4f)", at.lat, at.lon));
         return sb.toString();
     }
 }
\ No newline at end of file
@@ -1,17 +1,43 @@
 package com.hers.model;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Manages fleet of ambulances across Karachi
+ * Manages fleet of ambulances across Karachi.
+ * Safe for concurrent use: lookups go through a ConcurrentHashMap, and
+ * dispatch claims units with compare-and-set so two requests can never
+ * receive the same ambulance.
  */
 public class AmbulanceFleet {
     
+    private static final Set<Ambulance.AmbulanceType> ALL_TYPES =
+        Collections.unmodifiableSet(EnumSet.allOf(Ambulance.AmbulanceType.class));
+    
+    private static final int RESERVE_CANDIDATES = 4;   // claim attempts per index query
+    private static final int MAX_RESERVE_ROUNDS = 8;
+    
     private final Map<String, Ambulance> ambulances;
+    private final Queue<Ambulance> ordered;             // registration order for listings
+    private final AmbulanceSpatialIndex spatialIndex;
+    private final List<AmbulanceListener> fleetListeners = new CopyOnWriteArrayList<>();
     
     public AmbulanceFleet() {
-        this.ambulances = new LinkedHashMap<>();
-        initializeFleet();
+        this(true);
+    }
+    
+    /**
+     * @param loadKarachiFleet false to start with an empty fleet (for onboarding or simulation)
+     */
+    public AmbulanceFleet(boolean loadKarachiFleet) {
+        this.ambulances = new ConcurrentHashMap<>();
+        this.ordered = new ConcurrentLinkedQueue<>();
+        this.spatialIndex = new AmbulanceSpatialIndex();
+        if (loadKarachiFleet) {
+            initializeFleet();
+        }
     }
     
     /**
@@ -48,15 +74,47 @@ public class AmbulanceFleet {
     /**
      * Add an ambulance to the fleet
      */
-    private void addAmbulance(String id, String station, double lat, double lon, Ambulance.AmbulanceType type) {
-        ambulances.put(id, new Ambulance(id, station, lat, lon, type));
+    public Ambulance addAmbulance(String id, String station, double lat, double lon, Ambulance.AmbulanceType type) {
+        Ambulance ambulance = new Ambulance(id, station, lat, lon, type);
+        Ambulance previous = ambulances.put(id, ambulance);
+        if (previous != null) {
+            spatialIndex.untrack(previous);
+            ordered.remove(previous);
+            for (AmbulanceListener listener : fleetListeners) {
+                previous.removeListener(listener);
+            }
+        }
+        ordered.add(ambulance);
+        spatialIndex.track(ambulance);
+        for (AmbulanceListener listener : fleetListeners) {
+            ambulance.addListener(listener);
+            listener.onAdded(ambulance);
+        }
+        return ambulance;
+    }
+    
+    /**
+     * Listen to every ambulance in the fleet, including ones added later
+     */
+    public void addListener(AmbulanceListener listener) {
+        fleetListeners.add(listener);
+        for (Ambulance ambulance : ordered) {
+            ambulance.addListener(listener);
+        }
+    }
+    
+    public void removeListener(AmbulanceListener listener) {
+        fleetListeners.remove(listener);
+        for (Ambulance ambulance : ordered) {
+            ambulance.removeListener(listener);
+        }
     }
     
     /**
      * Get all ambulances
      */
     public List<Ambulance> getAllAmbulances() {
-        return new ArrayList<>(ambulances.values());
+        return new ArrayList<>(ordered);
     }
     
     /**
@@ -64,7 +122,7 @@ public class AmbulanceFleet {
      */
     public List<Ambulance> getAvailableAmbulances() {
         List<Ambulance> available = new ArrayList<>();
-        for (Ambulance ambulance : ambulances.values()) {
+        for (Ambulance ambulance : ordered) {
             if (ambulance.isAvailable()) {
                 available.add(ambulance);
             }
@@ -83,56 +141,82 @@ public class AmbulanceFleet {
      * Find nearest available ambulance to a location
      */
     public Ambulance findNearestAvailable(double lat, double lon) {
-        Ambulance nearest = null;
-        double minDistance = Double.MAX_VALUE;
-        
-        for (Ambulance ambulance : ambulances.values()) {
-            if (ambulance.isAvailable()) {
-                double distance = ambulance.distanceTo(lat, lon);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nearest = ambulance;
-                }
-            }
-        }
-        
-        return nearest;
+        List<Ambulance> nearest = spatialIndex.findNearest(lat, lon, 1, ALL_TYPES);
+        return nearest.isEmpty() ? null : nearest.get(0);
     }
     
     /**
      * Find N nearest available ambulances
      */
     public List<Ambulance> findNearestAvailable(double lat, double lon, int count) {
-        List<AmbulanceDistance> distances = new ArrayList<>();
-        
-        for (Ambulance ambulance : ambulances.values()) {
-            if (ambulance.isAvailable()) {
-                double distance = ambulance.distanceTo(lat, lon);
-                distances.add(new AmbulanceDistance(ambulance, distance));
+        return spatialIndex.findNearest(lat, lon, count, ALL_TYPES);
+    }
+    
+    /**
+     * Find N nearest available ambulances able to serve the required type
+     * (e.g. CRITICAL units may serve ADVANCED calls, never the reverse)
+     */
+    public List<Ambulance> findNearestAvailable(double lat, double lon, int count,
+                                                Ambulance.AmbulanceType requiredType) {
+        EnumSet<Ambulance.AmbulanceType> types = EnumSet.noneOf(Ambulance.AmbulanceType.class);
+        for (Ambulance.AmbulanceType type : Ambulance.AmbulanceType.values()) {
+            if (type.canServe(requiredType)) {
+                types.add(type);
             }
         }
-        
-        distances.sort(Comparator.comparingDouble(ad -> ad.distance));
-        
-        List<Ambulance> nearest = new ArrayList<>();
-        for (int i = 0; i < Math.min(count, distances.size()); i++) {
-            nearest.add(distances.get(i).ambulance);
+        return spatialIndex.findNearest(lat, lon, count, types);
+    }
+    
+    /**
+     * Atomically claim the nearest available ambulance able to serve the required type.
+     * If a candidate is claimed by a concurrent request first, falls back to the next one.
+     * @return the dispatched ambulance, or null if none is available
+     */
+    public Ambulance reserveNearest(double lat, double lon, Ambulance.AmbulanceType requiredType,
+                                    String emergencyId) {
+        int batch = RESERVE_CANDIDATES;
+        for (int round = 0; round < MAX_RESERVE_ROUNDS; round++) {
+            List<Ambulance> candidates = findNearestAvailable(lat, lon, batch, requiredType);
+            if (candidates.isEmpty()) {
+                return null;
+            }
+            for (Ambulance candidate : candidates) {
+                if (candidate.tryDispatch(emergencyId)) {
+                    return candidate;
+                }
+            }
+            batch *= 2; // every candidate was taken meanwhile; widen the search
         }
-        
-        return nearest;
+        return null;
+    }
+    
+    /**
+     * Atomically claim a specific ambulance
+     * @return false if it is no longer available
+     */
+    public boolean reserve(Ambulance ambulance, String emergencyId) {
+        return ambulance.tryDispatch(emergencyId);
+    }
+    
+    /**
+     * Get the spatial index of available ambulances
+     */
+    public AmbulanceSpatialIndex getSpatialIndex() {
+        return spatialIndex;
     }
     
     /**
      * Get fleet statistics
      */
     public FleetStats getStats() {
-        int total = ambulances.size();
+        int total = 0;
         int available = 0;
         int dispatched = 0;
         int transporting = 0;
         
-        for (Ambulance ambulance : ambulances.values()) {
-            switch (ambulance.status) {
+        for (Ambulance ambulance : ordered) {
+            total++;
+            switch (ambulance.getStatus()) {
                 case AVAILABLE:
                     available++;
                     break;
@@ -163,25 +247,12 @@ public class AmbulanceFleet {
             stats.total, stats.available, stats.dispatched, stats.transporting));
         
         System.out.println("\nDETAILED STATUS:");
-        for (Ambulance ambulance : ambulances.values()) {
+        for (Ambulance ambulance : ordered) {
             String statusIcon = ambulance.isAvailable() ? "✅" : "🚨";
             System.out.println(statusIcon + " " + ambulance.getDetailedStatus());
         }
     }
     
-    /**
-     * Helper class for sorting ambulances by distance
-     */
-    private static class AmbulanceDistance {
-        Ambulance ambulance;
-        double distance;
-        
-        AmbulanceDistance(Ambulance ambulance, double distance) {
-            this.ambulance = ambulance;
-            this.distance = distance;
-        }
-    }
-    
     /**
      * Fleet statistics
      */
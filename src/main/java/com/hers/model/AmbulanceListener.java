@@ -0,0 +1,25 @@
+package com.hers.model;
+
+/**
+ * Receives ambulance state changes (location and status)
+ */
+public interface AmbulanceListener {
+
+    /**
+     * Called after the ambulance moved
+     */
+    default void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+    }
+
+    /**
+     * Called after the ambulance status changed
+     */
+    default void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+    }
+
+    /**
+     * Called after the ambulance joined a fleet (fleet-wide listeners only)
+     */
+    default void onAdded(Ambulance ambulance) {
+    }
+}
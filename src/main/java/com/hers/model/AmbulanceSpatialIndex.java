@@ -0,0 +1,235 @@
+package com.hers.model;
+
+import com.hers.algorithms.TopNSelector;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moving-object grid index of available ambulances.
+ *
+ * Ambulances are bucketed by grid cell, with a separate grid per AmbulanceType.
+ * Buckets are updated in place from Ambulance location and status callbacks,
+ * so only AVAILABLE ambulances are ever indexed and queries never scan the fleet.
+ * Nearest-neighbour queries search rings of cells outwards from the query point
+ * and stop as soon as no unvisited cell can hold a closer ambulance.
+ */
+public class AmbulanceSpatialIndex implements AmbulanceListener {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.01; // ~1.1 km
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private final double cellDegrees;
+    private final Map<Ambulance.AmbulanceType, Map<Long, Set<Ambulance>>> grids;
+    private final Map<Ambulance, Long> indexedCells; // ambulance -> current cell key
+    private final Map<Ambulance.AmbulanceType, AtomicInteger> counts;
+    // Bounding box of every cell that has ever been occupied (only grows)
+    private volatile int minCellX = Integer.MAX_VALUE;
+    private volatile int maxCellX = Integer.MIN_VALUE;
+    private volatile int minCellY = Integer.MAX_VALUE;
+    private volatile int maxCellY = Integer.MIN_VALUE;
+
+    public AmbulanceSpatialIndex() {
+        this(DEFAULT_CELL_DEGREES);
+    }
+
+    public AmbulanceSpatialIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.grids = new EnumMap<>(Ambulance.AmbulanceType.class);
+        for (Ambulance.AmbulanceType type : Ambulance.AmbulanceType.values()) {
+            grids.put(type, new ConcurrentHashMap<>());
+        }
+        this.indexedCells = new ConcurrentHashMap<>();
+        this.counts = new EnumMap<>(Ambulance.AmbulanceType.class);
+        for (Ambulance.AmbulanceType type : Ambulance.AmbulanceType.values()) {
+            counts.put(type, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Start tracking an ambulance (indexed while it is available)
+     */
+    public void track(Ambulance ambulance) {
+        ambulance.addListener(this);
+        refresh(ambulance);
+    }
+
+    /**
+     * Stop tracking an ambulance
+     */
+    public void untrack(Ambulance ambulance) {
+        ambulance.removeListener(this);
+        synchronized (ambulance) {
+            remove(ambulance);
+        }
+    }
+
+    @Override
+    public void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+        refresh(ambulance);
+    }
+
+    @Override
+    public void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+        refresh(ambulance);
+    }
+
+    /**
+     * Bring the ambulance's bucket in line with its current status and location
+     */
+    private void refresh(Ambulance ambulance) {
+        synchronized (ambulance) {
+            if (!ambulance.isAvailable()) {
+                remove(ambulance);
+                return;
+            }
+
+            Ambulance.Position position = ambulance.getPosition();
+            int cx = cellX(position.lon);
+            int cy = cellY(position.lat);
+            long key = cellKey(cx, cy);
+            Long current = indexedCells.get(ambulance);
+            if (current != null && current == key) {
+                return; // moved within the same cell
+            }
+
+            remove(ambulance);
+            grids.get(ambulance.type).computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(ambulance);
+            indexedCells.put(ambulance, key);
+            counts.get(ambulance.type).incrementAndGet();
+            growBounds(cx, cy);
+        }
+    }
+
+    private void remove(Ambulance ambulance) {
+        Long key = indexedCells.remove(ambulance);
+        if (key != null) {
+            counts.get(ambulance.type).decrementAndGet();
+            Set<Ambulance> bucket = grids.get(ambulance.type).get(key);
+            if (bucket != null) {
+                bucket.remove(ambulance);
+            }
+        }
+    }
+
+    private synchronized void growBounds(int cx, int cy) {
+        if (cx < minCellX) minCellX = cx;
+        if (cx > maxCellX) maxCellX = cx;
+        if (cy < minCellY) minCellY = cy;
+        if (cy > maxCellY) maxCellY = cy;
+    }
+
+    /**
+     * Find the k nearest available ambulances of the given types, nearest first
+     */
+    public List<Ambulance> findNearest(double lat, double lon, int k, Set<Ambulance.AmbulanceType> types) {
+        List<Ambulance> result = new ArrayList<>();
+        if (k <= 0 || indexedCells.isEmpty()) {
+            return result;
+        }
+
+        List<Map<Long, Set<Ambulance>>> searchGrids = new ArrayList<>();
+        int indexed = 0;
+        for (Ambulance.AmbulanceType type : types) {
+            searchGrids.add(grids.get(type));
+            indexed += counts.get(type).get();
+        }
+        if (indexed == 0) {
+            return result;
+        }
+
+        // Best k by distance; ids index `accepted`, which only grows for candidates that made the cut
+        TopNSelector best = new TopNSelector(k);
+        List<Ambulance> accepted = new ArrayList<>();
+
+        int cx = cellX(lon);
+        int cy = cellY(lat);
+        int maxRing = Math.max(Math.max(cx - minCellX, maxCellX - cx), Math.max(cy - minCellY, maxCellY - cy));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int dxFrom = Math.max(-ring, minCellX - cx);
+            int dxTo = Math.min(ring, maxCellX - cx);
+            for (int dx = dxFrom; dx <= dxTo; dx++) {
+                int x = cx + dx;
+                boolean edgeColumn = dx == -ring || dx == ring;
+                int step = edgeColumn ? 1 : 2 * ring;
+                for (int dy = -ring; dy <= ring; dy += Math.max(1, step)) {
+                    int y = cy + dy;
+                    if (y < minCellY || y > maxCellY) {
+                        continue;
+                    }
+                    long key = cellKey(x, y);
+                    for (Map<Long, Set<Ambulance>> grid : searchGrids) {
+                        Set<Ambulance> bucket = grid.get(key);
+                        if (bucket != null) {
+                            collect(bucket, lat, lon, best, accepted);
+                        }
+                    }
+                }
+            }
+
+            // Anything in ring+1 or beyond is at least this far away
+            if (best.isFull() && best.threshold() <= ringLowerBound(lat, ring)) {
+                break;
+            }
+            if (best.size() >= indexed) {
+                break; // every indexed ambulance of these types has been seen
+            }
+        }
+
+        for (int id : best.drainSortedIds()) {
+            result.add(accepted.get(id));
+        }
+        return result;
+    }
+
+    private static void collect(Set<Ambulance> bucket, double lat, double lon, TopNSelector best,
+                                List<Ambulance> accepted) {
+        for (Ambulance ambulance : bucket) {
+            if (!ambulance.isAvailable()) {
+                continue; // status changed while we were reading
+            }
+            double distance = ambulance.distanceTo(lat, lon);
+            if (best.accepts(distance)) {
+                accepted.add(ambulance);
+                best.offer(distance, accepted.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * Minimum distance in meters from a point to any cell outside the first `ring` rings
+     */
+    private double ringLowerBound(double lat, int ring) {
+        double farthestLat = Math.min(89.0, Math.abs(lat) + (ring + 1) * cellDegrees);
+        double lonScale = Math.cos(Math.toRadians(farthestLat));
+        return ring * cellDegrees * METERS_PER_DEGREE * Math.min(1.0, lonScale);
+    }
+
+    private int cellX(double lon) {
+        return (int) Math.floor(lon / cellDegrees);
+    }
+
+    private int cellY(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get number of indexed (available) ambulances
+     */
+    public int size() {
+        return indexedCells.size();
+    }
+    
+    /**
+     * Get number of indexed (available) ambulances of one type
+     */
+    public int size(Ambulance.AmbulanceType type) {
+        return counts.get(type).get();
+    }
+}
@@ -9,8 +9,14 @@ public class Edge {
     public final double distance;  // physical distance in meters
     public final int fromNode;     // source node ID
     public boolean blocked;        // true if road is blocked
+    public final int id;           // dense edge index assigned by GraphExtractor (-1 if standalone)
     
     public Edge(int toNode, double weight, double distance, int fromNode) {
+        this(toNode, weight, distance, fromNode, -1);
+    }
+    
+    public Edge(int toNode, double weight, double distance, int fromNode, int id) {
+        this.id = id;
         this.toNode = toNode;
         this.weight = weight;
         this.distance = distance;
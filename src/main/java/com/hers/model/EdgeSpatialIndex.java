@@ -0,0 +1,170 @@
+package com.hers.model;
+
+import java.util.*;
+
+/**
+ * Grid index of road edges for "which roads are near this point" queries.
+ *
+ * Edges are treated as straight segments between their end nodes. Each edge is
+ * entered into every cell its bounding box touches, stored like the node grid in
+ * GraphExtractor as one sorted long per (cell, edge) pair so a cell is a
+ * contiguous run found by binary search.
+ */
+public class EdgeSpatialIndex {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.005; // ~550 m
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private final GraphExtractor graph;
+    private final double cellDegrees;
+    private final long[] cells;  // (cell << 32 | edgeId), sorted
+    private final int minX, minY, width, height;
+
+    public EdgeSpatialIndex(GraphExtractor graph) {
+        this(graph, DEFAULT_CELL_DEGREES);
+    }
+
+    public EdgeSpatialIndex(GraphExtractor graph, double cellDegrees) {
+        this.graph = graph;
+        this.cellDegrees = cellDegrees;
+
+        int loX = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, loY = Integer.MAX_VALUE, hiY = Integer.MIN_VALUE;
+        long entries = 0;
+        int edgeCount = graph.getEdgeCount();
+        for (int id = 0; id < edgeCount; id++) {
+            Edge edge = graph.getEdge(id);
+            Node from = graph.getNode(edge.fromNode);
+            Node to = graph.getNode(edge.toNode);
+            int x0 = cellX(Math.min(from.lon, to.lon)), x1 = cellX(Math.max(from.lon, to.lon));
+            int y0 = cellY(Math.min(from.lat, to.lat)), y1 = cellY(Math.max(from.lat, to.lat));
+            loX = Math.min(loX, x0);
+            hiX = Math.max(hiX, x1);
+            loY = Math.min(loY, y0);
+            hiY = Math.max(hiY, y1);
+            entries += (long) (x1 - x0 + 1) * (y1 - y0 + 1);
+        }
+        if (entries == 0) {
+            loX = hiX = loY = hiY = 0;
+        }
+        this.minX = loX;
+        this.minY = loY;
+        this.width = hiX - loX + 1;
+        this.height = hiY - loY + 1;
+
+        this.cells = new long[(int) entries];
+        int i = 0;
+        for (int id = 0; id < edgeCount; id++) {
+            Edge edge = graph.getEdge(id);
+            Node from = graph.getNode(edge.fromNode);
+            Node to = graph.getNode(edge.toNode);
+            int x0 = cellX(Math.min(from.lon, to.lon)), x1 = cellX(Math.max(from.lon, to.lon));
+            int y0 = cellY(Math.min(from.lat, to.lat)), y1 = cellY(Math.max(from.lat, to.lat));
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    cells[i++] = ((long) cellIndex(x, y) << 32) | id;
+                }
+            }
+        }
+        Arrays.sort(cells);
+    }
+
+    /**
+     * Find directed edges passing within radius of a point, closest first
+     * @param maxCandidates maximum number of edges returned
+     */
+    public List<EdgeCandidate> findWithin(double lat, double lon, double radiusMeters, int maxCandidates) {
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double dLat = radiusMeters / METERS_PER_DEGREE;
+        double dLon = radiusMeters / metersPerDegreeLon;
+        int x0 = Math.max(minX, cellX(lon - dLon)), x1 = Math.min(minX + width - 1, cellX(lon + dLon));
+        int y0 = Math.max(minY, cellY(lat - dLat)), y1 = Math.min(minY + height - 1, cellY(lat + dLat));
+
+        List<EdgeCandidate> result = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                long cellStart = (long) cellIndex(x, y) << 32;
+                int pos = Arrays.binarySearch(cells, cellStart);
+                if (pos < 0) {
+                    pos = -pos - 1;
+                }
+                for (; pos < cells.length && (cells[pos] >>> 32) == (cellStart >>> 32); pos++) {
+                    int edgeId = (int) cells[pos];
+                    if (!seen.add(edgeId)) {
+                        continue;
+                    }
+                    EdgeCandidate candidate = project(graph.getEdge(edgeId), lat, lon, metersPerDegreeLon);
+                    if (candidate.distance <= radiusMeters) {
+                        result.add(candidate);
+                    }
+                }
+            }
+        }
+
+        result.sort(Comparator.comparingDouble(c -> c.distance));
+        return result.size() > maxCandidates ? new ArrayList<>(result.subList(0, maxCandidates)) : result;
+    }
+
+    /**
+     * Project a point onto an edge's segment in a local flat frame
+     */
+    private EdgeCandidate project(Edge edge, double lat, double lon, double metersPerDegreeLon) {
+        Node from = graph.getNode(edge.fromNode);
+        Node to = graph.getNode(edge.toNode);
+        double ax = (from.lon - lon) * metersPerDegreeLon, ay = (from.lat - lat) * METERS_PER_DEGREE;
+        double bx = (to.lon - lon) * metersPerDegreeLon, by = (to.lat - lat) * METERS_PER_DEGREE;
+        double dx = bx - ax, dy = by - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double fraction = lengthSq == 0 ? 0.0 : Math.max(0.0, Math.min(1.0, -(ax * dx + ay * dy) / lengthSq));
+        double px = ax + fraction * dx, py = ay + fraction * dy;
+        return new EdgeCandidate(edge, fraction,
+            from.lat + fraction * (to.lat - from.lat),
+            from.lon + fraction * (to.lon - from.lon),
+            Math.sqrt(px * px + py * py));
+    }
+
+    private int cellX(double lon) {
+        return (int) Math.floor(lon / cellDegrees);
+    }
+
+    private int cellY(double lat) {
+        return (int) Math.floor(lat / cellDegrees);
+    }
+
+    private int cellIndex(int x, int y) {
+        return (x - minX) * height + (y - minY);
+    }
+
+    /**
+     * Get number of (cell, edge) entries in the index
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * A point projected onto a directed edge
+     */
+    public static class EdgeCandidate {
+        public final Edge edge;
+        public final double fraction;  // 0 at fromNode, 1 at toNode
+        public final double lat;
+        public final double lon;
+        public final double distance;  // meters from the query point
+
+        public EdgeCandidate(Edge edge, double fraction, double lat, double lon, double distance) {
+            this.edge = edge;
+            this.fraction = fraction;
+            this.lat = lat;
+            this.lon = lon;
+            this.distance = distance;
+        }
+
+        /**
+         * Node nearest to the projected point along the edge
+         */
+        public int getNearestNode() {
+            return fraction < 0.5 ? edge.fromNode : edge.toNode;
+        }
+    }
+}
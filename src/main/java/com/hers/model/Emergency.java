@@ -0,0 +1,61 @@
+package com.hers.model;
+
+/**
+ * An emergency call waiting for (or assigned to) an ambulance
+ */
+public class Emergency {
+    public final String id;
+    public final double lat;
+    public final double lon;
+    public final Patient patient;   // may be null when no assessment is available yet
+    public final Patient.SeverityLevel severity;
+    public final Ambulance.AmbulanceType requiredType;
+    public final long receivedAt;   // epoch millis
+
+    public Emergency(String id, double lat, double lon, Patient patient) {
+        this(id, lat, lon, patient, patient.severity, System.currentTimeMillis());
+    }
+
+    public Emergency(String id, double lat, double lon, Patient.SeverityLevel severity) {
+        this(id, lat, lon, null, severity, System.currentTimeMillis());
+    }
+
+    public Emergency(String id, double lat, double lon, Patient patient,
+                     Patient.SeverityLevel severity, long receivedAt) {
+        this.id = id;
+        this.lat = lat;
+        this.lon = lon;
+        this.patient = patient;
+        this.severity = severity;
+        this.requiredType = patient != null ? patient.getRequiredAmbulanceType() : requiredTypeFor(severity);
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Ambulance type needed for a severity level (same rule as Patient)
+     */
+    public static Ambulance.AmbulanceType requiredTypeFor(Patient.SeverityLevel severity) {
+        switch (severity) {
+            case CRITICAL:
+                return Ambulance.AmbulanceType.CRITICAL;
+            case SERIOUS:
+                return Ambulance.AmbulanceType.ADVANCED;
+            case MODERATE:
+            default:
+                return Ambulance.AmbulanceType.BASIC;
+        }
+    }
+
+    /**
+     * Get waiting time in seconds at the given clock time
+     */
+    public double getWaitingSeconds(long nowMillis) {
+        return Math.max(0, nowMillis - receivedAt) / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Emergency %s (%s) at (%.4f, %.4f) - needs %s",
+            id, severity, lat, lon, requiredType);
+    }
+}
@@ -0,0 +1,41 @@
+package com.hers.model;
+
+/**
+ * Distribution summary of a route's travel time from Monte Carlo sampling
+ */
+public class EtaEstimate implements Comparable<EtaEstimate> {
+    public final double expected;  // deterministic ETA from current weights, in seconds
+    public final double mean;      // sampled mean, in seconds
+    public final double p50;       // median, in seconds
+    public final double p90;       // 90th percentile, in seconds
+    public final double max;       // worst sample, in seconds
+    public final int samples;
+
+    public EtaEstimate(double expected, double mean, double p50, double p90, double max, int samples) {
+        this.expected = expected;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.max = max;
+        this.samples = samples;
+    }
+
+    /**
+     * True if the route is reachable (no blocked edges)
+     */
+    public boolean isReachable() {
+        return !Double.isInfinite(p50);
+    }
+
+    @Override
+    public int compareTo(EtaEstimate other) {
+        // Reliable arrival matters more than average arrival for dispatch
+        return Double.compare(this.p90, other.p90);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ETA p50: %.1f min | p90: %.1f min | mean: %.1f min (%d samples)",
+            p50 / 60.0, p90 / 60.0, mean / 60.0, samples);
+    }
+}
@@ -15,7 +15,18 @@ import java.util.*;
 public class GraphExtractor {
     
     private final Map<Integer, Node> nodes;
-    private final Map<Integer, List<Edge>> adjacencyList;
+    // Node ids are dense (0 .. n-1), so per-node data is indexed by id without boxing
+    private final List<Node> nodesById;
+    private final List<List<Edge>> adjacencyList;
+    private final List<List<Edge>> incomingList;
+    private final List<Edge> edgesById;
+    
+    // Node grid for nearest-node lookups: one long per node, sorted,
+    // packing (cell << 32 | nodeId) so each cell is a contiguous run
+    private static final double GRID_CELL_DEGREES = 0.01;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private long[] nodeGrid;
+    private int gridMinX, gridMaxX, gridMinY, gridMaxY;
     private final GraphHopper hopper;
     private final BaseGraph graph;
     private final NodeAccess nodeAccess;
@@ -25,7 +36,10 @@ public class GraphExtractor {
         this.graph = hopper.getBaseGraph();
         this.nodeAccess = graph.getNodeAccess();
         this.nodes = new HashMap<>();
-        this.adjacencyList = new HashMap<>();
+        this.nodesById = new ArrayList<>();
+        this.adjacencyList = new ArrayList<>();
+        this.incomingList = new ArrayList<>();
+        this.edgesById = new ArrayList<>();
         extractGraph();
     }
     
@@ -40,8 +54,11 @@ public class GraphExtractor {
         for (int i = 0; i < nodeCount; i++) {
             double lat = nodeAccess.getLat(i);
             double lon = nodeAccess.getLon(i);
-            nodes.put(i, new Node(i, lat, lon));
-            adjacencyList.put(i, new ArrayList<>());
+            Node node = new Node(i, lat, lon);
+            nodes.put(i, node);
+            nodesById.add(node);
+            adjacencyList.add(new ArrayList<>());
+            incomingList.add(new ArrayList<>());
         }
         
         // Extract all edges
@@ -57,28 +74,101 @@ public class GraphExtractor {
                 double time = distance / 13.89; // time in seconds
                 
                 // Create edge (weight = time in seconds for routing)
-                Edge edge = new Edge(toNode, time, distance, nodeId);
+                Edge edge = new Edge(toNode, time, distance, nodeId, edgeCount);
                 adjacencyList.get(nodeId).add(edge);
+                incomingList.get(toNode).add(edge);
+                edgesById.add(edge);
                 edgeCount++;
             }
         }
         
+        buildNodeGrid();
         System.out.println("Graph extracted: " + nodes.size() + " nodes, " + edgeCount + " edges");
     }
     
+    /**
+     * Bucket all nodes into grid cells for fast nearest-node queries
+     */
+    private void buildNodeGrid() {
+        nodeGrid = new long[nodes.size()];
+        gridMinX = gridMinY = Integer.MAX_VALUE;
+        gridMaxX = gridMaxY = Integer.MIN_VALUE;
+        int i = 0;
+        for (Node node : nodes.values()) {
+            int cx = cellX(node.lon);
+            int cy = cellY(node.lat);
+            gridMinX = Math.min(gridMinX, cx);
+            gridMaxX = Math.max(gridMaxX, cx);
+            gridMinY = Math.min(gridMinY, cy);
+            gridMaxY = Math.max(gridMaxY, cy);
+            nodeGrid[i++] = ((long) gridCell(cx, cy) << 32) | node.id;
+        }
+        Arrays.sort(nodeGrid);
+    }
+    
+    private static int cellX(double lon) {
+        return (int) Math.floor(lon / GRID_CELL_DEGREES);
+    }
+    
+    private static int cellY(double lat) {
+        return (int) Math.floor(lat / GRID_CELL_DEGREES);
+    }
+    
+    private static int gridCell(int cx, int cy) {
+        // 36000 x 18000 cells world-wide: each axis fits in 16 bits once offset
+        return ((cx + 18000) << 16) | (cy + 9000);
+    }
+    
     /**
      * Find nearest node to given coordinates
      */
     public int findNearestNode(double lat, double lon) {
         int nearestNode = -1;
         double minDist = Double.MAX_VALUE;
+        if (nodeGrid.length == 0) {
+            return nearestNode;
+        }
+        
+        int cx = cellX(lon);
+        int cy = cellY(lat);
+        int maxRing = Math.max(Math.max(cx - gridMinX, gridMaxX - cx), Math.max(cy - gridMinY, gridMaxY - cy));
+        // Squared equirectangular distance is exact enough at cell scale and avoids trig per node
+        double metersPerDegreeLon = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
         
-        for (Map.Entry<Integer, Node> entry : nodes.entrySet()) {
-            Node node = entry.getValue();
-            double dist = haversineDistance(lat, lon, node.lat, node.lon);
-            if (dist < minDist) {
-                minDist = dist;
-                nearestNode = entry.getKey();
+        // Search rings of cells outwards; stop once the next ring cannot hold a closer node
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int dxFrom = Math.max(-ring, gridMinX - cx);
+            int dxTo = Math.min(ring, gridMaxX - cx);
+            for (int dx = dxFrom; dx <= dxTo; dx++) {
+                int step = (dx == -ring || dx == ring) ? 1 : Math.max(1, 2 * ring);
+                for (int dy = -ring; dy <= ring; dy += step) {
+                    int y = cy + dy;
+                    if (y < gridMinY || y > gridMaxY) {
+                        continue;
+                    }
+                    long cellStart = (long) gridCell(cx + dx, y) << 32;
+                    int pos = Arrays.binarySearch(nodeGrid, cellStart);
+                    if (pos < 0) {
+                        pos = -pos - 1;
+                    }
+                    for (; pos < nodeGrid.length && (nodeGrid[pos] >>> 32) == (cellStart >>> 32); pos++) {
+                        int nodeId = (int) nodeGrid[pos];
+                        Node node = nodesById.get(nodeId);
+                        double north = (node.lat - lat) * METERS_PER_DEGREE;
+                        double east = (node.lon - lon) * metersPerDegreeLon;
+                        double dist = north * north + east * east;
+                        if (dist < minDist) {
+                            minDist = dist;
+                            nearestNode = nodeId;
+                        }
+                    }
+                }
+            }
+            
+            double farthestLat = Math.min(89.0, Math.abs(lat) + (ring + 1) * GRID_CELL_DEGREES);
+            double ringBound = ring * GRID_CELL_DEGREES * METERS_PER_DEGREE * Math.cos(Math.toRadians(farthestLat));
+            if (nearestNode >= 0 && minDist <= ringBound * ringBound) {
+                break;
             }
         }
         
@@ -89,14 +179,49 @@ public class GraphExtractor {
      * Get neighbors of a node
      */
     public List<Edge> getNeighbors(int nodeId) {
-        return adjacencyList.getOrDefault(nodeId, new ArrayList<>());
+        if (nodeId < 0 || nodeId >= adjacencyList.size()) {
+            return new ArrayList<>();
+        }
+        return adjacencyList.get(nodeId);
+    }
+    
+    /**
+     * Get edges arriving at a node (for reverse searches)
+     */
+    public List<Edge> getIncoming(int nodeId) {
+        if (nodeId < 0 || nodeId >= incomingList.size()) {
+            return Collections.emptyList();
+        }
+        return incomingList.get(nodeId);
+    }
+    
+    /**
+     * Get edge by its dense index (0 .. getEdgeCount() - 1)
+     */
+    public Edge getEdge(int edgeId) {
+        return edgesById.get(edgeId);
+    }
+    
+    /**
+     * Find the directed edge fromNode -> toNode, or null if none exists
+     */
+    public Edge findEdge(int fromNode, int toNode) {
+        for (Edge edge : getNeighbors(fromNode)) {
+            if (edge.toNode == toNode) {
+                return edge;
+            }
+        }
+        return null;
     }
     
     /**
      * Get node by ID
      */
     public Node getNode(int nodeId) {
-        return nodes.get(nodeId);
+        if (nodeId < 0 || nodeId >= nodesById.size()) {
+            return null;
+        }
+        return nodesById.get(nodeId);
     }
     
     /**
@@ -131,8 +256,6 @@ public class GraphExtractor {
      * Get total number of edges
      */
     public int getEdgeCount() {
-        return adjacencyList.values().stream()
-                .mapToInt(List::size)
-                .sum();
+        return edgesById.size();
     }
 }
\ No newline at end of file
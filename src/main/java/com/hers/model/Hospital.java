@@ -4,6 +4,20 @@ package com.hers.model;
  * Represents a hospital or medical facility
  */
 public class Hospital {
+    
+    // Capability flags, derived once from type and facilities
+    public static final int CARDIAC = 1;
+    public static final int NEURO = 1 << 1;
+    public static final int PEDIATRIC = 1 << 2;
+    public static final int PULMONARY = 1 << 3;
+    public static final int TERTIARY = 1 << 4;
+    public static final int TEACHING = 1 << 5;
+    public static final int MEDICAL_CENTER = 1 << 6;
+    public static final int GERIATRIC = 1 << 7;
+    public static final int TRAUMA = 1 << 8;
+    public static final int EMERGENCY = 1 << 9;
+    public static final int CAPABILITY_COUNT = 10;
+    
     public final String name;
     public final String type;  // "General", "Emergency", "Trauma Center", "Specialized"
     public final double lat;
@@ -11,6 +25,7 @@ public class Hospital {
     public final int capacity; // Available beds
     public final boolean hasEmergency;
     public final boolean hasTraumaCenter;
+    public final int capabilities;  // bitset of the flags above
     
     public Hospital(String name, String type, double lat, double lon, 
                    int capacity, boolean hasEmergency, boolean hasTraumaCenter) {
@@ -21,6 +36,30 @@ public class Hospital {
         this.capacity = capacity;
         this.hasEmergency = hasEmergency;
         this.hasTraumaCenter = hasTraumaCenter;
+        this.capabilities = deriveCapabilities(type, hasEmergency, hasTraumaCenter);
+    }
+    
+    /**
+     * Map the free-text type (e.g. "Cardiac Specialty", "Teaching Hospital") to capability flags
+     */
+    public static int deriveCapabilities(String type, boolean hasEmergency, boolean hasTraumaCenter) {
+        String text = type.toLowerCase();
+        int flags = 0;
+        if (text.contains("cardiac") || text.contains("heart")) flags |= CARDIAC;
+        if (text.contains("neuro") || text.contains("stroke")) flags |= NEURO;
+        if (text.contains("child") || text.contains("pediatric")) flags |= PEDIATRIC;
+        if (text.contains("pulmonary") || text.contains("respiratory")) flags |= PULMONARY;
+        if (text.contains("tertiary")) flags |= TERTIARY;
+        if (text.contains("teaching")) flags |= TEACHING;
+        if (text.contains("medical center")) flags |= MEDICAL_CENTER;
+        if (text.contains("geriatric")) flags |= GERIATRIC;
+        if (hasTraumaCenter) flags |= TRAUMA;
+        if (hasEmergency) flags |= EMERGENCY;
+        return flags;
+    }
+    
+    public boolean has(int capability) {
+        return (capabilities & capability) != 0;
     }
     
     @Override
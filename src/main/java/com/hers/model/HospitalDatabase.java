@@ -1,24 +1,63 @@
 package com.hers.model;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.hers.algorithms.TopNSelector;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
- * Database of major hospitals in Karachi with real coordinates
+ * Database of hospitals: the built-in Karachi list, or every facility in a
+ * CSV or GeoJSON file.
+ *
+ * Hospitals live in an immutable Index (a point grid stored like
+ * EdgeSpatialIndex, as sorted (cell, hospital) longs, plus emergency and
+ * trauma lists) behind a volatile reference. A reload builds a new Index and
+ * swaps it in, so readers never block and always see one consistent version;
+ * a file that fails to parse leaves the current version in place.
+ *
+ * CSV needs a header row naming its columns: name, lat, lon and optionally
+ * type, capacity (or beds), emergency and trauma. GeoJSON is a
+ * FeatureCollection of Points with the same names as properties.
  */
 public class HospitalDatabase {
     
-    private final List<Hospital> hospitals;
+    public static final double CELL_DEGREES = 0.05; // ~5.5 km, a country's facilities fit in a few thousand cells
+    private static final double METERS_PER_DEGREE = 111_320.0;
+    private static final long RELOAD_SETTLE_MILLIS = 250; // let editors and copies finish writing
+    
+    private final Path source; // null for the built-in list
+    private volatile Index index;
+    private final List<Consumer<List<Hospital>>> reloadListeners = new CopyOnWriteArrayList<>();
+    private Thread watcher;
     
     public HospitalDatabase() {
-        this.hospitals = new ArrayList<>();
-        loadKarachiHospitals();
+        this.source = null;
+        this.index = new Index(loadKarachiHospitals(), 1);
+    }
+    
+    /**
+     * Load hospitals from a .csv or .geojson/.json file
+     */
+    public HospitalDatabase(Path file) throws IOException {
+        this.source = file;
+        this.index = new Index(load(file), 1);
     }
     
     /**
      * Load major hospitals in Karachi with real coordinates
      */
-    private void loadKarachiHospitals() {
+    private static List<Hospital> loadKarachiHospitals() {
         // Major hospitals in Karachi with approximate coordinates
+        List<Hospital> hospitals = new ArrayList<>();
         
         // Saddar & Downtown area
         hospitals.add(new Hospital(
@@ -110,69 +149,498 @@ public class HospitalDatabase {
             24.8900, 67.1000,
             350, true, false
         ));
+        return hospitals;
     }
     
+    // ---- Queries (each reads the current Index once) ----
+    
     /**
      * Get all hospitals
      */
     public List<Hospital> getAllHospitals() {
-        return new ArrayList<>(hospitals);
+        return new ArrayList<>(index.hospitals);
     }
     
     /**
      * Find N nearest hospitals to given location
      */
     public List<Hospital> findNearestHospitals(double lat, double lon, int count) {
-        List<HospitalDistance> distances = new ArrayList<>();
-        
-        for (Hospital hospital : hospitals) {
-            double distance = hospital.distanceTo(lat, lon);
-            distances.add(new HospitalDistance(hospital, distance));
+        return index.findNearest(lat, lon, count);
+    }
+    
+    /**
+     * Find hospitals within a straight-line radius, nearest first
+     */
+    public List<Hospital> findWithinRadius(double lat, double lon, double radiusMeters) {
+        return index.findWithin(lat, lon, radiusMeters);
+    }
+    
+    /**
+     * Find hospitals with emergency facilities
+     */
+    public List<Hospital> findEmergencyHospitals() {
+        return new ArrayList<>(index.emergency);
+    }
+    
+    /**
+     * Find trauma centers
+     */
+    public List<Hospital> findTraumaCenters() {
+        return new ArrayList<>(index.trauma);
+    }
+    
+    /**
+     * Get total number of hospitals
+     */
+    public int getHospitalCount() {
+        return index.hospitals.size();
+    }
+    
+    /**
+     * Version of the loaded data, incremented by every successful reload
+     */
+    public long getVersion() {
+        return index.version;
+    }
+    
+    public Path getSource() {
+        return source;
+    }
+    
+    // ---- Reloading ----
+    
+    /**
+     * Called with the new hospital list after each successful reload
+     */
+    public void addReloadListener(Consumer<List<Hospital>> listener) {
+        reloadListeners.add(listener);
+    }
+    
+    /**
+     * Re-read the source file and swap in the new data
+     * @throws IOException if the file cannot be read or holds no hospitals (current data is kept)
+     */
+    public synchronized void reload() throws IOException {
+        if (source == null) {
+            return;
         }
+        Index next = new Index(load(source), index.version + 1);
+        index = next;
+        System.out.println("🏥 Reloaded " + next.hospitals.size() + " hospitals from " + source
+            + " (version " + next.version + ")");
+        for (Consumer<List<Hospital>> listener : reloadListeners) {
+            listener.accept(next.hospitals);
+        }
+    }
+    
+    /**
+     * Reload on a background thread whenever the source file is written or replaced
+     */
+    public synchronized void startWatching() throws IOException {
+        if (source == null || watcher != null) {
+            return;
+        }
+        Path directory = source.toAbsolutePath().getParent();
+        Path fileName = source.getFileName();
+        WatchService watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
         
-        // Sort by distance
-        distances.sort(Comparator.comparingDouble(hd -> hd.distance));
-        
-        // Return top N
-        List<Hospital> nearest = new ArrayList<>();
-        for (int i = 0; i < Math.min(count, distances.size()); i++) {
-            nearest.add(distances.get(i).hospital);
+        watcher = new Thread(() -> {
+            try (WatchService service = watchService) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= fileName.equals(event.context());
+                    }
+                    key.reset();
+                    if (!changed) {
+                        continue;
+                    }
+                    // One save can fire several events; wait for it to finish, then drop the rest
+                    Thread.sleep(RELOAD_SETTLE_MILLIS);
+                    WatchKey pending;
+                    while ((pending = service.poll()) != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("⚠️  Hospital reload failed, keeping version " + index.version
+                            + ": " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("⚠️  Hospital file watcher stopped: " + e.getMessage());
+            }
+        }, "hospital-db-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+    
+    public synchronized void stopWatching() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+    
+    // ---- Loading ----
+    
+    /**
+     * Read hospitals from a file, choosing the format by extension
+     */
+    public static List<Hospital> load(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        List<Hospital> hospitals;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (name.endsWith(".csv")) {
+                hospitals = readCsv(reader, file.toString());
+            } else if (name.endsWith(".geojson") || name.endsWith(".json")) {
+                hospitals = readGeoJson(reader, file.toString());
+            } else {
+                throw new IOException("Unknown hospital file format: " + file + " (expected .csv or .geojson)");
+            }
+        }
+        if (hospitals.isEmpty()) {
+            throw new IOException("No hospitals in " + file);
+        }
+        return hospitals;
+    }
+    
+    /**
+     * Read CSV with a header row; malformed rows are skipped and counted
+     */
+    static List<Hospital> readCsv(Reader input, String label) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        String header = reader.readLine();
+        if (header == null) {
+            return new ArrayList<>();
         }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+        int nameColumn = column(columns, "name");
+        int latColumn = column(columns, "lat", "latitude");
+        int lonColumn = column(columns, "lon", "lng", "longitude");
+        if (nameColumn < 0 || latColumn < 0 || lonColumn < 0) {
+            throw new IOException(label + ": header needs name, lat and lon columns, got " + header);
+        }
+        int typeColumn = column(columns, "type");
+        int capacityColumn = column(columns, "capacity", "beds");
+        int emergencyColumn = column(columns, "emergency", "hasemergency");
+        int traumaColumn = column(columns, "trauma", "hastrauma", "hastraumacenter");
         
-        return nearest;
+        List<Hospital> hospitals = new ArrayList<>();
+        int skipped = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                List<String> fields = splitCsvLine(line);
+                hospitals.add(newHospital(
+                    field(fields, nameColumn),
+                    field(fields, typeColumn),
+                    Double.parseDouble(field(fields, latColumn)),
+                    Double.parseDouble(field(fields, lonColumn)),
+                    field(fields, capacityColumn),
+                    field(fields, emergencyColumn),
+                    field(fields, traumaColumn)));
+            } catch (IllegalArgumentException e) {
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            System.err.println("⚠️  Skipped " + skipped + " malformed hospital rows in " + label);
+        }
+        return hospitals;
     }
     
     /**
-     * Find hospitals with emergency facilities
+     * Read a GeoJSON FeatureCollection of Points, one feature at a time
      */
-    public List<Hospital> findEmergencyHospitals() {
-        List<Hospital> emergency = new ArrayList<>();
-        for (Hospital hospital : hospitals) {
-            if (hospital.hasEmergency) {
-                emergency.add(hospital);
+    static List<Hospital> readGeoJson(Reader input, String label) throws IOException {
+        List<Hospital> hospitals = new ArrayList<>();
+        int skipped = 0;
+        JsonReader reader = new JsonReader(input);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"features".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
             }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                JsonElement feature = JsonParser.parseReader(reader);
+                try {
+                    hospitals.add(fromFeature(feature.getAsJsonObject()));
+                } catch (IllegalArgumentException | IllegalStateException | NullPointerException e) {
+                    skipped++;
+                }
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+        if (skipped > 0) {
+            System.err.println("⚠️  Skipped " + skipped + " malformed hospital features in " + label);
+        }
+        return hospitals;
+    }
+    
+    private static Hospital fromFeature(JsonObject feature) {
+        JsonObject geometry = feature.getAsJsonObject("geometry");
+        if (!"Point".equals(geometry.get("type").getAsString())) {
+            throw new IllegalArgumentException("Not a point");
         }
-        return emergency;
+        JsonArray coordinates = geometry.getAsJsonArray("coordinates"); // [lon, lat]
+        JsonObject properties = feature.has("properties") && feature.get("properties").isJsonObject()
+            ? feature.getAsJsonObject("properties") : new JsonObject();
+        return newHospital(
+            property(properties, "name"),
+            property(properties, "type"),
+            coordinates.get(1).getAsDouble(),
+            coordinates.get(0).getAsDouble(),
+            property(properties, "capacity", "beds"),
+            property(properties, "emergency", "hasEmergency"),
+            property(properties, "trauma", "hasTrauma", "hasTraumaCenter"));
     }
     
     /**
-     * Find trauma centers
+     * Build a hospital from raw field values (null or blank for absent optional fields)
      */
-    public List<Hospital> findTraumaCenters() {
-        List<Hospital> trauma = new ArrayList<>();
-        for (Hospital hospital : hospitals) {
-            if (hospital.hasTraumaCenter) {
-                trauma.add(hospital);
+    private static Hospital newHospital(String name, String type, double lat, double lon,
+                                        String capacity, String emergency, String trauma) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Missing name");
+        }
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            throw new IllegalArgumentException("Bad coordinates " + lat + ", " + lon);
+        }
+        return new Hospital(name.trim(),
+            type == null || type.isBlank() ? "General" : type.trim(),
+            lat, lon,
+            capacity == null || capacity.isBlank() ? 0 : (int) Double.parseDouble(capacity.trim()),
+            parseFlag(emergency),
+            parseFlag(trauma));
+    }
+    
+    private static boolean parseFlag(String value) {
+        if (value == null) {
+            return false;
+        }
+        String text = value.trim().toLowerCase();
+        return text.equals("true") || text.equals("yes") || text.equals("y") || text.equals("1");
+    }
+    
+    private static int column(Map<String, Integer> columns, String... names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    private static String field(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column) : null;
+    }
+    
+    private static String property(JsonObject properties, String... names) {
+        for (String name : names) {
+            JsonElement value = properties.get(name);
+            if (value != null && !value.isJsonNull()) {
+                return value.getAsString();
             }
         }
-        return trauma;
+        return null;
     }
     
     /**
-     * Get total number of hospitals
+     * Split one CSV line; double-quoted fields may contain commas and "" escapes
      */
-    public int getHospitalCount() {
-        return hospitals.size();
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    /**
+     * One immutable version of the data with its spatial and facility indexes
+     */
+    private static class Index {
+        final List<Hospital> hospitals;
+        final List<Hospital> emergency;
+        final List<Hospital> trauma;
+        final long version;
+        private final long[] cells;  // (cell << 32 | hospital index), sorted
+        private final int minX, minY, width, height;
+        
+        Index(List<Hospital> loaded, long version) {
+            this.hospitals = Collections.unmodifiableList(new ArrayList<>(loaded));
+            this.version = version;
+            List<Hospital> withEmergency = new ArrayList<>();
+            List<Hospital> withTrauma = new ArrayList<>();
+            int loX = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, loY = Integer.MAX_VALUE, hiY = Integer.MIN_VALUE;
+            for (Hospital hospital : hospitals) {
+                if (hospital.hasEmergency) {
+                    withEmergency.add(hospital);
+                }
+                if (hospital.hasTraumaCenter) {
+                    withTrauma.add(hospital);
+                }
+                loX = Math.min(loX, cellX(hospital.lon));
+                hiX = Math.max(hiX, cellX(hospital.lon));
+                loY = Math.min(loY, cellY(hospital.lat));
+                hiY = Math.max(hiY, cellY(hospital.lat));
+            }
+            this.emergency = Collections.unmodifiableList(withEmergency);
+            this.trauma = Collections.unmodifiableList(withTrauma);
+            if (hospitals.isEmpty()) {
+                loX = hiX = loY = hiY = 0;
+            }
+            this.minX = loX;
+            this.minY = loY;
+            this.width = hiX - loX + 1;
+            this.height = hiY - loY + 1;
+            
+            this.cells = new long[hospitals.size()];
+            for (int i = 0; i < cells.length; i++) {
+                Hospital hospital = hospitals.get(i);
+                cells[i] = ((long) cellIndex(cellX(hospital.lon), cellY(hospital.lat)) << 32) | i;
+            }
+            Arrays.sort(cells);
+        }
+        
+        /**
+         * Ring search outwards from the query cell, stopping once no unvisited cell can hold a closer hospital
+         */
+        List<Hospital> findNearest(double lat, double lon, int count) {
+            int k = Math.min(count, hospitals.size());
+            List<Hospital> result = new ArrayList<>();
+            if (k <= 0) {
+                return result;
+            }
+            TopNSelector best = new TopNSelector(k); // ids are hospital indexes
+            int cx = cellX(lon);
+            int cy = cellY(lat);
+            int maxX = minX + width - 1, maxY = minY + height - 1;
+            int maxRing = Math.max(Math.max(cx - minX, maxX - cx), Math.max(cy - minY, maxY - cy));
+            
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int dx = Math.max(-ring, minX - cx); dx <= Math.min(ring, maxX - cx); dx++) {
+                    boolean edgeColumn = dx == -ring || dx == ring;
+                    int step = edgeColumn ? 1 : Math.max(1, 2 * ring);
+                    for (int dy = -ring; dy <= ring; dy += step) {
+                        int y = cy + dy;
+                        if (y < minY || y > maxY) {
+                            continue;
+                        }
+                        int start = cellStart(cellIndex(cx + dx, y));
+                        for (int pos = start; pos < cells.length && (cells[pos] >>> 32) == (cells[start] >>> 32); pos++) {
+                            int id = (int) cells[pos];
+                            best.offer(hospitals.get(id).distanceTo(lat, lon), id);
+                        }
+                    }
+                }
+                // Anything in ring+1 or beyond is at least this far away
+                if (best.isFull() && best.threshold() <= ringLowerBound(lat, ring)) {
+                    break;
+                }
+            }
+            
+            for (int id : best.drainSortedIds()) {
+                result.add(hospitals.get(id));
+            }
+            return result;
+        }
+        
+        List<Hospital> findWithin(double lat, double lon, double radiusMeters) {
+            double metersPerDegreeLon = METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(lat)));
+            double dLat = radiusMeters / METERS_PER_DEGREE;
+            double dLon = radiusMeters / metersPerDegreeLon;
+            int x0 = Math.max(minX, cellX(lon - dLon)), x1 = Math.min(minX + width - 1, cellX(lon + dLon));
+            int y0 = Math.max(minY, cellY(lat - dLat)), y1 = Math.min(minY + height - 1, cellY(lat + dLat));
+            
+            List<HospitalDistance> found = new ArrayList<>();
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    int start = cellStart(cellIndex(x, y));
+                    for (int pos = start; pos < cells.length && (cells[pos] >>> 32) == (cells[start] >>> 32); pos++) {
+                        Hospital hospital = hospitals.get((int) cells[pos]);
+                        double distance = hospital.distanceTo(lat, lon);
+                        if (distance <= radiusMeters) {
+                            found.add(new HospitalDistance(hospital, distance));
+                        }
+                    }
+                }
+            }
+            found.sort(Comparator.comparingDouble(hd -> hd.distance));
+            List<Hospital> result = new ArrayList<>(found.size());
+            for (HospitalDistance hd : found) {
+                result.add(hd.hospital);
+            }
+            return result;
+        }
+        
+        /**
+         * First position of a cell's run, or where it would be (the run may be empty)
+         */
+        private int cellStart(int cell) {
+            int pos = Arrays.binarySearch(cells, (long) cell << 32);
+            int start = pos < 0 ? -pos - 1 : pos;
+            return start < cells.length && (cells[start] >>> 32) == cell ? start : cells.length;
+        }
+        
+        /**
+         * Minimum distance in meters from a point to any cell outside the first `ring` rings
+         */
+        private static double ringLowerBound(double lat, int ring) {
+            double farthestLat = Math.min(89.0, Math.abs(lat) + (ring + 1) * CELL_DEGREES);
+            double lonScale = Math.cos(Math.toRadians(farthestLat));
+            return ring * CELL_DEGREES * METERS_PER_DEGREE * Math.min(1.0, lonScale);
+        }
+        
+        private static int cellX(double lon) {
+            return (int) Math.floor(lon / CELL_DEGREES);
+        }
+        
+        private static int cellY(double lat) {
+            return (int) Math.floor(lat / CELL_DEGREES);
+        }
+        
+        private int cellIndex(int x, int y) {
+            return (x - minX) * height + (y - minY);
+        }
     }
     
     /**
@@ -187,4 +655,4 @@ public class HospitalDatabase {
             this.distance = distance;
         }
     }
-}
\ No newline at end of file
+}
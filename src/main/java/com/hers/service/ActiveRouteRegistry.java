@@ -0,0 +1,438 @@
+package com.hers.service;
+
+import com.hers.algorithms.AStarAlgorithm;
+import com.hers.algorithms.PathResult;
+import com.hers.model.*;
+import com.hers.simulation.TrafficListener;
+
+import java.util.*;
+
+/**
+ * Keeps the ETA of every active route current as traffic changes.
+ *
+ * Each route stores the edges still ahead of its ambulance together with the
+ * weight each edge had when the route last looked at it, and an inverted index
+ * maps edge id to the routes using it. A traffic change on one edge touches only
+ * the routes in that edge's entry: congestion adjusts their remaining time by
+ * the weight difference, a closure (or a large accumulated delay) reroutes them
+ * from the ambulance's current position. Edges the ambulance has passed leave
+ * the index, so changes behind it cost nothing.
+ *
+ * Every ETA change is appended to a numbered update log that clients poll
+ * with getUpdates(since, wait), which blocks until something newer exists.
+ */
+public class ActiveRouteRegistry implements TrafficListener {
+
+    public static final double REROUTE_CHECK_SECONDS = 60.0;  // accumulated delay that triggers a reroute check
+    public static final double REROUTE_MIN_GAIN_SECONDS = 30.0;
+    private static final int PROGRESS_WINDOW = 200;           // path nodes searched ahead on each location update
+    private static final double ON_ROUTE_METERS = 150.0;
+    private static final int MAX_BUFFERED_UPDATES = 4096;
+
+    public enum UpdateReason {
+        ETA_CHANGED,  // congestion or clearing on a route edge
+        REROUTED,     // new path around a closure or heavy delay
+        STRANDED,     // a route edge is closed and no alternative exists
+        ARRIVED,      // ambulance reached the end of its route
+        COMPLETED     // route removed by the caller or unit freed
+    }
+
+    private final GraphExtractor graph;
+    private final AStarAlgorithm aStar;
+    private final Map<String, Route> routes = new HashMap<>();
+    private final Map<String, Route> routesByAmbulance = new HashMap<>();
+    private final Map<Integer, List<Entry>> routesByEdge = new HashMap<>();
+    private final ArrayDeque<RouteUpdate> updates = new ArrayDeque<>();
+    private long sequence;
+    private long trafficChanges;
+    private long routesReevaluated;
+
+    public ActiveRouteRegistry(GraphExtractor graph, AmbulanceFleet fleet) {
+        this.graph = graph;
+        this.aStar = new AStarAlgorithm(graph);
+        fleet.addListener(new AmbulanceListener() {
+            @Override
+            public void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+                advance(ambulance);
+            }
+
+            @Override
+            public void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+                if (ambulance.isAvailable()) {
+                    completeFor(ambulance);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start tracking a route; replaces any route with the same id or the same ambulance
+     */
+    public synchronized void register(String routeId, Ambulance ambulance, PathResult path) {
+        if (!path.isPathFound()) {
+            return;
+        }
+        Route previous = routes.get(routeId);
+        if (previous != null) {
+            remove(previous);
+        }
+        previous = routesByAmbulance.get(ambulance.id);
+        if (previous != null) {
+            remove(previous);
+        }
+        Route route = new Route(routeId, ambulance);
+        setPath(route, path.path);
+        routes.put(routeId, route);
+        routesByAmbulance.put(ambulance.id, route);
+    }
+
+    /**
+     * Stop tracking a route (e.g. the unit reached the scene)
+     * @return false if the route was not active
+     */
+    public synchronized boolean complete(String routeId) {
+        Route route = routes.get(routeId);
+        if (route == null) {
+            return false;
+        }
+        remove(route);
+        publish(route, UpdateReason.COMPLETED, route.remainingSeconds, false);
+        return true;
+    }
+
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Snapshot of all active routes
+     */
+    public synchronized List<RouteStatus> getActiveRoutes() {
+        List<RouteStatus> statuses = new ArrayList<>();
+        for (Route route : routes.values()) {
+            statuses.add(route.status());
+        }
+        return statuses;
+    }
+
+    public synchronized RouteStatus getRoute(String routeId) {
+        Route route = routes.get(routeId);
+        return route == null ? null : route.status();
+    }
+
+    /**
+     * Updates with a sequence number above `since`, waiting up to waitMillis for one to appear
+     * @return updates oldest first (possibly empty); older ones may have been dropped from the buffer
+     */
+    public synchronized List<RouteUpdate> getUpdates(long since, long waitMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (sequence <= since) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return new ArrayList<>();
+            }
+            wait(remaining);
+        }
+        List<RouteUpdate> newer = new ArrayList<>();
+        Iterator<RouteUpdate> newestFirst = updates.descendingIterator();
+        while (newestFirst.hasNext()) {
+            RouteUpdate update = newestFirst.next();
+            if (update.sequence <= since) {
+                break;
+            }
+            newer.add(update);
+        }
+        Collections.reverse(newer);
+        return newer;
+    }
+
+    /**
+     * Sequence number of the newest update (0 if none)
+     */
+    public synchronized long getLatestSequence() {
+        return sequence;
+    }
+
+    /**
+     * Traffic changes seen and routes re-evaluated because of them
+     */
+    public synchronized long[] getStats() {
+        return new long[]{trafficChanges, routesReevaluated};
+    }
+
+    @Override
+    public synchronized void onTrafficChange(int fromNode, int toNode, ChangeType type, double multiplier) {
+        trafficChanges++;
+        Edge edge = graph.findEdge(fromNode, toNode);
+        if (edge == null) {
+            return;
+        }
+        List<Entry> affected = routesByEdge.get(edge.id);
+        if (affected == null) {
+            return;
+        }
+        // Rerouting edits the index, so work from a copy
+        for (Entry entry : new ArrayList<>(affected)) {
+            Route route = entry.route;
+            if (entry.position >= route.entries.length || route.entries[entry.position] != entry) {
+                continue; // rerouted earlier in this loop
+            }
+            routesReevaluated++;
+            double before = route.remainingSeconds;
+            double delta = edge.weight - route.weights[entry.position];
+            route.weights[entry.position] = edge.weight;
+            route.remainingSeconds += delta;
+            if (delta > 0) {
+                route.delaySincePlan += delta;
+            }
+
+            if (edge.blocked || route.stranded) {
+                reroute(route, before, true);
+            } else if (route.delaySincePlan >= REROUTE_CHECK_SECONDS) {
+                reroute(route, before, false);
+            } else if (delta != 0) {
+                publish(route, UpdateReason.ETA_CHANGED, before, false);
+            }
+        }
+    }
+
+    /**
+     * Move a route's progress to the path node nearest the ambulance, dropping passed edges from the index
+     */
+    private synchronized void advance(Ambulance ambulance) {
+        Route route = routesByAmbulance.get(ambulance.id);
+        if (route == null) {
+            return;
+        }
+        int last = route.nodes.length - 1;
+        int end = Math.min(last, route.progress + PROGRESS_WINDOW);
+        int nearest = route.progress;
+        double nearestMeters = Double.POSITIVE_INFINITY;
+        Ambulance.Position position = ambulance.getPosition();
+        for (int i = route.progress; i <= end; i++) {
+            Node node = graph.getNode(route.nodes[i]);
+            double meters = GraphExtractor.haversineDistance(position.lat, position.lon, node.lat, node.lon);
+            if (meters < nearestMeters) {
+                nearestMeters = meters;
+                nearest = i;
+            }
+        }
+        if (nearest == route.progress || nearestMeters > ON_ROUTE_METERS) {
+            return; // not moved along the route, or off it
+        }
+        for (int i = route.progress; i < nearest; i++) {
+            unindex(route, i);
+            route.remainingSeconds -= route.weights[i];
+        }
+        route.progress = nearest;
+        if (nearest == last) {
+            remove(route);
+            publish(route, UpdateReason.ARRIVED, 0, false);
+        }
+    }
+
+    private synchronized void completeFor(Ambulance ambulance) {
+        Route route = routesByAmbulance.get(ambulance.id);
+        if (route != null) {
+            remove(route);
+            publish(route, UpdateReason.COMPLETED, route.remainingSeconds, false);
+        }
+    }
+
+    /**
+     * Search from the ambulance's position; switch paths if the current one is closed
+     * or the new one saves enough time
+     */
+    private void reroute(Route route, double before, boolean closed) {
+        route.delaySincePlan = 0;
+        boolean currentOpen = !closed || !hasClosedEdge(route);
+        int from = route.nodes[route.progress];
+        int to = route.nodes[route.nodes.length - 1];
+        PathResult alternative = aStar.findPath(from, to);
+
+        if (!alternative.isPathFound()) {
+            if (!currentOpen) {
+                route.stranded = true;
+                publish(route, UpdateReason.STRANDED, before, false);
+            } else {
+                route.stranded = false;
+                publish(route, UpdateReason.ETA_CHANGED, before, false);
+            }
+            return;
+        }
+        if (currentOpen && alternative.totalTime > route.remainingSeconds - REROUTE_MIN_GAIN_SECONDS) {
+            route.stranded = false;
+            publish(route, UpdateReason.ETA_CHANGED, before, false); // current path is still good enough
+            return;
+        }
+        for (int i = route.progress; i < route.edges.length; i++) {
+            unindex(route, i);
+        }
+        setPath(route, alternative.path);
+        route.stranded = false;
+        route.reroutes++;
+        System.out.printf("🔀 Route %s (%s) rerouted: ETA %.1f -> %.1f min%n",
+            route.id, route.ambulance.id, before / 60.0, route.remainingSeconds / 60.0);
+        publish(route, UpdateReason.REROUTED, before, true);
+    }
+
+    private boolean hasClosedEdge(Route route) {
+        for (int i = route.progress; i < route.edges.length; i++) {
+            Edge edge = graph.getEdge(route.edges[i]);
+            if (edge.blocked) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replace a route's path and index all of its edges
+     */
+    private void setPath(Route route, List<Integer> path) {
+        int edgeCount = Math.max(0, path.size() - 1);
+        route.nodes = new int[path.size()];
+        route.edges = new int[edgeCount];
+        route.weights = new double[edgeCount];
+        route.entries = new Entry[edgeCount];
+        route.progress = 0;
+        route.remainingSeconds = 0;
+        for (int i = 0; i < path.size(); i++) {
+            route.nodes[i] = path.get(i);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            Edge edge = graph.findEdge(route.nodes[i], route.nodes[i + 1]);
+            route.edges[i] = edge.id;
+            route.weights[i] = edge.weight;
+            route.remainingSeconds += edge.weight;
+            Entry entry = new Entry(route, i);
+            route.entries[i] = entry;
+            routesByEdge.computeIfAbsent(edge.id, id -> new ArrayList<>(2)).add(entry);
+        }
+    }
+
+    private void unindex(Route route, int position) {
+        List<Entry> entries = routesByEdge.get(route.edges[position]);
+        if (entries != null) {
+            entries.remove(route.entries[position]);
+            if (entries.isEmpty()) {
+                routesByEdge.remove(route.edges[position]);
+            }
+        }
+    }
+
+    private void remove(Route route) {
+        for (int i = route.progress; i < route.edges.length; i++) {
+            unindex(route, i);
+        }
+        routes.remove(route.id);
+        routesByAmbulance.remove(route.ambulance.id, route);
+    }
+
+    private void publish(Route route, UpdateReason reason, double previousSeconds, boolean withPath) {
+        List<Integer> path = null;
+        if (withPath) {
+            path = new ArrayList<>(route.nodes.length - route.progress);
+            for (int i = route.progress; i < route.nodes.length; i++) {
+                path.add(route.nodes[i]);
+            }
+        }
+        updates.addLast(new RouteUpdate(++sequence, route.id, route.ambulance.id, reason,
+            route.stranded ? Double.POSITIVE_INFINITY : route.remainingSeconds, previousSeconds, path));
+        if (updates.size() > MAX_BUFFERED_UPDATES) {
+            updates.removeFirst();
+        }
+        notifyAll();
+    }
+
+    /**
+     * One route edge occurrence in the inverted index
+     */
+    private static class Entry {
+        final Route route;
+        final int position;
+
+        Entry(Route route, int position) {
+            this.route = route;
+            this.position = position;
+        }
+    }
+
+    private static class Route {
+        final String id;
+        final Ambulance ambulance;
+        final long startedAt = System.currentTimeMillis();
+        int[] nodes;
+        int[] edges;
+        double[] weights;         // edge weight as last seen by this route
+        Entry[] entries;
+        int progress;             // index of the path node the ambulance last passed
+        double remainingSeconds;
+        double delaySincePlan;
+        boolean stranded;
+        int reroutes;
+
+        Route(String id, Ambulance ambulance) {
+            this.id = id;
+            this.ambulance = ambulance;
+        }
+
+        RouteStatus status() {
+            List<Integer> remaining = new ArrayList<>(nodes.length - progress);
+            for (int i = progress; i < nodes.length; i++) {
+                remaining.add(nodes[i]);
+            }
+            return new RouteStatus(id, ambulance.id, stranded ? Double.POSITIVE_INFINITY : remainingSeconds,
+                stranded, reroutes, startedAt, remaining);
+        }
+    }
+
+    /**
+     * Current state of an active route
+     */
+    public static class RouteStatus {
+        public final String routeId;
+        public final String ambulanceId;
+        public final double etaSeconds;        // remaining drive time, infinite if stranded
+        public final boolean stranded;
+        public final int reroutes;
+        public final long startedAt;
+        public final List<Integer> remainingPath;
+
+        RouteStatus(String routeId, String ambulanceId, double etaSeconds, boolean stranded,
+                    int reroutes, long startedAt, List<Integer> remainingPath) {
+            this.routeId = routeId;
+            this.ambulanceId = ambulanceId;
+            this.etaSeconds = etaSeconds;
+            this.stranded = stranded;
+            this.reroutes = reroutes;
+            this.startedAt = startedAt;
+            this.remainingPath = remainingPath;
+        }
+    }
+
+    /**
+     * A change to one route's ETA or path
+     */
+    public static class RouteUpdate {
+        public final long sequence;
+        public final String routeId;
+        public final String ambulanceId;
+        public final UpdateReason reason;
+        public final double etaSeconds;
+        public final double previousEtaSeconds;
+        public final List<Integer> path;       // remaining path, only when rerouted
+        public final long timestamp = System.currentTimeMillis();
+
+        RouteUpdate(long sequence, String routeId, String ambulanceId, UpdateReason reason,
+                    double etaSeconds, double previousEtaSeconds, List<Integer> path) {
+            this.sequence = sequence;
+            this.routeId = routeId;
+            this.ambulanceId = ambulanceId;
+            this.reason = reason;
+            this.etaSeconds = etaSeconds;
+            this.previousEtaSeconds = previousEtaSeconds;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.hers.service;
+
+import com.hers.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Road-graph anchors of hospitals, stations and ambulances, snapped once and shared.
+ *
+ * Hospitals and stations never move, so they are snapped when registered
+ * (stations from a unit's position when it joins the fleet). Ambulances are
+ * re-snapped on every location update; GPS ingestion can hand over its own map
+ * match first, which is then kept as an edge position. Routing callers ask
+ * nodeOf() instead of running a nearest-node lookup per request.
+ *
+ * Every anchor records the graph generation it was snapped against. rebuild()
+ * re-snaps everything for a new graph snapshot and bumps the generation, and
+ * any anchor still on an old generation (or, for ambulances, on old
+ * coordinates) is re-snapped when read, so a lookup never returns a stale node.
+ */
+public class AnchorRegistry implements AmbulanceListener {
+
+    private volatile GraphExtractor graph;
+    private volatile long generation = 1;
+    // Hospitals are added rarely and read on every request: copy-on-write identity map
+    private volatile Map<Hospital, Anchor> hospitals = new IdentityHashMap<>();
+    private final Map<String, Anchor> stations = new ConcurrentHashMap<>();
+    private final Map<Ambulance, Anchor> ambulances = new ConcurrentHashMap<>();
+
+    public AnchorRegistry(GraphExtractor graph, List<Hospital> hospitals, AmbulanceFleet fleet) {
+        this.graph = graph;
+        anchorHospitals(hospitals);
+        for (Ambulance ambulance : fleet.getAllAmbulances()) {
+            onAdded(ambulance);
+        }
+        fleet.addListener(this);
+    }
+
+    /**
+     * Snap hospitals not anchored yet (e.g. after a hospital file reload)
+     */
+    public synchronized void anchorHospitals(Collection<Hospital> added) {
+        Map<Hospital, Anchor> next = new IdentityHashMap<>(hospitals);
+        for (Hospital hospital : added) {
+            Anchor anchor = next.get(hospital);
+            if (anchor == null || anchor.generation != generation) {
+                next.put(hospital, snap(hospital.lat, hospital.lon));
+            }
+        }
+        hospitals = next;
+    }
+
+    public int nodeOf(Hospital hospital) {
+        return getAnchor(hospital).node;
+    }
+
+    public Anchor getAnchor(Hospital hospital) {
+        Anchor anchor = hospitals.get(hospital);
+        if (anchor == null || anchor.generation != generation) {
+            anchorHospitals(Collections.singletonList(hospital));
+            anchor = hospitals.get(hospital);
+        }
+        return anchor;
+    }
+
+    public int nodeOf(Ambulance ambulance) {
+        return getAnchor(ambulance).node;
+    }
+
+    /**
+     * Anchor of the ambulance's current position
+     */
+    public Anchor getAnchor(Ambulance ambulance) {
+        Ambulance.Position position = ambulance.getPosition();
+        double lat = position.lat;
+        double lon = position.lon;
+        Anchor anchor = ambulances.get(ambulance);
+        if (anchor == null || !anchor.isFor(lat, lon, generation)) {
+            anchor = snap(lat, lon);
+            ambulances.put(ambulance, anchor);
+        }
+        return anchor;
+    }
+
+    /**
+     * Node of a station, or -1 if no unit of that station has joined the fleet
+     */
+    public int stationNode(String stationName) {
+        Anchor anchor = stations.get(stationName);
+        if (anchor == null) {
+            return -1;
+        }
+        if (anchor.generation != generation) {
+            anchor = snap(anchor.lat, anchor.lon);
+            stations.put(stationName, anchor);
+        }
+        return anchor.node;
+    }
+
+    /**
+     * Hand over a GPS map match for the position the ambulance is about to be moved to,
+     * so the location update keeps it instead of snapping again
+     */
+    public void recordMatch(Ambulance ambulance, double lat, double lon, int node, int edgeId, double snapMeters) {
+        if (node >= 0) {
+            ambulances.put(ambulance, new Anchor(node, edgeId, lat, lon, snapMeters, generation));
+        }
+    }
+
+    /**
+     * Re-snap every anchor against a new graph snapshot
+     */
+    public synchronized void rebuild(GraphExtractor newGraph) {
+        long start = System.nanoTime();
+        graph = newGraph;
+        generation++;
+        anchorHospitals(new ArrayList<>(hospitals.keySet()));
+        for (Map.Entry<String, Anchor> entry : stations.entrySet()) {
+            entry.setValue(snap(entry.getValue().lat, entry.getValue().lon));
+        }
+        for (Map.Entry<Ambulance, Anchor> entry : ambulances.entrySet()) {
+            Ambulance.Position position = entry.getKey().getPosition();
+            entry.setValue(snap(position.lat, position.lon));
+        }
+        System.out.println(String.format("📍 Re-anchored %d hospitals, %d stations, %d ambulances in %.1f ms",
+            hospitals.size(), stations.size(), ambulances.size(), (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    public GraphExtractor getGraph() {
+        return graph;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public void onAdded(Ambulance ambulance) {
+        Ambulance.Position position = ambulance.getPosition();
+        Anchor anchor = snap(position.lat, position.lon);
+        ambulances.put(ambulance, anchor);
+        // From the station's own coordinates: a unit recovered from the journal may be out on a job
+        stations.computeIfAbsent(ambulance.stationName,
+            name -> snap(ambulance.stationLat, ambulance.stationLon));
+    }
+
+    @Override
+    public void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+        getAnchor(ambulance); // keeps a GPS match recorded for this position, snaps otherwise
+    }
+
+    private Anchor snap(double lat, double lon) {
+        long snappedFor = generation; // read before the graph: rebuild() swaps the graph first
+        GraphExtractor current = graph;
+        int node = current.findNearestNode(lat, lon);
+        Node snapped = current.getNode(node);
+        double offset = snapped == null ? 0.0 : GraphExtractor.haversineDistance(lat, lon, snapped.lat, snapped.lon);
+        return new Anchor(node, -1, lat, lon, offset, snappedFor);
+    }
+
+    /**
+     * Where an entity meets the road graph
+     */
+    public static class Anchor {
+        public final int node;           // routing node
+        public final int edgeId;         // matched edge for GPS map matches, -1 for nearest-node snaps
+        public final double lat;         // position that was snapped
+        public final double lon;
+        public final double snapMeters;  // distance from the position to the road
+        public final long generation;    // graph generation the anchor belongs to
+
+        Anchor(int node, int edgeId, double lat, double lon, double snapMeters, long generation) {
+            this.node = node;
+            this.edgeId = edgeId;
+            this.lat = lat;
+            this.lon = lon;
+            this.snapMeters = snapMeters;
+            this.generation = generation;
+        }
+
+        boolean isFor(double atLat, double atLon, long currentGeneration) {
+            return generation == currentGeneration && lat == atLat && lon == atLon;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.hers.service;
+
+import com.hers.algorithms.HungarianAlgorithm;
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.PathResult;
+import com.hers.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+/**
+ * Assigns emergencies that arrive close together as one batch instead of greedily.
+ *
+ * Emergencies submitted within a short window are collected and solved together:
+ * an emergency x ambulance cost matrix holds network ETAs weighted by severity
+ * (forbidden where the ambulance type cannot serve the patient) and the minimum
+ * total cost assignment is found with the Hungarian algorithm. Candidates are the
+ * union of each emergency's batchSize + spare straight-line nearest eligible units.
+ * Each row comes from a reverse Dijkstra that is only grown as far as the solution
+ * needs, so the searches stay local even for large batches.
+ */
+public class BatchDispatcher {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 500;
+    private static final int SPARE_CANDIDATES = 8;
+    private static final int INITIAL_SETTLED = 4;    // exact ETAs per emergency before the first solve
+    private static final double EXPANSION_FACTOR = 1.25;
+    private static final double EXPANSION_SLACK_SECONDS = 60.0;
+    private static final double MAX_ETA_SECONDS = 3600.0;
+    private static final double MAX_SPEED_MPS = 13.89;     // free-flow speed used for edge weights
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final NetworkDispatcher fallback;
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private volatile AnchorRegistry anchors;
+
+    private final List<PendingEmergency> pending = new ArrayList<>(); // guarded by this
+    private ScheduledFuture<?> scheduledFlush;                         // guarded by this
+
+    public BatchDispatcher(GraphExtractor graph, AmbulanceFleet fleet) {
+        this(graph, fleet, DEFAULT_WINDOW_MILLIS);
+    }
+
+    public BatchDispatcher(GraphExtractor graph, AmbulanceFleet fleet, long windowMillis) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.fallback = new NetworkDispatcher(graph, fleet);
+        this.windowMillis = windowMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Take ambulance nodes from shared anchors instead of snapping per request
+     */
+    public void setAnchorRegistry(AnchorRegistry anchors) {
+        this.anchors = anchors;
+        fallback.setAnchorRegistry(anchors);
+    }
+
+    private int anchorOf(Ambulance ambulance) {
+        AnchorRegistry registry = anchors;
+        if (registry != null) {
+            return registry.nodeOf(ambulance);
+        }
+        Ambulance.Position position = ambulance.getPosition();
+        return graph.findNearestNode(position.lat, position.lon);
+    }
+
+    /**
+     * Queue an emergency for the current batch window
+     * @return completes with the assignment, or null if no eligible ambulance could be assigned
+     */
+    public CompletableFuture<AmbulanceAssignmentResult> submit(Emergency emergency) {
+        PendingEmergency entry = new PendingEmergency(emergency);
+        synchronized (this) {
+            pending.add(entry);
+            if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return entry.result;
+    }
+
+    /**
+     * Dispatch everything collected so far without waiting for the window to close
+     */
+    public void flush() {
+        List<PendingEmergency> batch;
+        synchronized (this) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Emergency> emergencies = new ArrayList<>();
+        for (PendingEmergency entry : batch) {
+            emergencies.add(entry.emergency);
+        }
+        try {
+            List<AmbulanceAssignmentResult> results = dispatchBatch(emergencies);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (PendingEmergency entry : batch) {
+                entry.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Solve and claim one batch immediately
+     * @return one result per emergency in input order, null where nothing could be assigned
+     */
+    public List<AmbulanceAssignmentResult> dispatchBatch(List<Emergency> emergencies) {
+        int rows = emergencies.size();
+        List<AmbulanceAssignmentResult> results = new ArrayList<>(Collections.nCopies(rows, null));
+        if (rows == 0) {
+            return results;
+        }
+        long start = System.nanoTime();
+
+        // Candidate columns: union of each emergency's nearest eligible ambulances
+        Map<Ambulance, Integer> columnOf = new LinkedHashMap<>();
+        for (Emergency emergency : emergencies) {
+            for (Ambulance ambulance : fleet.findNearestAvailable(emergency.lat, emergency.lon,
+                    rows + SPARE_CANDIDATES, emergency.requiredType)) {
+                columnOf.putIfAbsent(ambulance, columnOf.size());
+            }
+        }
+        List<Ambulance> columns = new ArrayList<>(columnOf.keySet());
+        int[] anchors = new int[columns.size()];
+        double[] snaps = new double[columns.size()];   // ambulance to its anchor node, meters
+        for (int c = 0; c < anchors.length; c++) {
+            Ambulance ambulance = columns.get(c);
+            anchors[c] = anchorOf(ambulance);
+            Node anchorNode = graph.getNode(anchors[c]);
+            snaps[c] = anchorNode == null ? 0.0 : ambulance.distanceTo(anchorNode.lat, anchorNode.lon);
+        }
+
+        Map<Integer, List<Integer>> columnsAtNode = new HashMap<>();
+        for (int c = 0; c < anchors.length; c++) {
+            columnsAtNode.computeIfAbsent(anchors[c], k -> new ArrayList<>()).add(c);
+        }
+
+        // Rows are independent searches, start them in parallel
+        RowSearch[] searches = new RowSearch[rows];
+        IntStream.range(0, rows).parallel().forEach(row -> {
+            searches[row] = new RowSearch(emergencies.get(row), columns, anchors, snaps, columnsAtNode);
+            searches[row].expand(INITIAL_SETTLED);
+        });
+
+        // Unsettled entries hold a lower bound (search frontier or straight-line time). If the optimum of this
+        // relaxed matrix only uses exact entries it is also optimal for the true matrix;
+        // otherwise grow the searches of the rows that used a bound and solve again.
+        double[][] cost = new double[rows][columns.size()];
+        int[] assignment;
+        int rounds = 0;
+        long solveNanos = 0;
+        while (true) {
+            for (int row = 0; row < rows; row++) {
+                searches[row].writeRow(cost[row]);
+            }
+            long solveStart = System.nanoTime();
+            assignment = HungarianAlgorithm.solve(cost);
+            solveNanos += System.nanoTime() - solveStart;
+            rounds++;
+
+            List<Integer> inexact = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                if (assignment[row] >= 0 && !searches[row].isExact(assignment[row])) {
+                    inexact.add(row);
+                }
+            }
+            if (inexact.isEmpty()) {
+                break;
+            }
+            // Grow a little past the bound that was used, which either settles that ambulance
+            // or raises its bound; the slack keeps the number of re-solves small
+            int[] chosen = assignment;
+            inexact.parallelStream().forEach(row ->
+                searches[row].expandPast(cost[row][chosen[row]] / searches[row].weight * EXPANSION_FACTOR
+                    + EXPANSION_SLACK_SECONDS));
+        }
+        long searchNanos = System.nanoTime() - start - solveNanos;
+
+        int assigned = 0;
+        for (int row = 0; row < rows; row++) {
+            Emergency emergency = emergencies.get(row);
+            int column = assignment[row];
+            AmbulanceAssignmentResult result = null;
+
+            if (column >= 0 && fleet.reserve(columns.get(column), emergency.id)) {
+                Ambulance ambulance = columns.get(column);
+                PathResult path = searches[row].dijkstra.toPathResult(anchors[column], "Batch-Hungarian");
+                result = new AmbulanceAssignmentResult(ambulance, path,
+                    ambulance.distanceTo(emergency.lat, emergency.lon));
+            } else if (column >= 0) {
+                // Unit was claimed by a single dispatch meanwhile: fall back to the best remaining one
+                result = fallback.dispatch(emergency.lat, emergency.lon, emergency.requiredType, emergency.id);
+            }
+
+            results.set(row, result);
+            if (result != null) {
+                assigned++;
+            }
+        }
+
+        System.out.printf("📦 Batch dispatch: %d emergencies x %d ambulances, %d assigned " +
+                "(searches %.1f ms, assignment %.1f ms in %d rounds)%n",
+            rows, columns.size(), assigned, searchNanos / 1_000_000.0, solveNanos / 1_000_000.0, rounds);
+        return results;
+    }
+
+    /**
+     * Reverse search from one emergency, grown on demand, that produces its cost row
+     */
+    private class RowSearch {
+        final IncrementalDijkstra dijkstra;
+        final int[] anchors;
+        final Map<Integer, List<Integer>> columnsAtNode;
+        final boolean[] eligible;
+        final boolean[] exact;        // ETA to this column is final
+        final double[] straightBound; // straight-line ETA lower bound per column
+        final int eligibleCount;
+        final double weight;
+        int settledEligible;
+        boolean exhausted;            // nothing further within MAX_ETA_SECONDS
+
+        RowSearch(Emergency emergency, List<Ambulance> columns, int[] anchors, double[] snaps,
+                  Map<Integer, List<Integer>> columnsAtNode) {
+            int emergencyNode = graph.findNearestNode(emergency.lat, emergency.lon);
+            this.dijkstra = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.REVERSE, emergencyNode);
+            this.anchors = anchors;
+            this.columnsAtNode = columnsAtNode;
+            this.eligible = new boolean[columns.size()];
+            this.exact = new boolean[columns.size()];
+            this.straightBound = new double[columns.size()];
+            Node node = graph.getNode(emergencyNode);
+            double emergencySnap = node == null ? 0.0
+                : GraphExtractor.haversineDistance(emergency.lat, emergency.lon, node.lat, node.lon);
+            int count = 0;
+            for (int c = 0; c < columns.size(); c++) {
+                Ambulance ambulance = columns.get(c);
+                double straight = ambulance.distanceTo(emergency.lat, emergency.lon);
+                straightBound[c] = Math.max(0.0, straight - emergencySnap - snaps[c]) / MAX_SPEED_MPS;
+                eligible[c] = ambulance.type.canServe(emergency.requiredType);
+                if (eligible[c]) {
+                    count++;
+                }
+            }
+            this.eligibleCount = count;
+            this.weight = emergency.severity.priority;
+        }
+
+        /**
+         * Settle nodes until `target` eligible ambulances have an exact ETA
+         */
+        void expand(int target) {
+            settle(Math.min(target, eligibleCount), Double.POSITIVE_INFINITY);
+        }
+
+        /**
+         * Settle every node up to the given travel time (at least one node)
+         */
+        void expandPast(double time) {
+            settle(Integer.MAX_VALUE, Math.max(time, dijkstra.peekTime()));
+        }
+
+        private void settle(int targetEligible, double maxTime) {
+            while (settledEligible < targetEligible && !exhausted && dijkstra.peekTime() <= maxTime) {
+                if (dijkstra.peekTime() > MAX_ETA_SECONDS) {
+                    exhausted = true;
+                    break;
+                }
+                int node = dijkstra.settleNext();
+                if (node < 0) {
+                    exhausted = true;
+                    break;
+                }
+                List<Integer> atNode = columnsAtNode.get(node);
+                if (atNode != null) {
+                    for (int c : atNode) {
+                        if (eligible[c]) {
+                            exact[c] = true;
+                            settledEligible++;
+                        }
+                    }
+                }
+            }
+            if (settledEligible == eligibleCount) {
+                exhausted = true;
+            }
+        }
+
+        /**
+         * Exact weighted ETA where settled, lower bound where not, FORBIDDEN if impossible
+         */
+        void writeRow(double[] row) {
+            double frontier = dijkstra.peekTime();
+            for (int c = 0; c < row.length; c++) {
+                if (!eligible[c]) {
+                    row[c] = HungarianAlgorithm.FORBIDDEN;
+                } else if (exact[c]) {
+                    row[c] = dijkstra.getTime(anchors[c]) * weight;
+                } else if (exhausted) {
+                    row[c] = HungarianAlgorithm.FORBIDDEN;
+                } else {
+                    row[c] = Math.max(frontier, straightBound[c]) * weight;
+                }
+            }
+        }
+
+        boolean isExact(int column) {
+            return exact[column];
+        }
+    }
+
+    /**
+     * Stop the window timer; emergencies still queued are dispatched first
+     */
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * An emergency waiting for its batch to be solved
+     */
+    private static class PendingEmergency {
+        final Emergency emergency;
+        final CompletableFuture<AmbulanceAssignmentResult> result = new CompletableFuture<>();
+
+        PendingEmergency(Emergency emergency) {
+            this.emergency = emergency;
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.hers.service;
+
+import com.hers.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how much demand the available ambulances can reach within a target
+ * response time, and recommends move-ups of idle units to close coverage gaps.
+ *
+ * Coverage is one bounded multi-source Dijkstra over the road network: every
+ * node keeps its travel time from the nearest available unit and which unit
+ * that is (its catchment). The search is never rerun from scratch when the fleet
+ * changes. A unit that becomes available adds a source and only re-relaxes the
+ * nodes it improves; a unit that is dispatched drops its own catchment, which is
+ * re-seeded from the neighbouring catchments' borders. Fleet changes are picked
+ * up from ambulance listeners and applied on the next query.
+ *
+ * Edge weights are read as they are during each update; call recompute() after
+ * large traffic changes so older catchments are refreshed too.
+ */
+public class CoverageAnalyzer {
+
+    public static final double DEFAULT_TARGET_SECONDS = 8 * 60.0;
+    // Karachi service area: demand outside it is zero unless set explicitly
+    public static final double SERVICE_MIN_LAT = 24.75, SERVICE_MAX_LAT = 25.10;
+    public static final double SERVICE_MIN_LON = 66.90, SERVICE_MAX_LON = 67.35;
+    private static final int CANDIDATE_UNITS = 8;     // cheapest units to move, per round
+    private static final int CANDIDATE_SITES = 6;     // most valuable posts, per round
+    private static final int PROBE = Integer.MAX_VALUE; // owner of a temporary source during what-ifs
+    private static final double MIN_GAIN = 1e-9;
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final double targetSeconds;
+    private final double[] demand;
+    private double totalDemand;
+
+    // Catchments: travel time from the nearest available unit, and that unit's index
+    private final double[] time;
+    private final int[] owner;       // -1 = not reachable within the target
+    private double coveredDemand;
+
+    private final List<Ambulance> units = new ArrayList<>();
+    private final Map<Ambulance, Integer> unitIndex = new HashMap<>();
+    private int[] unitNode = new int[16];                      // -1 while not available
+    private final Map<Integer, List<Integer>> unitsAtNode = new HashMap<>();
+    private final Map<String, Integer> sites = new LinkedHashMap<>();  // candidate posts -> node
+    private final Set<Ambulance> dirty = ConcurrentHashMap.newKeySet();
+    private AnchorRegistry anchors;  // guarded by this, null = snap per unit
+    private final AmbulanceListener listener = new AmbulanceListener() {
+        @Override
+        public void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+            if (ambulance.isAvailable()) {
+                dirty.add(ambulance);
+            }
+        }
+
+        @Override
+        public void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+            dirty.add(ambulance);
+        }
+    };
+
+    // Undo journal of (node, old time, old owner) so what-if moves can be rolled back
+    private boolean journaling;
+    private int journalSize;
+    private int[] journalNodes = new int[1024];
+    private double[] journalTimes = new double[1024];
+    private int[] journalOwners = new int[1024];
+
+    // Binary min-heap of (time, node) with lazy deletion of stale entries
+    private double[] heapTimes = new double[256];
+    private int[] heapNodes = new int[256];
+    private int heapSize;
+
+    public CoverageAnalyzer(GraphExtractor graph, AmbulanceFleet fleet) {
+        this(graph, fleet, DEFAULT_TARGET_SECONDS);
+    }
+
+    public CoverageAnalyzer(GraphExtractor graph, AmbulanceFleet fleet, double targetSeconds) {
+        this(graph, fleet, targetSeconds, null);
+    }
+
+    /**
+     * @param anchors shared unit and station anchors, used from the first sites on (may be null)
+     */
+    public CoverageAnalyzer(GraphExtractor graph, AmbulanceFleet fleet, double targetSeconds, AnchorRegistry anchors) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.targetSeconds = targetSeconds;
+        this.anchors = anchors;
+        int nodeCount = graph.getNodeCount();
+        this.demand = new double[nodeCount];
+        this.time = new double[nodeCount];
+        this.owner = new int[nodeCount];
+
+        for (int node = 0; node < nodeCount; node++) {
+            Node n = graph.getNode(node);
+            if (n != null && n.lat >= SERVICE_MIN_LAT && n.lat <= SERVICE_MAX_LAT
+                    && n.lon >= SERVICE_MIN_LON && n.lon <= SERVICE_MAX_LON) {
+                demand[node] = 1.0; // uniform per road node until real demand is loaded
+                totalDemand += 1.0;
+            }
+        }
+        registerNewUnits();
+        recompute();
+    }
+
+    /**
+     * Take unit and station nodes from shared anchors instead of snapping on every refresh
+     */
+    public synchronized void setAnchorRegistry(AnchorRegistry anchors) {
+        this.anchors = anchors;
+    }
+
+    private int anchorOf(Ambulance ambulance) {
+        if (anchors != null) {
+            return anchors.nodeOf(ambulance);
+        }
+        Ambulance.Position position = ambulance.getPosition();
+        return graph.findNearestNode(position.lat, position.lon);
+    }
+
+    /**
+     * Set the demand weight of a node (e.g. historical call counts)
+     */
+    public synchronized void setDemand(int node, double weight) {
+        totalDemand += weight - demand[node];
+        if (owner[node] != -1) {
+            coveredDemand += weight - demand[node];
+        }
+        demand[node] = weight;
+    }
+
+    /**
+     * Add a post that idle units may be moved to (stations are candidates already)
+     */
+    public synchronized void addCandidateSite(String name, double lat, double lon) {
+        sites.put(name, graph.findNearestNode(lat, lon));
+    }
+
+    /**
+     * Apply pending fleet changes incrementally
+     * @return milliseconds spent
+     */
+    public synchronized double refresh() {
+        long start = System.nanoTime();
+        registerNewUnits();
+        for (Iterator<Ambulance> it = dirty.iterator(); it.hasNext(); ) {
+            Ambulance ambulance = it.next();
+            it.remove();
+            Integer unit = unitIndex.get(ambulance);
+            if (unit != null) {
+                update(unit);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    /**
+     * Rebuild all catchments from scratch (after traffic changes)
+     */
+    public synchronized void recompute() {
+        dirty.clear();
+        unitsAtNode.clear();
+        for (int unit = 0; unit < units.size(); unit++) {
+            Ambulance ambulance = units.get(unit);
+            unitNode[unit] = -1;
+            if (ambulance.isAvailable()) {
+                attach(unit, anchorOf(ambulance));
+            }
+        }
+
+        Arrays.fill(time, Double.MAX_VALUE);
+        Arrays.fill(owner, -1);
+        coveredDemand = 0.0;
+        heapSize = 0;
+        for (int unit = 0; unit < units.size(); unit++) {
+            int node = unitNode[unit];
+            if (node >= 0 && time[node] > 0.0) {
+                set(node, 0.0, unit);
+                push(0.0, node);
+            }
+        }
+        propagate();
+    }
+
+    /**
+     * Current coverage after applying pending fleet changes
+     */
+    public synchronized CoverageSnapshot getCoverage() {
+        double updateMillis = refresh();
+        int available = 0;
+        for (int unit = 0; unit < units.size(); unit++) {
+            if (unitNode[unit] >= 0) {
+                available++;
+            }
+        }
+        return new CoverageSnapshot(targetSeconds, coveredDemand, totalDemand, available, updateMillis);
+    }
+
+    /**
+     * Travel time from the nearest available unit, or Double.MAX_VALUE beyond the target
+     */
+    public synchronized double getResponseTime(double lat, double lon) {
+        refresh();
+        return time[graph.findNearestNode(lat, lon)];
+    }
+
+    /**
+     * Greedy move-up plan: each round moves the idle unit whose relocation to a
+     * candidate post gains the most covered demand. The fleet is not changed.
+     */
+    public synchronized List<Relocation> recommendRelocations(int maxMoves) {
+        refresh();
+        List<Relocation> plan = new ArrayList<>();
+        List<int[]> applied = new ArrayList<>();  // {unit, old node} to restore afterwards
+        Set<Integer> moved = new HashSet<>();
+        double baseCovered = coveredDemand;
+        journaling = true;
+        journalSize = 0;
+
+        try {
+            for (int round = 0; round < maxMoves; round++) {
+                double before = coveredDemand;
+
+                // Units whose absence costs least
+                List<double[]> unitLoss = new ArrayList<>();
+                for (int unit = 0; unit < units.size(); unit++) {
+                    if (unitNode[unit] >= 0 && !moved.contains(unit)) {
+                        unitLoss.add(new double[]{unit, before - whatIfMove(unit, -1)});
+                    }
+                }
+                unitLoss.sort(Comparator.comparingDouble(entry -> entry[1]));
+
+                // Posts that would add most if staffed
+                List<double[]> siteGain = new ArrayList<>();
+                List<String> siteNames = new ArrayList<>(sites.keySet());
+                for (int i = 0; i < siteNames.size(); i++) {
+                    double gain = whatIfProbe(sites.get(siteNames.get(i))) - before;
+                    if (gain > MIN_GAIN) {
+                        siteGain.add(new double[]{i, gain});
+                    }
+                }
+                siteGain.sort(Comparator.comparingDouble(entry -> -entry[1]));
+
+                int bestUnit = -1;
+                int bestSite = -1;
+                double bestCovered = before + MIN_GAIN;
+                for (int u = 0; u < Math.min(CANDIDATE_UNITS, unitLoss.size()); u++) {
+                    int unit = (int) unitLoss.get(u)[0];
+                    for (int s = 0; s < Math.min(CANDIDATE_SITES, siteGain.size()); s++) {
+                        int site = (int) siteGain.get(s)[0];
+                        int siteNode = sites.get(siteNames.get(site));
+                        if (siteNode == unitNode[unit]) {
+                            continue;
+                        }
+                        double covered = whatIfMove(unit, siteNode);
+                        if (covered > bestCovered) {
+                            bestCovered = covered;
+                            bestUnit = unit;
+                            bestSite = site;
+                        }
+                    }
+                }
+                if (bestUnit < 0) {
+                    break; // no move improves coverage
+                }
+
+                String siteName = siteNames.get(bestSite);
+                int siteNode = sites.get(siteName);
+                applied.add(new int[]{bestUnit, unitNode[bestUnit]});
+                moved.add(bestUnit);
+                move(bestUnit, siteNode);
+                Node target = graph.getNode(siteNode);
+                plan.add(new Relocation(units.get(bestUnit), siteName, target.lat, target.lon,
+                    (coveredDemand - before) / totalDemand, coveredDemand / totalDemand));
+            }
+        } finally {
+            rollback(0);
+            for (int i = applied.size() - 1; i >= 0; i--) {
+                int[] entry = applied.get(i);
+                detach(entry[0]);
+                attach(entry[0], entry[1]);
+            }
+            journaling = false;
+            coveredDemand = baseCovered;
+        }
+        return plan;
+    }
+
+    /**
+     * Covered demand if the unit moved to the node (-1 = taken off duty), rolled back afterwards
+     */
+    private double whatIfMove(int unit, int node) {
+        int mark = journalSize;
+        double covered = coveredDemand;
+        int from = unitNode[unit];
+        move(unit, node);
+        double result = coveredDemand;
+        rollback(mark);
+        detach(unit);
+        attach(unit, from);
+        coveredDemand = covered;
+        return result;
+    }
+
+    /**
+     * Covered demand with one extra unit at the node, rolled back afterwards
+     */
+    private double whatIfProbe(int node) {
+        int mark = journalSize;
+        double covered = coveredDemand;
+        if (time[node] > 0.0) {
+            heapSize = 0;
+            set(node, 0.0, PROBE);
+            push(0.0, node);
+            propagate();
+        }
+        double result = coveredDemand;
+        rollback(mark);
+        coveredDemand = covered;
+        return result;
+    }
+
+    private void update(int unit) {
+        Ambulance ambulance = units.get(unit);
+        int node = ambulance.isAvailable() ? anchorOf(ambulance) : -1;
+        if (node != unitNode[unit]) {
+            move(unit, node);
+        }
+    }
+
+    /**
+     * Move a unit's source to another node (-1 removes it)
+     */
+    private void move(int unit, int node) {
+        if (unitNode[unit] >= 0) {
+            removeSource(unit);
+        }
+        if (node >= 0) {
+            addSource(unit, node);
+        }
+    }
+
+    private void addSource(int unit, int node) {
+        attach(unit, node);
+        if (time[node] > 0.0) {
+            heapSize = 0;
+            set(node, 0.0, unit);
+            push(0.0, node);
+            propagate(); // only nodes the new unit reaches faster are touched
+        }
+    }
+
+    private void removeSource(int unit) {
+        int node = unitNode[unit];
+        detach(unit);
+        if (owner[node] != unit) {
+            return; // another unit at the same node already owned it
+        }
+
+        // The unit's catchment is connected through its own shortest-path tree
+        List<Integer> region = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        set(node, Double.MAX_VALUE, -1);
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            region.add(current);
+            for (Edge edge : graph.getNeighbors(current)) {
+                if (owner[edge.toNode] == unit) {
+                    set(edge.toNode, Double.MAX_VALUE, -1);
+                    stack.push(edge.toNode);
+                }
+            }
+        }
+
+        // Re-seed from other units inside the region and from the borders of neighbouring catchments
+        heapSize = 0;
+        for (int v : region) {
+            List<Integer> here = unitsAtNode.get(v);
+            if (here != null && !here.isEmpty()) {
+                set(v, 0.0, here.get(0));
+                push(0.0, v);
+                continue;
+            }
+            double best = Double.MAX_VALUE;
+            int bestOwner = -1;
+            for (Edge edge : graph.getIncoming(v)) {
+                int from = edge.fromNode;
+                if (edge.blocked || owner[from] == -1) {
+                    continue;
+                }
+                double candidate = time[from] + edge.weight;
+                if (candidate <= targetSeconds && candidate < best) {
+                    best = candidate;
+                    bestOwner = owner[from];
+                }
+            }
+            if (bestOwner != -1) {
+                set(v, best, bestOwner);
+                push(best, v);
+            }
+        }
+        propagate();
+    }
+
+    /**
+     * Dijkstra from the heap contents, relaxing only strict improvements within the target
+     */
+    private void propagate() {
+        while (heapSize > 0) {
+            double nodeTime = heapTimes[0];
+            int node = heapNodes[0];
+            pop();
+            if (nodeTime > time[node]) {
+                continue; // stale entry
+            }
+            int source = owner[node];
+            for (Edge edge : graph.getNeighbors(node)) {
+                if (edge.blocked) {
+                    continue;
+                }
+                double candidate = nodeTime + edge.weight;
+                if (candidate <= targetSeconds && candidate < time[edge.toNode]) {
+                    set(edge.toNode, candidate, source);
+                    push(candidate, edge.toNode);
+                }
+            }
+        }
+    }
+
+    private void set(int node, double nodeTime, int unit) {
+        if (journaling) {
+            if (journalSize == journalNodes.length) {
+                journalNodes = Arrays.copyOf(journalNodes, journalSize * 2);
+                journalTimes = Arrays.copyOf(journalTimes, journalSize * 2);
+                journalOwners = Arrays.copyOf(journalOwners, journalSize * 2);
+            }
+            journalNodes[journalSize] = node;
+            journalTimes[journalSize] = time[node];
+            journalOwners[journalSize] = owner[node];
+            journalSize++;
+        }
+        boolean wasCovered = owner[node] != -1;
+        boolean covered = unit != -1;
+        if (wasCovered != covered) {
+            coveredDemand += covered ? demand[node] : -demand[node];
+        }
+        time[node] = nodeTime;
+        owner[node] = unit;
+    }
+
+    /**
+     * Undo catchment changes back to a journal mark (covered demand is restored by the caller)
+     */
+    private void rollback(int mark) {
+        for (int i = journalSize - 1; i >= mark; i--) {
+            time[journalNodes[i]] = journalTimes[i];
+            owner[journalNodes[i]] = journalOwners[i];
+        }
+        journalSize = mark;
+    }
+
+    private void attach(int unit, int node) {
+        unitNode[unit] = node;
+        if (node >= 0) {
+            unitsAtNode.computeIfAbsent(node, n -> new ArrayList<>(2)).add(unit);
+        }
+    }
+
+    private void detach(int unit) {
+        int node = unitNode[unit];
+        unitNode[unit] = -1;
+        List<Integer> here = node >= 0 ? unitsAtNode.get(node) : null;
+        if (here != null) {
+            here.remove(Integer.valueOf(unit));
+            if (here.isEmpty()) {
+                unitsAtNode.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Start tracking ambulances added to the fleet since the last call; each
+     * unit's station becomes a candidate post
+     */
+    private void registerNewUnits() {
+        List<Ambulance> all = fleet.getAllAmbulances();
+        if (all.size() == units.size()) {
+            return;
+        }
+        for (Ambulance ambulance : all) {
+            if (unitIndex.containsKey(ambulance)) {
+                continue;
+            }
+            int unit = units.size();
+            units.add(ambulance);
+            unitIndex.put(ambulance, unit);
+            if (unit == unitNode.length) {
+                unitNode = Arrays.copyOf(unitNode, unit * 2);
+            }
+            unitNode[unit] = -1;
+            if (!sites.containsKey(ambulance.stationName)) {
+                int station = anchors != null ? anchors.stationNode(ambulance.stationName) : -1;
+                sites.put(ambulance.stationName, station >= 0 ? station
+                    : graph.findNearestNode(ambulance.stationLat, ambulance.stationLon));
+            }
+            ambulance.addListener(listener);
+            dirty.add(ambulance);
+        }
+    }
+
+    private void push(double nodeTime, int node) {
+        if (heapSize == heapTimes.length) {
+            heapTimes = Arrays.copyOf(heapTimes, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapTimes[parent] <= nodeTime) {
+                break;
+            }
+            heapTimes[i] = heapTimes[parent];
+            heapNodes[i] = heapNodes[parent];
+            i = parent;
+        }
+        heapTimes[i] = nodeTime;
+        heapNodes[i] = node;
+    }
+
+    private void pop() {
+        double nodeTime = heapTimes[--heapSize];
+        int node = heapNodes[heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heapTimes[child + 1] < heapTimes[child]) {
+                child++;
+            }
+            if (nodeTime <= heapTimes[child]) {
+                break;
+            }
+            heapTimes[i] = heapTimes[child];
+            heapNodes[i] = heapNodes[child];
+            i = child;
+        }
+        heapTimes[i] = nodeTime;
+        heapNodes[i] = node;
+    }
+
+    public double getTargetSeconds() {
+        return targetSeconds;
+    }
+
+    /**
+     * Coverage at one point in time
+     */
+    public static class CoverageSnapshot {
+        public final double targetSeconds;
+        public final double coveredDemand;
+        public final double totalDemand;
+        public final double coverage;        // covered share of demand, 0..1
+        public final int availableUnits;
+        public final double updateMillis;    // time spent applying fleet changes for this query
+
+        CoverageSnapshot(double targetSeconds, double coveredDemand, double totalDemand,
+                         int availableUnits, double updateMillis) {
+            this.targetSeconds = targetSeconds;
+            this.coveredDemand = coveredDemand;
+            this.totalDemand = totalDemand;
+            this.coverage = totalDemand <= 0 ? 0.0 : coveredDemand / totalDemand;
+            this.availableUnits = availableUnits;
+            this.updateMillis = updateMillis;
+        }
+    }
+
+    /**
+     * Recommended move of one idle unit
+     */
+    public static class Relocation {
+        public final Ambulance ambulance;
+        public final String toSite;
+        public final double lat;
+        public final double lon;
+        public final double coverageGain;    // share of demand gained by this move
+        public final double coverageAfter;   // share covered after this and earlier moves
+
+        Relocation(Ambulance ambulance, String toSite, double lat, double lon,
+                   double coverageGain, double coverageAfter) {
+            this.ambulance = ambulance;
+            this.toSite = toSite;
+            this.lat = lat;
+            this.lon = lon;
+            this.coverageGain = coverageGain;
+            this.coverageAfter = coverageAfter;
+        }
+    }
+}
@@ -0,0 +1,686 @@
+package com.hers.service;
+
+import com.hers.model.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of fleet state so a restart keeps every active assignment.
+ *
+ * Each unit registration, status change and position change is appended as a
+ * checksummed record to a memory-mapped segment file. An append is a copy into
+ * the mapping under a lock; a background thread forces dirty pages to disk every
+ * few milliseconds (group commit), so dispatch threads never wait for the disk.
+ * Callers that must not acknowledge before the write is durable use awaitDurable().
+ *
+ * Records carry the unit's absolute state read under the journal lock, so replay
+ * is idempotent and the last record per unit wins. Snapshots of the whole fleet
+ * are written periodically and let older segments be deleted. On startup the
+ * newest valid snapshot is loaded, later records are replayed up to the first
+ * torn or corrupt one, and the result is applied to the AmbulanceFleet before
+ * the journal starts listening.
+ *
+ * Segment record layout:
+ *   int body length (0 = end of segment), int CRC32C of body,
+ *   body: long sequence, long epoch millis, byte type, short id length, id bytes,
+ *   then REGISTER: short station length, station bytes, byte unit type, double lat, double lon
+ *        STATUS:   byte status, short assignment length (-1 = none), assignment bytes
+ *        LOCATION: double lat, double lon
+ */
+public class DispatchJournal implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_MILLIS = 5;
+    public static final long DEFAULT_SNAPSHOT_EVERY = 200_000;   // records between snapshots
+
+    static final int SNAPSHOT_MAGIC = 0x48534E50; // "HSNP"
+    static final short VERSION = 2;               // 2 added station coordinates to snapshots
+    static final byte TYPE_REGISTER = 1;
+    static final byte TYPE_STATUS = 2;
+    static final byte TYPE_LOCATION = 3;
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String PREALLOCATED = "segment.prealloc";
+    private static final Ambulance.AmbulanceStatus[] STATUSES = Ambulance.AmbulanceStatus.values();
+    private static final Ambulance.AmbulanceType[] TYPES = Ambulance.AmbulanceType.values();
+
+    private final File directory;
+    private final AmbulanceFleet fleet;
+    private final int segmentBytes;
+    private final long snapshotEvery;
+    private final ScheduledExecutorService flusher;
+    private final CRC32C crc = new CRC32C();
+    private final Map<String, byte[]> encodedIds = new HashMap<>();
+    private final Map<String, StatusMark> lastStatus = new HashMap<>();   // latest status record per unit
+    private final List<Segment> retiring = new ArrayList<>();
+    private final RecoveryStats recovery;
+    private ByteBuffer scratch = ByteBuffer.allocate(512);
+    private Segment current;
+    private Segment preallocated;
+    private long lastSequence;
+    private long durableSequence;
+    private long snapshotSequence;
+    private boolean closed;
+    private IOException failure;
+
+    private final AmbulanceListener listener = new AmbulanceListener() {
+        @Override
+        public void onAdded(Ambulance ambulance) {
+            append(TYPE_REGISTER, ambulance);
+        }
+
+        @Override
+        public void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+            append(TYPE_STATUS, ambulance);
+        }
+
+        @Override
+        public void onLocationChanged(Ambulance ambulance, double oldLat, double oldLon) {
+            append(TYPE_LOCATION, ambulance);
+        }
+    };
+
+    public DispatchJournal(File directory, AmbulanceFleet fleet) throws IOException {
+        this(directory, fleet, DEFAULT_SEGMENT_BYTES, DEFAULT_FLUSH_MILLIS, DEFAULT_SNAPSHOT_EVERY);
+    }
+
+    /**
+     * Recover the fleet from the journal in `directory`, then start journaling it
+     */
+    public DispatchJournal(File directory, AmbulanceFleet fleet, int segmentBytes,
+                           long flushMillis, long snapshotEvery) throws IOException {
+        this.directory = directory;
+        this.fleet = fleet;
+        this.segmentBytes = segmentBytes;
+        this.snapshotEvery = snapshotEvery;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        Files.deleteIfExists(new File(directory, PREALLOCATED).toPath());
+
+        this.recovery = recover();
+        this.lastSequence = recovery.lastSequence;
+        this.durableSequence = lastSequence;
+        this.snapshotSequence = recovery.snapshotSequence;
+        this.current = openSegment(lastSequence + 1, null);
+        fleet.addListener(listener);
+        if (recovery.recordsReplayed > 0) {
+            snapshot(); // start the next recovery from here
+        }
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dispatch-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAndMaintain, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public RecoveryStats getRecoveryStats() {
+        return recovery;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Sequence to await so the unit's status record for this assignment is on disk:
+     * its latest status record, which is that one or a later one. -1 if the record
+     * was never written (appends stop for good once the journal fails or closes).
+     */
+    public synchronized long getStatusSequence(Ambulance ambulance, String assignment) {
+        StatusMark mark = lastStatus.get(ambulance.id);
+        if (mark == null) {
+            return -1;
+        }
+        boolean written = Objects.equals(mark.assignment, assignment) || (!closed && failure == null);
+        return written ? mark.sequence : -1;
+    }
+
+    /**
+     * Wait until every record up to `sequence` is on disk
+     * @return false on timeout, or if the journal failed or was closed first
+     */
+    public synchronized boolean awaitDurable(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (durableSequence < sequence && !closed && failure == null) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return durableSequence >= sequence;
+    }
+
+    /**
+     * Write a snapshot of the whole fleet and drop the segments it makes redundant
+     */
+    public void snapshot() throws IOException {
+        long sequence;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        synchronized (this) {
+            sequence = lastSequence;
+            List<Ambulance> units = fleet.getAllAmbulances();
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(sequence);
+            out.writeInt(units.size());
+            for (Ambulance ambulance : units) {
+                Ambulance.State state = ambulance.getState();
+                String assignment = state.assignment;
+                out.writeUTF(ambulance.id);
+                out.writeUTF(ambulance.stationName);
+                out.writeDouble(ambulance.stationLat);
+                out.writeDouble(ambulance.stationLon);
+                out.writeByte(ambulance.type.ordinal());
+                Ambulance.Position position = ambulance.getPosition();
+                out.writeDouble(position.lat);
+                out.writeDouble(position.lon);
+                out.writeByte(state.status.ordinal());
+                out.writeBoolean(assignment != null);
+                if (assignment != null) {
+                    out.writeUTF(assignment);
+                }
+            }
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes.toByteArray());
+        out.writeInt((int) checksum.getValue());
+
+        File target = new File(directory, String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            bytes.writeTo(file);
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        synchronized (this) {
+            snapshotSequence = Math.max(snapshotSequence, sequence);
+        }
+
+        for (File old : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (firstSequence(old, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < sequence) {
+                Files.deleteIfExists(old.toPath());
+            }
+        }
+        // A segment is redundant once the next one starts at or before the snapshot
+        List<File> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1), SEGMENT_PREFIX, SEGMENT_SUFFIX) <= sequence + 1) {
+                Files.deleteIfExists(segments.get(i).toPath());
+            }
+        }
+    }
+
+    /**
+     * Stop journaling and force everything written so far to disk
+     */
+    @Override
+    public void close() {
+        fleet.removeListener(listener);
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAndMaintain();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            try {
+                current.channel.close();
+                if (preallocated != null) {
+                    preallocated.channel.close();
+                    Files.deleteIfExists(preallocated.file.toPath());
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ Closing dispatch journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Append the unit's current state (runs on the thread that changed it)
+     */
+    private synchronized void append(byte type, Ambulance ambulance) {
+        if (closed || failure != null) {
+            return;
+        }
+        long sequence = lastSequence + 1;
+        byte[] id = encodedIds.computeIfAbsent(ambulance.id, key -> key.getBytes(StandardCharsets.UTF_8));
+        Ambulance.State state = ambulance.getState();
+        String text = type == TYPE_REGISTER ? ambulance.stationName
+            : type == TYPE_STATUS ? state.assignment : null;
+        byte[] extra = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+        int needed = 40 + id.length + (extra == null ? 0 : extra.length);
+        if (needed > scratch.capacity()) {
+            scratch = ByteBuffer.allocate(needed * 2);
+        }
+        ByteBuffer body = scratch;
+        body.clear();
+        body.putLong(sequence);
+        body.putLong(System.currentTimeMillis());
+        body.put(type);
+        body.putShort((short) id.length);
+        body.put(id);
+        if (type == TYPE_REGISTER) {
+            body.putShort((short) extra.length);
+            body.put(extra);
+            body.put((byte) ambulance.type.ordinal());
+            body.putDouble(ambulance.stationLat);
+            body.putDouble(ambulance.stationLon);
+        } else if (type == TYPE_STATUS) {
+            body.put((byte) state.status.ordinal());
+            if (extra == null) {
+                body.putShort((short) -1);
+            } else {
+                body.putShort((short) extra.length);
+                body.put(extra);
+            }
+        } else {
+            Ambulance.Position position = ambulance.getPosition();
+            body.putDouble(position.lat);
+            body.putDouble(position.lon);
+        }
+        int length = body.position();
+        crc.reset();
+        crc.update(body.array(), 0, length);
+
+        try {
+            if (current.writePosition + RECORD_HEADER_BYTES + length > segmentBytes) {
+                roll(sequence);
+            }
+        } catch (IOException e) {
+            failure = e;
+            notifyAll();
+            System.err.println("❌ Dispatch journal stopped: " + e.getMessage());
+            return;
+        }
+        MappedByteBuffer mapped = current.buffer;
+        int position = current.writePosition;
+        mapped.put(position + RECORD_HEADER_BYTES, body.array(), 0, length);
+        mapped.putInt(position + 4, (int) crc.getValue());
+        mapped.putInt(position, length); // length last: a zero length marks the end until the record is whole
+        current.writePosition = position + RECORD_HEADER_BYTES + length;
+        lastSequence = sequence;
+        if (type == TYPE_STATUS) {
+            lastStatus.put(ambulance.id, new StatusMark(state.assignment, sequence));
+        }
+    }
+
+    /**
+     * Move appends to a fresh segment starting at `sequence`; the old one is forced by the flusher
+     */
+    private void roll(long sequence) throws IOException {
+        retiring.add(current);
+        current = openSegment(sequence, preallocated);
+        preallocated = null;
+    }
+
+    private Segment openSegment(long firstSequence, Segment prepared) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        if (prepared != null) {
+            Files.move(prepared.file.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            prepared.file = file;
+            return prepared;
+        }
+        Files.deleteIfExists(file.toPath()); // left over from a crash before its first record was whole
+        return mapSegment(file);
+    }
+
+    private Segment mapSegment(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        return new Segment(file, channel, buffer);
+    }
+
+    /**
+     * Group commit: force what was appended since the last pass, then prepare the
+     * next segment and snapshot if due (runs on the flusher thread)
+     */
+    private void flushAndMaintain() {
+        try {
+            Segment segment;
+            int end;
+            long sequence;
+            List<Segment> retired;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                segment = current;
+                end = current.writePosition;
+                sequence = lastSequence;
+                retired = new ArrayList<>(retiring);
+                retiring.clear();
+            }
+            for (Segment old : retired) {
+                old.buffer.force(old.forcedTo, old.writePosition - old.forcedTo);
+                old.channel.close();
+            }
+            if (end > segment.forcedTo) {
+                segment.buffer.force(segment.forcedTo, end - segment.forcedTo);
+                segment.forcedTo = end;
+            }
+            synchronized (this) {
+                if (sequence > durableSequence) {
+                    durableSequence = sequence;
+                    notifyAll();
+                }
+            }
+
+            boolean needSegment;
+            boolean needSnapshot;
+            synchronized (this) {
+                needSegment = preallocated == null && current.writePosition > segmentBytes / 4 * 3;
+                needSnapshot = lastSequence - snapshotSequence >= snapshotEvery;
+            }
+            if (needSegment) {
+                Segment next = mapSegment(new File(directory, PREALLOCATED));
+                synchronized (this) {
+                    preallocated = next;
+                }
+            }
+            if (needSnapshot) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+            System.err.println("❌ Dispatch journal flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Newest valid snapshot plus every intact record after it, applied to the fleet
+     */
+    private RecoveryStats recover() throws IOException {
+        long start = System.nanoTime();
+        Map<String, UnitState> units = new LinkedHashMap<>();
+        long snapshotSequence = 0;
+        List<File> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Long loaded = readSnapshot(snapshots.get(i), units);
+            if (loaded != null) {
+                snapshotSequence = loaded;
+                break;
+            }
+            units.clear();
+            System.err.println("⚠️ Ignoring corrupt snapshot " + snapshots.get(i).getName());
+        }
+
+        long expected = snapshotSequence + 1;
+        long replayed = 0;
+        boolean intact = true;
+        for (File file : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (firstSequence(file, SEGMENT_PREFIX, SEGMENT_SUFFIX) > expected) {
+                intact = false; // records are missing between segments
+                break;
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long[] next = {expected};
+                replayed += readSegment(buffer, next, snapshotSequence, units);
+                expected = next[0];
+            }
+        }
+
+        int restored = 0;
+        for (UnitState state : units.values()) {
+            if (state.apply(fleet)) {
+                restored++;
+            }
+        }
+        RecoveryStats stats = new RecoveryStats(snapshotSequence, expected - 1, replayed, restored, intact,
+            (System.nanoTime() - start) / 1_000_000.0);
+        if (snapshotSequence > 0 || replayed > 0) {
+            System.out.printf("💾 Journal recovered: snapshot @%d + %d records, %d units restored in %.1f ms%s%n",
+                snapshotSequence, replayed, restored, stats.millis, intact ? "" : " (gap in journal)");
+        }
+        return stats;
+    }
+
+    /**
+     * Replay one segment into `units` until the end marker or the first bad record
+     * @param next in: sequence expected first, out: sequence after the last good record
+     */
+    private static long readSegment(ByteBuffer buffer, long[] next, long snapshotSequence,
+                                    Map<String, UnitState> units) {
+        CRC32C checksum = new CRC32C();
+        long replayed = 0;
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > buffer.limit()) {
+                break; // end of segment, or a record cut short by a crash
+            }
+            ByteBuffer body = buffer.slice(position + RECORD_HEADER_BYTES, length);
+            checksum.reset();
+            checksum.update(body.duplicate());
+            if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+                break; // torn write
+            }
+            long sequence = body.getLong();
+            if (sequence > snapshotSequence) {
+                if (sequence != next[0]) {
+                    break;
+                }
+                body.getLong(); // timestamp
+                byte type = body.get();
+                String id = readString(body);
+                UnitState state = units.computeIfAbsent(id, UnitState::new);
+                if (type == TYPE_REGISTER) {
+                    state.station = readString(body);
+                    state.type = TYPES[body.get()];
+                    state.lat = state.stationLat = body.getDouble();
+                    state.lon = state.stationLon = body.getDouble();
+                    state.located = true;
+                } else if (type == TYPE_STATUS) {
+                    state.status = STATUSES[body.get()];
+                    state.assignment = readString(body);
+                } else if (type == TYPE_LOCATION) {
+                    state.lat = body.getDouble();
+                    state.lon = body.getDouble();
+                    state.located = true;
+                }
+                next[0] = sequence + 1;
+                replayed++;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        return replayed;
+    }
+
+    private static String readString(ByteBuffer body) {
+        short length = body.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the snapshot's sequence, or null if the file is damaged
+     */
+    private static Long readSnapshot(File file, Map<String, UnitState> units) {
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            if (bytes.length < 4) {
+                return null;
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(bytes, 0, bytes.length - 4);
+            if ((int) checksum.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                return null;
+            }
+            short version = in.readShort();
+            if (version < 1 || version > VERSION) {
+                return null;
+            }
+            long sequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UnitState state = new UnitState(in.readUTF());
+                state.station = in.readUTF();
+                if (version >= 2) {
+                    state.stationLat = in.readDouble();
+                    state.stationLon = in.readDouble();
+                }
+                state.type = TYPES[in.readByte()];
+                state.lat = in.readDouble();
+                state.lon = in.readDouble();
+                state.located = true;
+                state.status = STATUSES[in.readByte()];
+                state.assignment = in.readBoolean() ? in.readUTF() : null;
+                units.put(state.id, state);
+            }
+            return sequence;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Files with the given prefix and suffix, ordered by the sequence in their name
+     */
+    private List<File> list(String prefix, String suffix) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+        List<File> sorted = new ArrayList<>(files == null ? Collections.emptyList() : Arrays.asList(files));
+        sorted.sort(Comparator.comparingLong(file -> firstSequence(file, prefix, suffix)));
+        return sorted;
+    }
+
+    private static long firstSequence(File file, String prefix, String suffix) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static class Segment {
+        File file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;   // guarded by the journal lock
+        int forcedTo;        // flusher thread only
+
+        Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Latest journaled state of one unit
+     */
+    private static class UnitState {
+        final String id;
+        String station;
+        double stationLat = Double.NaN;   // unknown in version 1 snapshots
+        double stationLon = Double.NaN;
+        Ambulance.AmbulanceType type;
+        double lat;
+        double lon;
+        boolean located;
+        Ambulance.AmbulanceStatus status;
+        String assignment;
+
+        UnitState(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Put the unit into this state, adding it to the fleet if it was onboarded at runtime
+         * @return false if the unit is unknown to the fleet and was never registered
+         */
+        boolean apply(AmbulanceFleet fleet) {
+            Ambulance ambulance = fleet.getAmbulance(id);
+            if (ambulance == null) {
+                if (station == null) {
+                    return false;
+                }
+                boolean stationKnown = !Double.isNaN(stationLat);
+                ambulance = fleet.addAmbulance(id, station, stationKnown ? stationLat : lat,
+                    stationKnown ? stationLon : lon, type);
+            }
+            if (located) {
+                ambulance.updateLocation(lat, lon);
+            }
+            if (status != null) {
+                ambulance.makeAvailable();
+                if (status != Ambulance.AmbulanceStatus.AVAILABLE) {
+                    if (assignment != null) {
+                        ambulance.tryDispatch(assignment);
+                        ambulance.compareAndSetStatus(Ambulance.AmbulanceStatus.DISPATCHED, status);
+                    } else {
+                        ambulance.compareAndSetStatus(Ambulance.AmbulanceStatus.AVAILABLE, status);
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Latest status record written for a unit
+     */
+    private static class StatusMark {
+        final String assignment;
+        final long sequence;
+
+        StatusMark(String assignment, long sequence) {
+            this.assignment = assignment;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * What startup recovery found
+     */
+    public static class RecoveryStats {
+        public final long snapshotSequence;
+        public final long lastSequence;
+        public final long recordsReplayed;
+        public final int unitsRestored;
+        public final boolean intact;       // false if records were missing between segments
+        public final double millis;
+
+        RecoveryStats(long snapshotSequence, long lastSequence, long recordsReplayed,
+                      int unitsRestored, boolean intact, double millis) {
+            this.snapshotSequence = snapshotSequence;
+            this.lastSequence = lastSequence;
+            this.recordsReplayed = recordsReplayed;
+            this.unitsRestored = unitsRestored;
+            this.intact = intact;
+            this.millis = millis;
+        }
+    }
+}
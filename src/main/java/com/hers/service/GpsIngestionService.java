@@ -0,0 +1,323 @@
+package com.hers.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hers.model.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Ingests ambulance GPS pings and applies them to the fleet once per tick.
+ *
+ * Pings are parsed straight from the request stream (NDJSON or a compact binary
+ * format) into a map holding only the newest ping per vehicle, so memory is bounded
+ * by fleet size no matter how fast pings arrive. Every tick the pending pings are
+ * drained, snapped to the road graph and applied via Ambulance.updateLocation
+ * (which keeps the spatial index current). Each vehicle's position is published
+ * atomically, but a tick is applied vehicle by vehicle: dispatchers reading the
+ * fleet mid-tick may see some vehicles at their new positions and others not yet,
+ * just as if those pings had arrived a moment later.
+ */
+public class GpsIngestionService {
+
+    public static final long DEFAULT_TICK_MILLIS = 1000;
+    public static final double MAX_SNAP_METERS = 150.0;  // farther pings are kept as reported
+    public static final int BINARY_MAGIC = 0x48475053;   // "HGPS"
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final long tickMillis;
+    private final ConcurrentHashMap<String, GpsPing> pending = new ConcurrentHashMap<>();
+    private final Map<String, Long> appliedAt = new HashMap<>();   // newest applied ping per vehicle (tick only)
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private volatile HmmMapMatcher mapMatcher;  // null = nearest-node snapping
+    private volatile AnchorRegistry anchors;
+    private ScheduledExecutorService scheduler;
+
+    public GpsIngestionService(GraphExtractor graph, AmbulanceFleet fleet) {
+        this(graph, fleet, DEFAULT_TICK_MILLIS);
+    }
+
+    public GpsIngestionService(GraphExtractor graph, AmbulanceFleet fleet, long tickMillis) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.tickMillis = tickMillis;
+    }
+
+    /**
+     * Match pings onto road edges with an HMM instead of snapping to the nearest node
+     */
+    public void setMapMatcher(HmmMapMatcher mapMatcher) {
+        this.mapMatcher = mapMatcher;
+    }
+
+    /**
+     * Hand each snapped position to the shared anchors, so they reuse the match
+     */
+    public void setAnchorRegistry(AnchorRegistry anchors) {
+        this.anchors = anchors;
+    }
+
+    /**
+     * Start applying pings every tick
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "gps-ingestion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::safeTick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Queue one ping; older pings for the same vehicle within the tick are superseded
+     * @return false if the vehicle is unknown or the ping is invalid
+     */
+    public boolean offer(String ambulanceId, double lat, double lon, long timestamp) {
+        received.incrementAndGet();
+        if (ambulanceId == null || fleet.getAmbulance(ambulanceId) == null
+                || Double.isNaN(lat) || Double.isNaN(lon) || Math.abs(lat) > 90 || Math.abs(lon) > 180) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        GpsPing ping = new GpsPing(ambulanceId, lat, lon, timestamp);
+        pending.merge(ambulanceId, ping, (queued, latest) -> {
+            coalesced.incrementAndGet();
+            return latest.timestamp >= queued.timestamp ? latest : queued; // keep the newest
+        });
+        return true;
+    }
+
+    /**
+     * Read newline-delimited JSON pings: {"id":"AMB-001","lat":24.86,"lon":67.01,"ts":1700000000000}
+     * @return number of pings accepted
+     */
+    public int ingestNdjson(Reader input) throws IOException {
+        JsonReader reader = new JsonReader(input);
+        reader.setLenient(true); // allows a stream of top-level objects
+        int accepted = 0;
+
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+            String id = null;
+            double lat = Double.NaN;
+            double lon = Double.NaN;
+            long timestamp = System.currentTimeMillis();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "lat":
+                        lat = reader.nextDouble();
+                        break;
+                    case "lon":
+                        lon = reader.nextDouble();
+                        break;
+                    case "ts":
+                        timestamp = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (offer(id, lat, lon, timestamp)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Read binary pings: int magic, int count, then per ping UTF id, double lat, double lon, long timestamp
+     * @return number of pings accepted
+     */
+    public int ingestBinary(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != BINARY_MAGIC) {
+            throw new IOException("Not a GPS ping batch");
+        }
+        int count = in.readInt();
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            String id = in.readUTF();
+            double lat = in.readDouble();
+            double lon = in.readDouble();
+            long timestamp = in.readLong();
+            if (offer(id, lat, lon, timestamp)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Write pings in the binary format read by ingestBinary (for vehicle gateways and tests)
+     */
+    public static void writeBinary(DataOutputStream out, List<GpsPing> pings) throws IOException {
+        out.writeInt(BINARY_MAGIC);
+        out.writeInt(pings.size());
+        for (GpsPing ping : pings) {
+            out.writeUTF(ping.ambulanceId);
+            out.writeDouble(ping.lat);
+            out.writeDouble(ping.lon);
+            out.writeLong(ping.timestamp);
+        }
+    }
+
+    private void safeTick() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            System.out.println("⚠️  GPS tick failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Apply all pending pings
+     * @return number of vehicles updated
+     */
+    public synchronized int tick() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        List<GpsPing> batch = new ArrayList<>();
+        for (String id : pending.keySet()) {
+            GpsPing ping = pending.remove(id);
+            Long last = appliedAt.get(id);
+            if (ping != null && (last == null || last <= ping.timestamp)) {
+                batch.add(ping); // late pings from an earlier tick are skipped
+            }
+        }
+
+        // Snapping / map matching is independent per vehicle
+        List<VehiclePosition> snapped = batch.parallelStream().map(this::snap).collect(Collectors.toList());
+
+        int updated = 0;
+        for (VehiclePosition position : snapped) {
+            Ambulance ambulance = fleet.getAmbulance(position.ambulanceId);
+            if (ambulance == null) {
+                continue;
+            }
+            AnchorRegistry registry = anchors;
+            if (registry != null) {
+                registry.recordMatch(ambulance, position.lat, position.lon, position.nodeId, position.edgeId,
+                    position.snapOffset);
+            }
+            ambulance.updateLocation(position.lat, position.lon);
+            appliedAt.put(position.ambulanceId, position.timestamp);
+            updated++;
+        }
+
+        applied.addAndGet(updated);
+        ticks.incrementAndGet();
+        return updated;
+    }
+
+    /**
+     * Snap a ping onto the road graph: HMM-matched edge position if a matcher is set,
+     * otherwise the nearest road node if it is close enough
+     */
+    private VehiclePosition snap(GpsPing ping) {
+        HmmMapMatcher matcher = mapMatcher;
+        if (matcher != null) {
+            EdgeSpatialIndex.EdgeCandidate matched = matcher.match(ping.ambulanceId, ping.lat, ping.lon, ping.timestamp);
+            if (matched != null) {
+                return new VehiclePosition(ping.ambulanceId, matched.lat, matched.lon, ping.lat, ping.lon,
+                    matched.getNearestNode(), matched.edge.id, matched.distance, ping.timestamp);
+            }
+        }
+
+        int nodeId = graph.findNearestNode(ping.lat, ping.lon);
+        Node node = graph.getNode(nodeId);
+        if (node != null) {
+            double offset = GraphExtractor.haversineDistance(ping.lat, ping.lon, node.lat, node.lon);
+            if (offset <= MAX_SNAP_METERS) {
+                return new VehiclePosition(ping.ambulanceId, node.lat, node.lon, ping.lat, ping.lon,
+                    nodeId, -1, offset, ping.timestamp);
+            }
+        }
+        return new VehiclePosition(ping.ambulanceId, ping.lat, ping.lon, ping.lat, ping.lon,
+            -1, -1, 0.0, ping.timestamp);
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("received", received.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("dropped", dropped.get());
+        stats.put("applied", applied.get());
+        stats.put("pending", (long) pending.size());
+        stats.put("tick", ticks.get());
+        return stats;
+    }
+
+    /**
+     * One raw GPS report
+     */
+    public static class GpsPing {
+        public final String ambulanceId;
+        public final double lat;
+        public final double lon;
+        public final long timestamp;
+
+        public GpsPing(String ambulanceId, double lat, double lon, long timestamp) {
+            this.ambulanceId = ambulanceId;
+            this.lat = lat;
+            this.lon = lon;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Applied position of one vehicle
+     */
+    public static class VehiclePosition {
+        public final String ambulanceId;
+        public final double lat;
+        public final double lon;
+        public final double rawLat;
+        public final double rawLon;
+        public final int nodeId;           // -1 when the ping was too far from the road graph
+        public final int edgeId;           // matched edge, -1 unless map matching is enabled
+        public final double snapOffset;    // meters between raw and snapped position
+        public final long timestamp;
+
+        public VehiclePosition(String ambulanceId, double lat, double lon, double rawLat, double rawLon,
+                               int nodeId, int edgeId, double snapOffset, long timestamp) {
+            this.ambulanceId = ambulanceId;
+            this.lat = lat;
+            this.lon = lon;
+            this.rawLat = rawLat;
+            this.rawLon = rawLon;
+            this.nodeId = nodeId;
+            this.edgeId = edgeId;
+            this.snapOffset = snapOffset;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.model.*;
+import com.hers.model.EdgeSpatialIndex.EdgeCandidate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Online hidden-Markov-model map matching of GPS pings onto directed road edges.
+ *
+ * Hidden states are candidate edges near each ping (from EdgeSpatialIndex). The
+ * emission score is Gaussian in the GPS offset; the transition score compares the
+ * driving distance between consecutive candidates with the straight-line distance
+ * between the pings (Newson & Krumm), so jumping to a parallel carriageway or
+ * flyover that is only reachable by a detour is penalised. Driving distances come
+ * from short bounded Dijkstra searches that each vehicle keeps cached between
+ * pings. Each vehicle runs its own Viterbi filter and the best current state is
+ * returned after every ping.
+ */
+public class HmmMapMatcher {
+
+    public static final double DEFAULT_GPS_SIGMA_M = 10.0;
+    public static final double DEFAULT_BETA_M = 15.0;
+    private static final double SEARCH_RADIUS_M = 60.0;
+    private static final int MAX_CANDIDATES = 8;
+    private static final double MAX_SPEED_MPS = 40.0;        // faster movement is treated as a GPS jump
+    private static final double MIN_ROUTE_ALLOWANCE_M = 250.0;
+    private static final double MAX_ROUTE_ALLOWANCE_M = 2000.0; // keeps transition searches local
+    private static final int SEARCH_CACHE_SIZE = 16;         // cached searches per vehicle
+    private static final long STALE_TRACK_MILLIS = 120_000;  // longer gaps restart the filter
+
+    private final GraphExtractor graph;
+    private final EdgeSpatialIndex edgeIndex;
+    private final double gpsSigma;
+    private final double beta;
+    private final Map<String, TrackState> tracks = new ConcurrentHashMap<>();
+
+    public HmmMapMatcher(GraphExtractor graph) {
+        this(graph, new EdgeSpatialIndex(graph), DEFAULT_GPS_SIGMA_M, DEFAULT_BETA_M);
+    }
+
+    public HmmMapMatcher(GraphExtractor graph, EdgeSpatialIndex edgeIndex, double gpsSigma, double beta) {
+        this.graph = graph;
+        this.edgeIndex = edgeIndex;
+        this.gpsSigma = gpsSigma;
+        this.beta = beta;
+    }
+
+    /**
+     * Feed the next ping of a vehicle and get its most likely road position
+     * @return matched position, or null if no road is near the ping
+     */
+    public EdgeCandidate match(String vehicleId, double lat, double lon, long timestamp) {
+        List<EdgeCandidate> candidates = edgeIndex.findWithin(lat, lon, SEARCH_RADIUS_M, MAX_CANDIDATES);
+        TrackState track = tracks.computeIfAbsent(vehicleId, id -> new TrackState());
+
+        synchronized (track) {
+            if (candidates.isEmpty()) {
+                track.reset();
+                return null;
+            }
+
+            double[] scores = new double[candidates.size()];
+            boolean connected = false;
+            boolean continues = track.candidates != null
+                && timestamp >= track.timestamp
+                && timestamp - track.timestamp <= STALE_TRACK_MILLIS;
+
+            if (continues) {
+                double straight = GraphExtractor.haversineDistance(track.lat, track.lon, lat, lon);
+                double seconds = Math.max(1.0, (timestamp - track.timestamp) / 1000.0);
+                double maxRoute = Math.min(MAX_ROUTE_ALLOWANCE_M,
+                    Math.max(MIN_ROUTE_ALLOWANCE_M, seconds * MAX_SPEED_MPS));
+
+                for (int j = 0; j < candidates.size(); j++) {
+                    EdgeCandidate next = candidates.get(j);
+                    double best = Double.NEGATIVE_INFINITY;
+                    for (int i = 0; i < track.candidates.size(); i++) {
+                        if (track.scores[i] == Double.NEGATIVE_INFINITY) {
+                            continue;
+                        }
+                        double route = routeDistance(track, track.candidates.get(i), next, maxRoute);
+                        if (route <= maxRoute) {
+                            best = Math.max(best, track.scores[i] - Math.abs(route - straight) / beta);
+                        }
+                    }
+                    scores[j] = best + emission(next);
+                    connected |= best > Double.NEGATIVE_INFINITY;
+                }
+            }
+
+            if (!connected) {
+                // First ping or no candidate is reachable from the previous ones: restart the chain
+                track.searches.clear();
+                for (int j = 0; j < candidates.size(); j++) {
+                    scores[j] = emission(candidates.get(j));
+                }
+            }
+
+            int bestIndex = 0;
+            for (int j = 1; j < scores.length; j++) {
+                if (scores[j] > scores[bestIndex]) {
+                    bestIndex = j;
+                }
+            }
+            // Normalise so scores stay bounded on long tracks
+            double top = scores[bestIndex];
+            for (int j = 0; j < scores.length; j++) {
+                scores[j] -= top;
+            }
+
+            track.candidates = candidates;
+            track.scores = scores;
+            track.lat = lat;
+            track.lon = lon;
+            track.timestamp = timestamp;
+            return candidates.get(bestIndex);
+        }
+    }
+
+    /**
+     * Log-likelihood of observing the ping at this candidate
+     */
+    private double emission(EdgeCandidate candidate) {
+        double z = candidate.distance / gpsSigma;
+        return -0.5 * z * z;
+    }
+
+    /**
+     * Driving distance from one projected position to the next, or +inf beyond maxRoute
+     */
+    private double routeDistance(TrackState track, EdgeCandidate from, EdgeCandidate to, double maxRoute) {
+        if (from.edge.id == to.edge.id && to.fraction >= from.fraction) {
+            return (to.fraction - from.fraction) * from.edge.distance;
+        }
+        double leave = (1.0 - from.fraction) * from.edge.distance;
+        double enter = to.fraction * to.edge.distance;
+        if (leave + enter > maxRoute) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double between;
+        if (from.edge.toNode == to.edge.fromNode) {
+            between = 0.0;
+        } else {
+            IncrementalDijkstra search = track.searchFrom(from.edge.toNode);
+            if (search.settleTarget(to.edge.fromNode, maxRoute - leave - enter) == Double.MAX_VALUE) {
+                return Double.POSITIVE_INFINITY;
+            }
+            between = search.getDistance(to.edge.fromNode);
+        }
+        return leave + between + enter;
+    }
+
+    /**
+     * Forget a vehicle's track (e.g. after it was taken off duty)
+     */
+    public void reset(String vehicleId) {
+        tracks.remove(vehicleId);
+    }
+
+    public int getTrackedVehicleCount() {
+        return tracks.size();
+    }
+
+    public EdgeSpatialIndex getEdgeIndex() {
+        return edgeIndex;
+    }
+
+    /**
+     * Viterbi filter state of one vehicle
+     */
+    private class TrackState {
+        List<EdgeCandidate> candidates;
+        double[] scores;
+        double lat;
+        double lon;
+        long timestamp;
+        // Forward searches by source node, least recently used evicted first
+        final Map<Integer, IncrementalDijkstra> searches =
+            new LinkedHashMap<Integer, IncrementalDijkstra>(SEARCH_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, IncrementalDijkstra> eldest) {
+                    return size() > SEARCH_CACHE_SIZE;
+                }
+            };
+
+        IncrementalDijkstra searchFrom(int node) {
+            return searches.computeIfAbsent(node,
+                n -> {
+                    // Shortest by meters: the bound is a distance, and congestion never hides a transition
+                    IncrementalDijkstra search = new IncrementalDijkstra(graph,
+                        IncrementalDijkstra.Direction.FORWARD, IncrementalDijkstra.Metric.DISTANCE);
+                    search.addSource(n, 0.0);
+                    return search;
+                });
+        }
+
+        void reset() {
+            candidates = null;
+            scores = null;
+            searches.clear();
+        }
+    }
+}
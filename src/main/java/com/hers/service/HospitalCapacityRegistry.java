@@ -0,0 +1,311 @@
+package com.hers.service;
+
+import com.hers.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live bed and ER capacity per hospital and department.
+ *
+ * Free places are kept in one AtomicIntegerArray (hospital x department), so a
+ * reservation is a compare-and-set decrement that can never take the count
+ * below zero, however many assessments race for the last bed. Hospitals report
+ * totals and free places through update(); until a department is reported it
+ * is untracked and never blocks a match (wards start from Hospital.capacity).
+ *
+ * Matchers read a Snapshot: all counters copied under a sequence check
+ * (writers bump a start and a finish counter around each change), retried until
+ * no write overlapped the copy, so it is consistent without locking. A snapshot
+ * only filters candidates; the place itself is claimed with reserve(), which may
+ * still fail if the bed went meanwhile.
+ *
+ * The hospital list is swapped in whole on a reload (setHospitals). Counters
+ * carry over by hospital name: each old slot is taken with getAndSet(MOVED), so
+ * a reservation racing the swap either lands before the hand-over or sees MOVED
+ * and retries on the new table. Hospitals are looked up by identity, then by
+ * name, so instances from either side of a reload resolve to the same slots.
+ */
+public class HospitalCapacityRegistry {
+
+    public enum Department {
+        EMERGENCY,  // ER bays: every ambulance arrival needs one
+        ICU,
+        WARD
+    }
+
+    public static final int UNTRACKED = -1;
+    private static final int MOVED = Integer.MIN_VALUE;   // slot handed over to a newer table
+    private static final Department[] DEPARTMENTS = Department.values();
+    private static final int SNAPSHOT_SPINS = 8;   // then yield to let a descheduled writer finish
+
+    private volatile Table table;
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicLong writesFinished = new AtomicLong();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong reservationSequence = new AtomicLong();
+
+    public HospitalCapacityRegistry(List<Hospital> hospitals) {
+        this.table = new Table(hospitals);
+    }
+
+    public List<Hospital> getHospitals() {
+        return Collections.unmodifiableList(table.hospitals);
+    }
+
+    /**
+     * Swap in a reloaded hospital list; counters of hospitals kept under the same name carry over
+     */
+    public synchronized void setHospitals(List<Hospital> hospitals) {
+        Table previous = table;
+        Table next = new Table(hospitals);
+        writesStarted.incrementAndGet();
+        for (int i = 0; i < previous.hospitals.size(); i++) {
+            int target = next.index(previous.hospitals.get(i));
+            for (Department department : DEPARTMENTS) {
+                int from = slot(i, department);
+                int free = previous.available.getAndSet(from, MOVED);
+                if (target >= 0) {
+                    int to = slot(target, department);
+                    next.total.set(to, previous.total.get(from));
+                    next.available.set(to, free);
+                }
+            }
+        }
+        table = next;
+        writesFinished.incrementAndGet();
+    }
+
+    /**
+     * Look up a hospital by name (case-insensitive), or null
+     */
+    public Hospital findHospital(String name) {
+        Table current = table;
+        Integer index = current.byName.get(name.toLowerCase());
+        return index == null ? null : current.hospitals.get(index);
+    }
+
+    /**
+     * Report a department's capacity from the hospital's own system
+     * @param free free places now; active reservations are assumed to be already counted in it
+     */
+    public synchronized void update(Hospital hospital, Department department, int totalPlaces, int free) {
+        if (totalPlaces < 0 || free < 0 || free > totalPlaces) {
+            throw new IllegalArgumentException("Need 0 <= available <= total, got " + free + "/" + totalPlaces);
+        }
+        Table current = table;
+        int slot = slot(current.require(hospital), department);
+        writesStarted.incrementAndGet();
+        current.total.set(slot, totalPlaces);
+        current.available.set(slot, free);
+        writesFinished.incrementAndGet();
+    }
+
+    /**
+     * Atomically take one place
+     * @return reservation id, or null if the department is full
+     *         (untracked departments always succeed)
+     */
+    public String reserve(Hospital hospital, Department department, String patientRef) {
+        while (true) {
+            Table current = table;
+            int slot = slot(current.require(hospital), department);
+            int free = current.available.get(slot);
+            if (free == UNTRACKED) {
+                break;
+            }
+            if (free == 0) {
+                return null;
+            }
+            if (free == MOVED) {
+                Thread.onSpinWait(); // a reload is handing the counters over
+                continue;
+            }
+            writesStarted.incrementAndGet();
+            boolean taken = current.available.compareAndSet(slot, free, free - 1);
+            writesFinished.incrementAndGet();
+            if (taken) {
+                break;
+            }
+        }
+        String id = "RSV-" + reservationSequence.incrementAndGet();
+        reservations.put(id, new Reservation(id, hospital, department, patientRef, System.currentTimeMillis()));
+        return id;
+    }
+
+    /**
+     * Give a reserved place back (patient discharged, transferred or diverted)
+     * @return false if the reservation is unknown or already released
+     */
+    public boolean release(String reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        while (true) {
+            Table current = table;
+            int index = current.index(reservation.hospital);
+            if (index < 0) {
+                return true; // the hospital was dropped by a reload, and its places with it
+            }
+            int slot = slot(index, reservation.department);
+            int free = current.available.get(slot);
+            if (free == MOVED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (free == UNTRACKED || free >= current.total.get(slot)) {
+                return true; // untracked, or a capacity report already counted the place as free
+            }
+            writesStarted.incrementAndGet();
+            boolean returned = current.available.compareAndSet(slot, free, free + 1);
+            writesFinished.incrementAndGet();
+            if (returned) {
+                return true;
+            }
+        }
+    }
+
+    public Reservation getReservation(String reservationId) {
+        return reservations.get(reservationId);
+    }
+
+    public int getActiveReservationCount() {
+        return reservations.size();
+    }
+
+    /**
+     * Consistent copy of all counters, taken without locking
+     */
+    public Snapshot snapshot() {
+        for (int attempt = 0; ; attempt++) {
+            long started = writesStarted.get();
+            boolean quiet = writesFinished.get() == started;
+            Table current = table; // read after the counters, so a swap in between forces a retry
+            int size = current.available.length();
+            int[] free = new int[size];
+            int[] places = new int[size];
+            for (int i = 0; i < size; i++) {
+                free[i] = current.available.get(i);
+                places[i] = current.total.get(i);
+            }
+            // No write was in flight and none started while copying
+            if (quiet && writesStarted.get() == started) {
+                return new Snapshot(current, free, places);
+            }
+            if (attempt < SNAPSHOT_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    private static int slot(int hospitalIndex, Department department) {
+        return hospitalIndex * DEPARTMENTS.length + department.ordinal();
+    }
+
+    /**
+     * One version of the hospital list with its counters
+     */
+    private static class Table {
+        final List<Hospital> hospitals;
+        final Map<Hospital, Integer> indexOf = new IdentityHashMap<>();
+        final Map<String, Integer> byName = new HashMap<>();   // lower-case name -> index
+        final AtomicIntegerArray available;
+        final AtomicIntegerArray total;
+
+        Table(List<Hospital> hospitals) {
+            this.hospitals = new ArrayList<>(hospitals);
+            this.available = new AtomicIntegerArray(hospitals.size() * DEPARTMENTS.length);
+            this.total = new AtomicIntegerArray(hospitals.size() * DEPARTMENTS.length);
+            for (int i = 0; i < hospitals.size(); i++) {
+                Hospital hospital = hospitals.get(i);
+                indexOf.put(hospital, i);
+                byName.put(hospital.name.toLowerCase(), i);
+                for (Department department : DEPARTMENTS) {
+                    int slot = slot(i, department);
+                    int beds = department == Department.WARD ? hospital.capacity : UNTRACKED;
+                    total.set(slot, beds);
+                    available.set(slot, beds);
+                }
+            }
+        }
+
+        /**
+         * Index of this instance, else of a hospital with the same name, else -1
+         */
+        int index(Hospital hospital) {
+            Integer index = indexOf.get(hospital);
+            if (index == null) {
+                index = byName.get(hospital.name.toLowerCase());
+            }
+            return index == null ? -1 : index;
+        }
+
+        int require(Hospital hospital) {
+            int index = index(hospital);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown hospital " + hospital.name);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Capacity of every hospital at one moment
+     */
+    public static class Snapshot {
+        private final Table table;
+        private final int[] available;
+        private final int[] total;
+        public final long takenAt = System.currentTimeMillis();
+
+        Snapshot(Table table, int[] available, int[] total) {
+            this.table = table;
+            this.available = available;
+            this.total = total;
+        }
+
+        /**
+         * Free places, or UNTRACKED
+         */
+        public int getAvailable(Hospital hospital, Department department) {
+            int index = table.index(hospital);
+            return index < 0 ? UNTRACKED : available[slot(index, department)];
+        }
+
+        public int getTotal(Hospital hospital, Department department) {
+            int index = table.index(hospital);
+            return index < 0 ? UNTRACKED : total[slot(index, department)];
+        }
+
+        /**
+         * False only if the department is tracked and full
+         */
+        public boolean hasRoom(Hospital hospital, Department department) {
+            return getAvailable(hospital, department) != 0;
+        }
+    }
+
+    /**
+     * One place held for a patient
+     */
+    public static class Reservation {
+        public final String id;
+        public final Hospital hospital;
+        public final Department department;
+        public final String patientRef;   // emergency or patient id, may be null
+        public final long reservedAt;
+
+        Reservation(String id, Hospital hospital, Department department, String patientRef, long reservedAt) {
+            this.id = id;
+            this.hospital = hospital;
+            this.department = department;
+            this.patientRef = patientRef;
+            this.reservedAt = reservedAt;
+        }
+    }
+}
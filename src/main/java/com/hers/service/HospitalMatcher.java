@@ -1,10 +1,12 @@
 package com.hers.service;
 
+import com.hers.algorithms.TopNSelector;
 import com.hers.model.*;
 import com.hers.model.Patient.EmergencyType;
 import com.hers.model.Patient.SeverityLevel;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Intelligent hospital matching system that scores hospitals based on patient needs
@@ -23,170 +25,215 @@ public class HospitalMatcher {
             double emergencyLon, 
             List<Hospital> allHospitals,
             int topN) {
+        return findBestHospitals(patient, emergencyLat, emergencyLon, allHospitals, topN, null);
+    }
+    
+    /**
+     * Find and score the best hospitals that still have a free ER place in the snapshot
+     * (a null snapshot ignores capacity)
+     */
+    public static List<HospitalRecommendation> findBestHospitals(
+            Patient patient, 
+            double emergencyLat, 
+            double emergencyLon, 
+            List<Hospital> allHospitals,
+            int topN,
+            HospitalCapacityRegistry.Snapshot capacity) {
         
-        List<HospitalRecommendation> recommendations = new ArrayList<>();
+        int[] table = scoreTable(patient);
+        boolean critical = patient.severity == SeverityLevel.CRITICAL;
         
-        for (Hospital hospital : allHospitals) {
-            // Calculate distance and ETA
-            double distance = hospital.distanceTo(emergencyLat, emergencyLon);
-            double eta = calculateETA(distance);
-            
-            // Score the hospital
-            int score = scoreHospital(hospital, patient, distance);
-            
-            // Generate reasoning
-            String reasoning = generateReasoning(hospital, patient, distance, score);
-            
-            recommendations.add(new HospitalRecommendation(
-                hospital, distance, eta, score, reasoning
-            ));
+        // Keep the top N by score; ties stay in list order, as a stable sort would leave them
+        TopNSelector best = new TopNSelector(Math.min(topN, allHospitals.size()));
+        for (int i = 0; i < allHospitals.size(); i++) {
+            Hospital hospital = allHospitals.get(i);
+            if (capacity != null && !capacity.hasRoom(hospital, HospitalCapacityRegistry.Department.EMERGENCY)) {
+                continue; // ER full
+            }
+            if (!best.accepts(-clamp(table[featureKey(hospital)]))) {
+                continue; // cannot make the cut even at zero distance
+            }
+            int score = clamp(score(table, hospital, hospital.distanceTo(emergencyLat, emergencyLon), critical));
+            best.offer(-score, i);
         }
         
-        // Sort by score (highest first)
-        Collections.sort(recommendations);
-        
-        // Return top N results
-        return recommendations.subList(0, Math.min(topN, recommendations.size()));
+        // Distance and reasoning text only for what is returned
+        int[] kept = best.drainSortedIds();
+        List<HospitalRecommendation> recommendations = new ArrayList<>(kept.length);
+        for (int i : kept) {
+            Hospital hospital = allHospitals.get(i);
+            double distance = hospital.distanceTo(emergencyLat, emergencyLon);
+            int score = clamp(score(table, hospital, distance, critical));
+            recommendations.add(new HospitalRecommendation(hospital, distance, calculateETA(distance), score,
+                generateReasoning(hospital, patient, distance, score)));
+        }
+        return recommendations;
     }
     
     /**
-     * Score a hospital based on patient needs and distance
+     * Score a hospital on patient needs alone, without the distance term, for
+     * callers that weigh actual travel time instead. Not capped at 100.
      */
-    private static int scoreHospital(Hospital hospital, Patient patient, double distance) {
-        int score = BASE_SCORE;
-        
-        // 1. DISTANCE PENALTY: Closer is better (-2 points per km)
-        double distanceKm = distance / 1000.0;
-        score -= (int)(distanceKm * 2);
+    public static int scoreSuitability(Hospital hospital, Patient patient) {
+        return scoreTable(patient)[featureKey(hospital)];
+    }
+    
+    // Ensure score doesn't go below 0 or above 100
+    static int clamp(int score) {
+        return Math.max(0, Math.min(100, score));
+    }
+    
+    /**
+     * Score a hospital based on patient needs (from the patient's table) and distance
+     */
+    private static int score(int[] table, Hospital hospital, double distance, boolean critical) {
+        return table[featureKey(hospital)] - distancePenalty(distance / 1000.0, critical);
+    }
+    
+    /**
+     * Points lost for distance; never decreases as distance grows
+     */
+    static int distancePenalty(double distanceKm, boolean critical) {
+        // Closer is better (-2 points per km)
+        int penalty = (int)(distanceKm * 2);
         
-        // 2. EMERGENCY TYPE MATCHING
-        switch (patient.emergencyType) {
-            case TRAUMA:
-                if (hospital.hasTraumaCenter) {
-                    score += 35; // Major bonus for trauma center
-                } else if (hospital.hasEmergency) {
-                    score += 10; // Small bonus for emergency dept
-                }
-                break;
-                
-            case CARDIAC:
-                if (hospital.type.toLowerCase().contains("cardiac") || 
-                    hospital.type.toLowerCase().contains("heart")) {
-                    score += 35; // Cardiac specialty
-                } else if (hospital.hasEmergency) {
-                    score += 15; // Emergency can handle cardiac
-                }
-                break;
-                
-            case STROKE:
-                if (hospital.type.toLowerCase().contains("neuro") ||
-                    hospital.type.toLowerCase().contains("stroke")) {
-                    score += 35; // Stroke specialty
-                } else if (hospital.hasEmergency) {
-                    score += 15;
-                }
-                break;
-                
-            case RESPIRATORY:
-                if (hospital.type.toLowerCase().contains("pulmonary") ||
-                    hospital.type.toLowerCase().contains("respiratory")) {
-                    score += 30;
-                } else if (hospital.hasEmergency) {
-                    score += 15;
-                }
-                break;
-                
-            case PEDIATRIC:
-                if (hospital.type.toLowerCase().contains("child") ||
-                    hospital.type.toLowerCase().contains("pediatric")) {
-                    score += 40; // Strong preference for pediatric hospitals
-                } else if (hospital.hasEmergency) {
-                    score += 10;
-                }
-                break;
-                
-            case GENERAL:
-                if (hospital.hasEmergency) {
-                    score += 20;
-                }
-                break;
+        // For critical cases, don't penalize distance as much
+        if (critical) {
+            penalty -= (int)(distanceKm * 0.5);
         }
-        
-        // 3. EMERGENCY DEPARTMENT AVAILABILITY
-        if (hospital.hasEmergency) {
-            score += 20; // Always prefer hospitals with ER
-        } else {
-            score -= 30; // Significant penalty for no ER
+        return penalty;
+    }
+    
+    /**
+     * Distance penalty for a travel time, counting each 40 km/h-equivalent km as one km
+     */
+    static int travelTimePenalty(double etaSeconds, boolean critical) {
+        return distancePenalty(etaSeconds / 3600.0 * AVERAGE_AMBULANCE_SPEED_KMH, critical);
+    }
+    
+    // ---- Table-driven suitability ----
+    //
+    // Suitability depends only on the hospital's capability flags and capacity
+    // band, and on the patient's emergency type, severity and age group. Each
+    // patient profile gets a table over every (flags, band) key, built once on
+    // first use, so scoring a hospital is one array lookup.
+    
+    private static final int CAPACITY_BANDS = 5;                        // <=50, <=150, <=200, <=300, >300
+    private static final int[] CAPACITY_POINTS = {-10, 5, 10, 10, 15};  // more beds = better equipped
+    private static final int AGE_GROUPS = 3;                            // adult, pediatric, geriatric
+    private static final int TABLE_SIZE = CAPACITY_BANDS << Hospital.CAPABILITY_COUNT;
+    
+    private static final Map<EmergencyType, SpecialtyRule> SPECIALTY_RULES = new EnumMap<>(EmergencyType.class);
+    static {
+        SPECIALTY_RULES.put(EmergencyType.TRAUMA, new SpecialtyRule(Hospital.TRAUMA, 35, 10));
+        SPECIALTY_RULES.put(EmergencyType.CARDIAC, new SpecialtyRule(Hospital.CARDIAC, 35, 15));
+        SPECIALTY_RULES.put(EmergencyType.STROKE, new SpecialtyRule(Hospital.NEURO, 35, 15));
+        SPECIALTY_RULES.put(EmergencyType.RESPIRATORY, new SpecialtyRule(Hospital.PULMONARY, 30, 15));
+        SPECIALTY_RULES.put(EmergencyType.PEDIATRIC, new SpecialtyRule(Hospital.PEDIATRIC, 40, 10));
+        SPECIALTY_RULES.put(EmergencyType.GENERAL, new SpecialtyRule(Hospital.EMERGENCY, 20, 0));
+    }
+    
+    private static final AtomicReferenceArray<int[]> SCORE_TABLES = new AtomicReferenceArray<>(
+        EmergencyType.values().length * SeverityLevel.values().length * AGE_GROUPS);
+    
+    static int[] scoreTable(Patient patient) {
+        int ageGroup = patient.isPediatric() ? 1 : patient.isGeriatric() ? 2 : 0;
+        int profile = (patient.emergencyType.ordinal() * SeverityLevel.values().length
+            + patient.severity.ordinal()) * AGE_GROUPS + ageGroup;
+        int[] table = SCORE_TABLES.get(profile);
+        if (table == null) {
+            table = new int[TABLE_SIZE];
+            for (int key = 0; key < TABLE_SIZE; key++) {
+                table[key] = suitability(key & ((1 << Hospital.CAPABILITY_COUNT) - 1),
+                    key >>> Hospital.CAPABILITY_COUNT, patient.emergencyType, patient.severity, ageGroup);
+            }
+            SCORE_TABLES.compareAndSet(profile, null, table);
         }
+        return table;
+    }
+    
+    static int featureKey(Hospital hospital) {
+        return hospital.capabilities | (capacityBand(hospital.capacity) << Hospital.CAPABILITY_COUNT);
+    }
+    
+    private static int capacityBand(int capacity) {
+        if (capacity > 300) return 4;
+        if (capacity > 200) return 3;
+        if (capacity > 150) return 2;
+        if (capacity > 50) return 1;
+        return 0;
+    }
+    
+    /**
+     * Score one (capabilities, capacity band) combination for a patient profile
+     */
+    private static int suitability(int flags, int capacityBand, EmergencyType emergencyType,
+                                   SeverityLevel severity, int ageGroup) {
+        int score = BASE_SCORE;
         
-        // 4. SEVERITY LEVEL MATCHING
-        switch (patient.severity) {
-            case CRITICAL:
-                // Critical patients need best facilities
-                if (hospital.hasTraumaCenter) {
-                    score += 25;
-                }
-                if (hospital.type.toLowerCase().contains("tertiary") ||
-                    hospital.type.toLowerCase().contains("medical center")) {
-                    score += 20; // Prefer larger medical centers
-                }
-                // For critical cases, don't penalize distance as much
-                score += (int)(distanceKm * 0.5); // Reduce distance penalty by half
-                break;
-                
-            case SERIOUS:
-                if (hospital.hasEmergency) {
-                    score += 15;
-                }
-                break;
-                
-            case MODERATE:
-                // For moderate cases, distance is more important
-                // No additional bonuses, distance penalty already applied
-                break;
+        // 1. EMERGENCY TYPE MATCHING: specialty bonus, else what an ER can do
+        SpecialtyRule specialty = SPECIALTY_RULES.get(emergencyType);
+        if ((flags & specialty.flag) != 0) {
+            score += specialty.bonus;
+        } else if ((flags & Hospital.EMERGENCY) != 0) {
+            score += specialty.emergencyBonus;
         }
         
-        // 5. AGE-BASED CONSIDERATIONS
-        if (patient.isPediatric()) {
-            if (hospital.type.toLowerCase().contains("child") ||
-                hospital.type.toLowerCase().contains("pediatric")) {
-                score += 25; // Pediatric facilities for children
-            }
-        }
+        // 2. EMERGENCY DEPARTMENT AVAILABILITY
+        score += (flags & Hospital.EMERGENCY) != 0 ? 20 : -30;
         
-        if (patient.isGeriatric()) {
-            if (hospital.type.toLowerCase().contains("geriatric") ||
-                hospital.capacity > 200) { // Larger hospitals better for elderly
-                score += 10;
+        // 3. SEVERITY LEVEL MATCHING
+        if (severity == SeverityLevel.CRITICAL) {
+            // Critical patients need best facilities
+            if ((flags & Hospital.TRAUMA) != 0) {
+                score += 25;
+            }
+            if ((flags & (Hospital.TERTIARY | Hospital.MEDICAL_CENTER)) != 0) {
+                score += 20; // Prefer larger medical centers
             }
+        } else if (severity == SeverityLevel.SERIOUS && (flags & Hospital.EMERGENCY) != 0) {
+            score += 15;
         }
         
-        // 6. CAPACITY BONUS: More beds = better equipped
-        if (hospital.capacity > 300) {
-            score += 15; // Large hospital
-        } else if (hospital.capacity > 150) {
-            score += 10; // Medium hospital
-        } else if (hospital.capacity > 50) {
-            score += 5;  // Small hospital
-        } else {
-            score -= 10; // Very small facility
+        // 4. AGE-BASED CONSIDERATIONS
+        if (ageGroup == 1 && (flags & Hospital.PEDIATRIC) != 0) {
+            score += 25; // Pediatric facilities for children
+        }
+        if (ageGroup == 2 && ((flags & Hospital.GERIATRIC) != 0 || capacityBand >= 3)) {
+            score += 10; // Larger hospitals better for elderly
         }
         
-        // 7. HOSPITAL TYPE BONUS
-        if (hospital.type.toLowerCase().contains("tertiary") ||
-            hospital.type.toLowerCase().contains("teaching")) {
-            score += 12; // Teaching/tertiary hospitals have more resources
+        // 5. CAPACITY BONUS
+        score += CAPACITY_POINTS[capacityBand];
+        
+        // 6. HOSPITAL TYPE BONUS: teaching/tertiary hospitals have more resources
+        if ((flags & (Hospital.TERTIARY | Hospital.TEACHING)) != 0) {
+            score += 12;
         }
         
-        // Ensure score doesn't go below 0 or above 100
-        return Math.max(0, Math.min(100, score));
+        return score;
+    }
+    
+    /**
+     * Bonus for a hospital with the specialty an emergency type needs
+     */
+    private static class SpecialtyRule {
+        final int flag;
+        final int bonus;
+        final int emergencyBonus;   // without the specialty but with an emergency department
+        
+        SpecialtyRule(int flag, int bonus, int emergencyBonus) {
+            this.flag = flag;
+            this.bonus = bonus;
+            this.emergencyBonus = emergencyBonus;
+        }
     }
     
     /**
      * Generate human-readable reasoning for the score
      */
-    private static String generateReasoning(Hospital hospital, Patient patient, 
-                                           double distance, int score) {
+    static String generateReasoning(Hospital hospital, Patient patient, 
+                                   double distance, int score) {
         StringBuilder reasoning = new StringBuilder();
         double distanceKm = distance / 1000.0;
         
@@ -212,22 +259,20 @@ public class HospitalMatcher {
         }
         
         // Specialty matching
-        if (patient.emergencyType == Patient.EmergencyType.TRAUMA && hospital.hasTraumaCenter) {
+        if (patient.emergencyType == Patient.EmergencyType.TRAUMA && hospital.has(Hospital.TRAUMA)) {
             reasoning.append("Has trauma center for injury treatment. ");
         }
         
-        if (patient.emergencyType == Patient.EmergencyType.PEDIATRIC && 
-            hospital.type.toLowerCase().contains("pediatric")) {
+        if (patient.emergencyType == Patient.EmergencyType.PEDIATRIC && hospital.has(Hospital.PEDIATRIC)) {
             reasoning.append("Specialized pediatric care available. ");
         }
         
-        if (patient.emergencyType == Patient.EmergencyType.CARDIAC &&
-            hospital.type.toLowerCase().contains("cardiac")) {
+        if (patient.emergencyType == Patient.EmergencyType.CARDIAC && hospital.has(Hospital.CARDIAC)) {
             reasoning.append("Cardiac specialty center. ");
         }
         
         // Emergency department
-        if (hospital.hasEmergency) {
+        if (hospital.has(Hospital.EMERGENCY)) {
             reasoning.append("24/7 emergency department. ");
         } else {
             reasoning.append("No dedicated emergency department. ");
@@ -235,7 +280,7 @@ public class HospitalMatcher {
         
         // Severity considerations
         if (patient.severity == Patient.SeverityLevel.CRITICAL) {
-            if (hospital.hasTraumaCenter || hospital.capacity > 200) {
+            if (hospital.has(Hospital.TRAUMA) || hospital.capacity > 200) {
                 reasoning.append("Well-equipped for critical cases.");
             } else {
                 reasoning.append("May lack resources for critical care.");
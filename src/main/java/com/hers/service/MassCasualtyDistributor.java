@@ -0,0 +1,316 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.MinCostFlow;
+import com.hers.model.*;
+
+import java.util.*;
+
+/**
+ * Distributes the patients of a mass-casualty incident across hospitals.
+ *
+ * All patients start at the scene, so one forward Dijkstra gives every
+ * hospital's network ETA, and a patient's cost at a hospital depends only on
+ * its scoring profile (type, severity, age group). Patients are grouped by
+ * profile and the assignment is solved as a min-cost flow: scene -> profile
+ * (one unit per patient) -> hospital (score lost to suitability and travel,
+ * weighted by severity so critical patients get the best places first) ->
+ * sink (free ER places). Flow maximizes the number of patients placed before
+ * cost, so nobody is left out while any reachable ER has room.
+ *
+ * ER places come from the capacity registry's snapshot; hospitals that do not
+ * report their ER get a surge estimate from their bed count. With reserve on,
+ * places are claimed after solving; patients whose place went meanwhile are
+ * redistributed over a fresh snapshot.
+ *
+ * A reloaded hospital list is swapped in whole (setHospitals); an incident in
+ * progress finishes on the list it started with.
+ */
+public class MassCasualtyDistributor {
+
+    private static final double MAX_SEARCH_SECONDS = 2 * 3600.0;
+    private static final int PERFECT_SCORE = 100;
+    private static final long SCORE_SCALE = 10_000;         // score points dominate, ETA seconds break ties
+    private static final int BEDS_PER_SURGE_PLACE = 50;     // untracked ER: one incoming patient per 50 beds
+    private static final int MIN_SURGE_PLACES = 2;
+    private static final int MAX_ROUNDS = 3;                // solve, reserve, redistribute the losers
+
+    private final GraphExtractor graph;
+    private volatile HospitalSet current;
+    private volatile HospitalCapacityRegistry capacity;
+
+    public MassCasualtyDistributor(GraphExtractor graph, List<Hospital> hospitals) {
+        this.graph = graph;
+        this.current = new HospitalSet(graph, hospitals);
+    }
+
+    /**
+     * Swap in a reloaded hospital list
+     */
+    public void setHospitals(List<Hospital> hospitals) {
+        current = new HospitalSet(graph, hospitals);
+    }
+
+    /**
+     * Take ER places from live capacity instead of surge estimates alone
+     */
+    public void setCapacityRegistry(HospitalCapacityRegistry capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Distribute patients at an incident
+     * @param reserve claim an ER place for every assigned patient (needs a capacity registry)
+     */
+    public Distribution distribute(List<Patient> patients, double incidentLat, double incidentLon,
+                                   boolean reserve, String incidentRef) {
+        long start = System.nanoTime();
+        HospitalSet set = current;
+        List<Hospital> hospitals = set.hospitals;
+        int count = hospitals.size();
+        double[] etas = new double[count];
+        double[] distances = new double[count];
+        int reachable = travelTimes(set, incidentLat, incidentLon, etas, distances);
+
+        HospitalCapacityRegistry registry = capacity;
+        Assignment[] assigned = new Assignment[patients.size()];
+        int[] placed = new int[count];    // patients sent to each hospital in earlier rounds
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < patients.size(); i++) {
+            pending.add(i);
+        }
+        int rounds = 0;
+        long totalCost = 0;
+        while (!pending.isEmpty() && rounds < MAX_ROUNDS && reachable > 0) {
+            rounds++;
+            HospitalCapacityRegistry.Snapshot beds = registry == null ? null : registry.snapshot();
+            int[] places = new int[count];
+            for (int h = 0; h < count; h++) {
+                places[h] = Double.isNaN(etas[h]) ? 0 : erPlaces(hospitals.get(h), beds, placed[h]);
+            }
+            Round round = solve(hospitals, patients, pending, etas, places);
+            totalCost += round.cost;
+
+            List<Integer> lost = new ArrayList<>();
+            for (int p : pending) {
+                int h = round.hospitalOf.getOrDefault(p, -1);
+                if (h < 0) {
+                    continue;
+                }
+                Patient patient = patients.get(p);
+                Hospital hospital = hospitals.get(h);
+                String reservation = null;
+                if (reserve && registry != null) {
+                    reservation = registry.reserve(hospital, HospitalCapacityRegistry.Department.EMERGENCY,
+                        incidentRef + "#" + (p + 1));
+                    if (reservation == null) {
+                        lost.add(p); // ER filled up since the snapshot
+                        continue;
+                    }
+                }
+                placed[h]++;
+                assigned[p] = new Assignment(p, patient, hospital, distances[h], etas[h] / 60.0,
+                    score(patient, hospital, etas[h]), reservation);
+            }
+            if (lost.isEmpty()) {
+                break;
+            }
+            pending = lost;
+        }
+
+        List<Assignment> assignments = new ArrayList<>();
+        List<Integer> unassigned = new ArrayList<>();
+        for (int p = 0; p < assigned.length; p++) {
+            if (assigned[p] != null) {
+                assignments.add(assigned[p]);
+            } else {
+                unassigned.add(p);
+            }
+        }
+        return new Distribution(assignments, unassigned, totalCost, rounds, reachable,
+            (System.nanoTime() - start) / 1_000_000.0);
+    }
+
+    /**
+     * Network ETA and distance from the incident to every hospital (NaN if unreachable)
+     * @return number of reachable hospitals
+     */
+    private int travelTimes(HospitalSet set, double lat, double lon, double[] etas, double[] distances) {
+        Arrays.fill(etas, Double.NaN);
+        Arrays.fill(distances, Double.NaN);
+        int scene = graph.findNearestNode(lat, lon);
+        IncrementalDijkstra search = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.FORWARD, scene);
+        int reached = 0;
+        while (reached < set.hospitals.size() && search.peekTime() <= MAX_SEARCH_SECONDS) {
+            int node = search.settleNext();
+            if (node < 0) {
+                break;
+            }
+            int[] atNode = set.byNode.get(node);
+            if (atNode == null) {
+                continue;
+            }
+            for (int h : atNode) {
+                etas[h] = search.getTime(node);
+                distances[h] = search.getDistance(node);
+                reached++;
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * ER places still open at a hospital for this incident
+     */
+    private static int erPlaces(Hospital hospital, HospitalCapacityRegistry.Snapshot beds, int alreadyPlaced) {
+        int free = beds == null ? HospitalCapacityRegistry.UNTRACKED
+            : beds.getAvailable(hospital, HospitalCapacityRegistry.Department.EMERGENCY);
+        if (free != HospitalCapacityRegistry.UNTRACKED) {
+            return free; // reservations made in earlier rounds are already taken off
+        }
+        if (!hospital.has(Hospital.EMERGENCY)) {
+            return 0;
+        }
+        return Math.max(0, Math.max(MIN_SURGE_PLACES, hospital.capacity / BEDS_PER_SURGE_PLACE) - alreadyPlaced);
+    }
+
+    private static int score(Patient patient, Hospital hospital, double eta) {
+        return HospitalMatcher.clamp(HospitalMatcher.scoreSuitability(hospital, patient)
+            - HospitalMatcher.travelTimePenalty(eta, patient.severity == Patient.SeverityLevel.CRITICAL));
+    }
+
+    /**
+     * One min-cost flow over the pending patients, grouped by scoring profile
+     */
+    private Round solve(List<Hospital> hospitals, List<Patient> patients, List<Integer> pending,
+                        double[] etas, int[] places) {
+        // Patients with the same profile share a score table, so group on its identity
+        Map<int[], List<Integer>> groups = new IdentityHashMap<>();
+        for (int p : pending) {
+            groups.computeIfAbsent(HospitalMatcher.scoreTable(patients.get(p)), table -> new ArrayList<>()).add(p);
+        }
+        List<List<Integer>> members = new ArrayList<>(groups.values());
+        int hospitalCount = hospitals.size();
+        int source = 0;
+        int firstHospital = 1 + members.size();
+        int sink = firstHospital + hospitalCount;
+        MinCostFlow flow = new MinCostFlow(sink + 1);
+
+        for (int h = 0; h < hospitalCount; h++) {
+            if (places[h] > 0) {
+                flow.addEdge(firstHospital + h, sink, places[h], 0);
+            }
+        }
+        int[][] edges = new int[members.size()][hospitalCount];
+        for (int g = 0; g < members.size(); g++) {
+            List<Integer> group = members.get(g);
+            Patient patient = patients.get(group.get(0));
+            int[] table = HospitalMatcher.scoreTable(patient);
+            boolean critical = patient.severity == Patient.SeverityLevel.CRITICAL;
+            flow.addEdge(source, 1 + g, group.size(), 0);
+            for (int h = 0; h < hospitalCount; h++) {
+                edges[g][h] = -1;
+                if (places[h] == 0) {
+                    continue;
+                }
+                int score = HospitalMatcher.clamp(table[HospitalMatcher.featureKey(hospitals.get(h))]
+                    - HospitalMatcher.travelTimePenalty(etas[h], critical));
+                long cost = (PERFECT_SCORE - score) * patient.severity.priority * SCORE_SCALE + Math.round(etas[h]);
+                edges[g][h] = flow.addEdge(1 + g, firstHospital + h, group.size(), cost);
+            }
+        }
+        long[] result = flow.solve(source, sink, pending.size());
+
+        // Hand out each group's places to its patients in input order
+        Map<Integer, Integer> hospitalOf = new HashMap<>();
+        for (int g = 0; g < members.size(); g++) {
+            Iterator<Integer> patientsLeft = members.get(g).iterator();
+            for (int h = 0; h < hospitalCount; h++) {
+                if (edges[g][h] < 0) {
+                    continue;
+                }
+                for (int n = flow.getFlow(edges[g][h]); n > 0 && patientsLeft.hasNext(); n--) {
+                    hospitalOf.put(patientsLeft.next(), h);
+                }
+            }
+        }
+        return new Round(hospitalOf, result[1]);
+    }
+
+    /**
+     * Hospitals indexed by their nearest graph node
+     */
+    private static class HospitalSet {
+        final List<Hospital> hospitals;
+        final Map<Integer, int[]> byNode = new HashMap<>();
+
+        HospitalSet(GraphExtractor graph, List<Hospital> hospitals) {
+            this.hospitals = new ArrayList<>(hospitals);
+            Map<Integer, List<Integer>> grouped = new HashMap<>();
+            for (int i = 0; i < hospitals.size(); i++) {
+                Hospital hospital = hospitals.get(i);
+                grouped.computeIfAbsent(graph.findNearestNode(hospital.lat, hospital.lon),
+                    node -> new ArrayList<>()).add(i);
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : grouped.entrySet()) {
+                byNode.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+    }
+
+    private static class Round {
+        final Map<Integer, Integer> hospitalOf;   // patient index -> hospital index
+        final long cost;
+
+        Round(Map<Integer, Integer> hospitalOf, long cost) {
+            this.hospitalOf = hospitalOf;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * One patient's destination
+     */
+    public static class Assignment {
+        public final int patientIndex;     // position in the request
+        public final Patient patient;
+        public final Hospital hospital;
+        public final double distanceMeters;
+        public final double etaMinutes;
+        public final int score;            // HospitalMatcher score with network ETA
+        public final String reservationId; // ER place held, or null
+
+        Assignment(int patientIndex, Patient patient, Hospital hospital, double distanceMeters,
+                   double etaMinutes, int score, String reservationId) {
+            this.patientIndex = patientIndex;
+            this.patient = patient;
+            this.hospital = hospital;
+            this.distanceMeters = distanceMeters;
+            this.etaMinutes = etaMinutes;
+            this.score = score;
+            this.reservationId = reservationId;
+        }
+    }
+
+    /**
+     * Result of distributing one incident
+     */
+    public static class Distribution {
+        public final List<Assignment> assignments;
+        public final List<Integer> unassigned;   // patients with no reachable ER place
+        public final long totalCost;             // flow cost summed over rounds
+        public final int rounds;
+        public final int reachableHospitals;
+        public final double solveMillis;
+
+        Distribution(List<Assignment> assignments, List<Integer> unassigned, long totalCost, int rounds,
+                     int reachableHospitals, double solveMillis) {
+            this.assignments = assignments;
+            this.unassigned = unassigned;
+            this.totalCost = totalCost;
+            this.rounds = rounds;
+            this.reachableHospitals = reachableHospitals;
+            this.solveMillis = solveMillis;
+        }
+    }
+}
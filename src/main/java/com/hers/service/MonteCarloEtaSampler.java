@@ -0,0 +1,224 @@
+package com.hers.service;
+
+import com.hers.algorithms.PathResult;
+import com.hers.model.Edge;
+import com.hers.model.EtaEstimate;
+import com.hers.model.GraphExtractor;
+import com.hers.simulation.TravelTimeModel;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Estimates ETA percentiles of candidate routes by sampling per-edge travel times.
+ *
+ * Each sample draws one city-wide congestion shock (shared by all edges of the
+ * route) plus an independent lognormal time for every edge. Samples are spread
+ * across a ForkJoinPool; every task gets its own SplittableRandom split from a
+ * fixed seed, so results are reproducible regardless of thread scheduling.
+ */
+public class MonteCarloEtaSampler {
+
+    public static final int DEFAULT_SAMPLES = 1000;
+
+    private static final int LEAF_WORK = 256;          // samples per fork-join leaf
+    private static final double CITY_WIDE_CV = 0.10;   // correlated part of the variation
+
+    private final TravelTimeModel model;
+    private final ForkJoinPool pool;
+    private final long seed;
+
+    public MonteCarloEtaSampler(TravelTimeModel model) {
+        this(model, ForkJoinPool.commonPool(), 42L);
+    }
+
+    public MonteCarloEtaSampler(TravelTimeModel model, ForkJoinPool pool, long seed) {
+        this.model = model;
+        this.pool = pool;
+        this.seed = seed;
+    }
+
+    /**
+     * Estimate ETA distribution of a single route
+     */
+    public EtaEstimate estimate(PathResult route, int samples) {
+        return estimateAll(Collections.singletonList(route), samples, Double.NaN).get(0);
+    }
+
+    /**
+     * Estimate ETA distributions of several candidate routes in one parallel pass
+     * @param departureTime seconds since midnight for time-of-day means, or NaN to use current weights
+     * @return one estimate per route, in the same order
+     */
+    public List<EtaEstimate> estimateAll(List<PathResult> routes, int samples, double departureTime) {
+        int routeCount = routes.size();
+        RouteEdges[] prepared = new RouteEdges[routeCount];
+        double[][] results = new double[routeCount][samples];
+
+        for (int r = 0; r < routeCount; r++) {
+            prepared[r] = prepare(routes.get(r), departureTime);
+        }
+
+        if (routeCount > 0 && samples > 0) {
+            pool.invoke(new SampleTask(prepared, results, samples, 0, routeCount * samples,
+                new SplittableRandom(seed)));
+        }
+
+        List<EtaEstimate> estimates = new ArrayList<>(routeCount);
+        for (int r = 0; r < routeCount; r++) {
+            estimates.add(summarize(prepared[r], results[r]));
+        }
+        return estimates;
+    }
+
+    /**
+     * Rank candidate routes by 90th-percentile ETA (most reliable first)
+     * @return indices into routes, best first
+     */
+    public int[] rankByP90(List<EtaEstimate> estimates) {
+        Integer[] order = new Integer[estimates.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(estimates::get));
+
+        int[] ranked = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            ranked[i] = order[i];
+        }
+        return ranked;
+    }
+
+    /**
+     * Resolve path nodes to edges and precompute lognormal parameters
+     */
+    private RouteEdges prepare(PathResult route, double departureTime) {
+        GraphExtractor graph = model.getGraph();
+        List<Integer> path = route.path;
+        int edgeCount = Math.max(0, path.size() - 1);
+
+        double[] logMean = new double[edgeCount];
+        double[] sigma = new double[edgeCount];
+        double expected = 0.0;
+        boolean reachable = route.isPathFound();
+
+        for (int i = 0; i < edgeCount && reachable; i++) {
+            Edge edge = graph.findEdge(path.get(i), path.get(i + 1));
+            if (edge == null || edge.blocked) {
+                reachable = false;
+                break;
+            }
+            double mean = Double.isNaN(departureTime)
+                ? edge.weight
+                : model.getMeanTime(edge, departureTime + expected);
+            double s = TravelTimeModel.sigmaFor(model.getVariation(edge));
+            sigma[i] = s;
+            logMean[i] = Math.log(Math.max(mean, 1e-3)) - s * s / 2.0;
+            expected += mean;
+        }
+
+        return new RouteEdges(logMean, sigma, expected, reachable);
+    }
+
+    private static EtaEstimate summarize(RouteEdges route, double[] samples) {
+        int n = samples.length;
+        if (!route.reachable || n == 0) {
+            double value = route.reachable ? route.expected : Double.POSITIVE_INFINITY;
+            return new EtaEstimate(value, value, value, value, value, 0);
+        }
+
+        double sum = 0.0;
+        for (double s : samples) {
+            sum += s;
+        }
+        Arrays.sort(samples);
+
+        return new EtaEstimate(route.expected, sum / n,
+            percentile(samples, 0.50), percentile(samples, 0.90), samples[n - 1], n);
+    }
+
+    /**
+     * Nearest-rank percentile of a sorted array
+     */
+    private static double percentile(double[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Precomputed per-edge parameters of one route
+     */
+    private static class RouteEdges {
+        final double[] logMean;
+        final double[] sigma;
+        final double expected;
+        final boolean reachable;
+
+        RouteEdges(double[] logMean, double[] sigma, double expected, boolean reachable) {
+            this.logMean = logMean;
+            this.sigma = sigma;
+            this.expected = expected;
+            this.reachable = reachable;
+        }
+    }
+
+    /**
+     * Fork-join task over a flattened (route, sample) index range
+     */
+    private static class SampleTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RouteEdges[] routes;
+        private final double[][] results;
+        private final int samplesPerRoute;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+
+        SampleTask(RouteEdges[] routes, double[][] results, int samplesPerRoute,
+                   int from, int to, SplittableRandom random) {
+            this.routes = routes;
+            this.results = results;
+            this.samplesPerRoute = samplesPerRoute;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_WORK) {
+                sample();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            SplittableRandom rightRandom = random.split();
+            invokeAll(
+                new SampleTask(routes, results, samplesPerRoute, from, mid, random),
+                new SampleTask(routes, results, samplesPerRoute, mid, to, rightRandom));
+        }
+
+        private void sample() {
+            double citySigma = TravelTimeModel.sigmaFor(CITY_WIDE_CV);
+            double cityShift = -citySigma * citySigma / 2.0;
+
+            for (int index = from; index < to; index++) {
+                RouteEdges route = routes[index / samplesPerRoute];
+                if (!route.reachable) {
+                    continue;
+                }
+
+                double total = 0.0;
+                double[] logMean = route.logMean;
+                double[] sigma = route.sigma;
+                for (int e = 0; e < logMean.length; e++) {
+                    total += Math.exp(logMean[e] + sigma[e] * random.nextGaussian());
+                }
+
+                double cityFactor = Math.exp(cityShift + citySigma * random.nextGaussian());
+                results[index / samplesPerRoute][index % samplesPerRoute] = total * cityFactor;
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.PathResult;
+import com.hers.model.*;
+
+import java.util.*;
+
+/**
+ * Chooses the ambulance with the lowest road-network ETA to an emergency.
+ *
+ * One reverse Dijkstra runs from the emergency node over incoming edges, so the
+ * time it settles at an ambulance's anchor node is that ambulance's driving ETA.
+ * Candidates are pulled from the fleet's spatial index nearest-first in growing
+ * batches; the straight-line distance divided by the maximum road speed is a lower
+ * bound on ETA, so once the best ETA found is below the bound of the next unfetched
+ * ambulance (and below the search frontier) it is proven optimal. The winner is
+ * claimed atomically; if a concurrent request took it, the search simply resumes.
+ */
+public class NetworkDispatcher {
+
+    private static final double MAX_SPEED_MPS = 13.89;     // free-flow speed used for edge weights
+    private static final double SNAP_ALLOWANCE_M = 500.0;  // assumed max ambulance-to-node snap distance
+    private static final int INITIAL_CANDIDATES = 8;
+    private static final double MAX_SEARCH_SECONDS = 3 * 3600.0;
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private volatile AnchorRegistry anchors;
+
+    public NetworkDispatcher(GraphExtractor graph, AmbulanceFleet fleet) {
+        this.graph = graph;
+        this.fleet = fleet;
+    }
+
+    /**
+     * Take ambulance nodes from shared anchors instead of snapping per request
+     */
+    public void setAnchorRegistry(AnchorRegistry anchors) {
+        this.anchors = anchors;
+    }
+
+    private int anchorOf(Ambulance ambulance) {
+        AnchorRegistry registry = anchors;
+        if (registry != null) {
+            return registry.nodeOf(ambulance);
+        }
+        Ambulance.Position position = ambulance.getPosition();
+        return graph.findNearestNode(position.lat, position.lon);
+    }
+
+    /**
+     * Find and atomically claim the available ambulance with the best network ETA
+     * @return assignment with the driving route, or null if no reachable ambulance is available
+     */
+    public AmbulanceAssignmentResult dispatch(double lat, double lon, Ambulance.AmbulanceType requiredType,
+                                              String emergencyId) {
+        Search search = new Search(lat, lon, requiredType);
+
+        while (true) {
+            Found best = search.findBest();
+            if (best == null) {
+                return null;
+            }
+            if (fleet.reserve(best.ambulance, emergencyId)) {
+                return search.toAssignment(best);
+            }
+            search.discard(best); // claimed concurrently, continue with the next best
+        }
+    }
+
+    /**
+     * Find the best ambulance by network ETA without claiming it
+     */
+    public AmbulanceAssignmentResult findBest(double lat, double lon, Ambulance.AmbulanceType requiredType) {
+        Search search = new Search(lat, lon, requiredType);
+        Found best = search.findBest();
+        return best == null ? null : search.toAssignment(best);
+    }
+
+    /**
+     * The best available ambulances by network ETA, fastest first, without claiming them
+     */
+    public List<AmbulanceAssignmentResult> findBest(double lat, double lon, Ambulance.AmbulanceType requiredType,
+                                                    int count) {
+        Search search = new Search(lat, lon, requiredType);
+        List<AmbulanceAssignmentResult> results = new ArrayList<>();
+        while (results.size() < count) {
+            Found best = search.findBest();
+            if (best == null) {
+                break;
+            }
+            results.add(search.toAssignment(best));
+            search.discard(best); // the next round proves the runner-up
+        }
+        return results;
+    }
+
+    /**
+     * State of one reverse search from an emergency location
+     */
+    private class Search {
+        final double lat;
+        final double lon;
+        final Ambulance.AmbulanceType requiredType;
+        final int emergencyNode;
+        final double emergencySnap;
+        final IncrementalDijkstra dijkstra;
+
+        final Map<Integer, List<Ambulance>> targets = new HashMap<>();    // anchor node -> ambulances
+        final Set<Integer> unsettledTargets = new HashSet<>();
+        final Set<Ambulance> fetched = new HashSet<>();
+        final PriorityQueue<Found> found = new PriorityQueue<>();
+        final Set<Ambulance> discarded = new HashSet<>();
+        int batchSize = INITIAL_CANDIDATES;
+        boolean exhausted;                  // every eligible ambulance has been fetched
+        double unfetchedBound;              // ETA lower bound of any ambulance not fetched yet
+        double maxSnap = SNAP_ALLOWANCE_M;
+
+        Search(double lat, double lon, Ambulance.AmbulanceType requiredType) {
+            this.lat = lat;
+            this.lon = lon;
+            this.requiredType = requiredType;
+            this.emergencyNode = graph.findNearestNode(lat, lon);
+            Node node = graph.getNode(emergencyNode);
+            this.emergencySnap = node == null ? 0.0 : GraphExtractor.haversineDistance(lat, lon, node.lat, node.lon);
+            this.dijkstra = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.REVERSE, emergencyNode);
+            fetchMore();
+        }
+
+        /**
+         * Pull the next batch of straight-line nearest candidates and anchor them
+         */
+        void fetchMore() {
+            List<Ambulance> batch = fleet.findNearestAvailable(lat, lon, batchSize, requiredType);
+            exhausted = batch.size() < batchSize;
+            batchSize *= 2;
+
+            double farthest = 0.0;
+            for (Ambulance ambulance : batch) {
+                double straight = ambulance.distanceTo(lat, lon);
+                farthest = Math.max(farthest, straight);
+                if (!fetched.add(ambulance)) {
+                    continue;
+                }
+
+                int anchor = anchorOf(ambulance);
+                Node anchorNode = graph.getNode(anchor);
+                if (anchorNode != null) {
+                    maxSnap = Math.max(maxSnap, ambulance.distanceTo(anchorNode.lat, anchorNode.lon));
+                }
+                targets.computeIfAbsent(anchor, k -> new ArrayList<>()).add(ambulance);
+                if (dijkstra.isSettled(anchor)) {
+                    found.offer(new Found(ambulance, anchor, dijkstra.getTime(anchor), straight));
+                } else {
+                    unsettledTargets.add(anchor);
+                }
+            }
+
+            unfetchedBound = exhausted
+                ? Double.POSITIVE_INFINITY
+                : Math.max(0.0, farthest - emergencySnap - maxSnap) / MAX_SPEED_MPS;
+        }
+
+        /**
+         * Continue the search until the best remaining candidate is proven optimal
+         */
+        Found findBest() {
+            while (true) {
+                Found best = peekValid();
+                double bestEta = best == null ? Double.POSITIVE_INFINITY : best.eta;
+                double frontier = dijkstra.peekTime();
+
+                // Unfetched ambulances might still beat the best: pull more candidates
+                if (!exhausted && unfetchedBound < bestEta && unfetchedBound <= frontier) {
+                    fetchMore();
+                    continue;
+                }
+
+                if (best != null && frontier >= bestEta) {
+                    return best; // nothing unsettled can arrive sooner
+                }
+                if (frontier == Double.POSITIVE_INFINITY || frontier > MAX_SEARCH_SECONDS) {
+                    return best; // search space exhausted
+                }
+                if (exhausted && unsettledTargets.isEmpty()) {
+                    return best; // every candidate has been reached already
+                }
+
+                int node = dijkstra.settleNext();
+                unsettledTargets.remove(node);
+                List<Ambulance> atNode = targets.get(node);
+                if (atNode != null) {
+                    double eta = dijkstra.getTime(node);
+                    for (Ambulance ambulance : atNode) {
+                        found.offer(new Found(ambulance, node, eta, ambulance.distanceTo(lat, lon)));
+                    }
+                }
+            }
+        }
+
+        private Found peekValid() {
+            while (!found.isEmpty()) {
+                Found head = found.peek();
+                if (!discarded.contains(head.ambulance) && head.ambulance.isAvailable()) {
+                    return head;
+                }
+                found.poll(); // taken by someone else since it was found
+            }
+            return null;
+        }
+
+        void discard(Found candidate) {
+            discarded.add(candidate.ambulance);
+        }
+
+        AmbulanceAssignmentResult toAssignment(Found best) {
+            PathResult path = dijkstra.toPathResult(best.anchorNode, "Network-ETA");
+            return new AmbulanceAssignmentResult(best.ambulance, path, best.straightLine);
+        }
+    }
+
+    /**
+     * An ambulance whose network ETA has been settled
+     */
+    private static class Found implements Comparable<Found> {
+        final Ambulance ambulance;
+        final int anchorNode;
+        final double eta;
+        final double straightLine;
+
+        Found(Ambulance ambulance, int anchorNode, double eta, double straightLine) {
+            this.ambulance = ambulance;
+            this.anchorNode = anchorNode;
+            this.eta = eta;
+            this.straightLine = straightLine;
+        }
+
+        @Override
+        public int compareTo(Found other) {
+            return Double.compare(this.eta, other.eta);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.TopNSelector;
+import com.hers.model.*;
+
+import java.util.*;
+
+/**
+ * HospitalMatcher scoring with road-network travel times instead of straight-line distance.
+ *
+ * One forward Dijkstra from the emergency reaches hospitals in ETA order over
+ * current edge weights (so congestion and closures count). The travel time
+ * replaces distance in the score's distance penalty, as the km a 40 km/h
+ * ambulance covers in that time. Once N hospitals are scored, a hospital not
+ * yet reached is dropped as soon as its best possible score - suitability less
+ * the penalty for the larger of the search frontier and its straight-line time
+ * at free-flow speed - cannot beat the N-th best; the search stops when none
+ * are left.
+ *
+ * Hospitals and their snapped nodes live in one immutable set behind a volatile
+ * reference; setHospitals swaps in a reloaded list without blocking matches.
+ */
+public class NetworkHospitalMatcher {
+
+    private static final double MAX_SPEED_MPS = 13.89;     // free-flow speed used for edge weights
+    private static final double MAX_SEARCH_SECONDS = 2 * 3600.0;
+    private static final int PRUNE_CHECK_INTERVAL = 256;   // settled nodes between pruning passes
+
+    private final GraphExtractor graph;
+    private volatile HospitalSet current;
+
+    public NetworkHospitalMatcher(GraphExtractor graph, List<Hospital> hospitals) {
+        this.graph = graph;
+        this.current = new HospitalSet(graph, hospitals);
+    }
+
+    /**
+     * Swap in a reloaded hospital list (matches already running finish on the old one)
+     */
+    public void setHospitals(List<Hospital> hospitals) {
+        current = new HospitalSet(graph, hospitals);
+    }
+
+    /**
+     * Find and score the best hospitals for a patient by network ETA
+     * (falls back to straight-line matching if no hospital is reachable)
+     */
+    public List<HospitalRecommendation> findBestHospitals(Patient patient, double emergencyLat,
+                                                          double emergencyLon, int topN) {
+        return findBestHospitals(patient, emergencyLat, emergencyLon, topN, null);
+    }
+
+    /**
+     * Same, skipping hospitals whose ER is full in the capacity snapshot (null ignores capacity)
+     */
+    public List<HospitalRecommendation> findBestHospitals(Patient patient, double emergencyLat,
+                                                          double emergencyLon, int topN,
+                                                          HospitalCapacityRegistry.Snapshot capacity) {
+        HospitalSet set = current;
+        List<Hospital> hospitals = set.hospitals;
+        int count = hospitals.size();
+        int keep = Math.max(0, Math.min(topN, count));
+        if (keep == 0) {
+            return new ArrayList<>();
+        }
+        int[] table = HospitalMatcher.scoreTable(patient);
+        boolean critical = patient.severity == Patient.SeverityLevel.CRITICAL;
+
+        int source = graph.findNearestNode(emergencyLat, emergencyLon);
+        Node sourceNode = graph.getNode(source);
+        int[] suitability = new int[count];
+        double[] straightBound = new double[count];
+        int[] open = new int[count];   // hospitals neither reached nor pruned
+        int openCount = 0;
+        boolean[] reached = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            Hospital hospital = hospitals.get(i);
+            if (capacity != null && !capacity.hasRoom(hospital, HospitalCapacityRegistry.Department.EMERGENCY)) {
+                reached[i] = true; // ER full: never a candidate
+                continue;
+            }
+            suitability[i] = table[HospitalMatcher.featureKey(hospital)];
+            Node node = graph.getNode(set.nodes[i]);
+            straightBound[i] = GraphExtractor.haversineDistance(sourceNode.lat, sourceNode.lon, node.lat, node.lon)
+                / MAX_SPEED_MPS;
+            open[openCount++] = i;
+        }
+        int unreached = openCount;   // open hospitals not yet reached
+
+        // Best so far by score; hospitals are reached in ETA order, so ties keep the shorter ETA
+        TopNSelector best = new TopNSelector(keep);
+        double[] etas = new double[count];
+        double[] distances = new double[count];
+
+        IncrementalDijkstra search = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.FORWARD, source);
+        int sinceCheck = 0;
+        boolean check = false;
+        while (unreached > 0) {
+            double frontier = search.peekTime();
+            if (frontier > MAX_SEARCH_SECONDS) {
+                break;
+            }
+            if (best.isFull() && (check || ++sinceCheck >= PRUNE_CHECK_INTERVAL)) {
+                // Drop open hospitals that cannot beat the N-th best even at their lower-bound ETA
+                sinceCheck = 0;
+                check = false;
+                int threshold = (int) -best.threshold();
+                for (int i = openCount - 1; i >= 0; i--) {
+                    int h = open[i];
+                    int bound = HospitalMatcher.clamp(suitability[h]
+                        - HospitalMatcher.travelTimePenalty(Math.max(frontier, straightBound[h]), critical));
+                    if (reached[h]) {
+                        open[i] = open[--openCount];
+                    } else if (bound <= threshold) {
+                        open[i] = open[--openCount];
+                        unreached--;
+                    }
+                }
+                if (unreached == 0) {
+                    break;
+                }
+            }
+
+            int node = search.settleNext();
+            if (node < 0) {
+                break;
+            }
+            int[] atNode = set.byNode.get(node);
+            if (atNode == null) {
+                continue;
+            }
+            double eta = search.getTime(node);
+            double distance = search.getDistance(node);
+            for (int h : atNode) {
+                if (reached[h]) {
+                    continue;
+                }
+                reached[h] = true;
+                unreached--;
+                etas[h] = eta;
+                distances[h] = distance;
+                best.offer(-HospitalMatcher.clamp(suitability[h] - HospitalMatcher.travelTimePenalty(eta, critical)), h);
+            }
+            check = true;
+        }
+
+        if (best.size() == 0) {
+            return HospitalMatcher.findBestHospitals(patient, emergencyLat, emergencyLon, hospitals, topN, capacity);
+        }
+        int[] kept = best.drainSortedIds();
+        List<HospitalRecommendation> recommendations = new ArrayList<>(kept.length);
+        for (int h : kept) {
+            Hospital hospital = hospitals.get(h);
+            int score = HospitalMatcher.clamp(suitability[h] - HospitalMatcher.travelTimePenalty(etas[h], critical));
+            recommendations.add(new HospitalRecommendation(hospital, distances[h], etas[h] / 60.0,
+                score, HospitalMatcher.generateReasoning(hospital, patient, distances[h], score)));
+        }
+        return recommendations;
+    }
+
+    /**
+     * Hospitals with their nearest graph nodes, indexed by node
+     */
+    private static class HospitalSet {
+        final List<Hospital> hospitals;
+        final int[] nodes;
+        final Map<Integer, int[]> byNode = new HashMap<>();
+
+        HospitalSet(GraphExtractor graph, List<Hospital> hospitals) {
+            this.hospitals = new ArrayList<>(hospitals);
+            this.nodes = new int[hospitals.size()];
+            Map<Integer, List<Integer>> grouped = new HashMap<>();
+            for (int i = 0; i < hospitals.size(); i++) {
+                Hospital hospital = hospitals.get(i);
+                nodes[i] = graph.findNearestNode(hospital.lat, hospital.lon);
+                grouped.computeIfAbsent(nodes[i], node -> new ArrayList<>()).add(i);
+            }
+            for (Map.Entry<Integer, List<Integer>> entry : grouped.entrySet()) {
+                byNode.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+    }
+}
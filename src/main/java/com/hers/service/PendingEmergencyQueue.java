@@ -0,0 +1,342 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.PathResult;
+import com.hers.model.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Holds emergencies that found no available unit and dispatches them as units free up.
+ *
+ * Calls are ordered by severity, then waiting time. When a unit becomes available
+ * it is matched to the most severe tier holding a call it can serve; within that
+ * tier it takes the call with the lowest network ETA minus a credit for time
+ * already waited, so nearby calls go first without starving old ones. The match
+ * is one forward Dijkstra from the unit over the calls indexed by road node; it
+ * stops once the frontier, less the largest waiting credit in the tier, passes
+ * the best key found, so its cost depends on travel distance, not queue length.
+ *
+ * Matching runs on one worker thread, off the thread that freed the unit.
+ */
+public class PendingEmergencyQueue {
+
+    public static final double WAIT_CREDIT = 0.5;  // seconds of driving traded per second waited
+    private static final double MAX_SEARCH_SECONDS = 3 * 3600.0;
+    private static final int MAX_REMEMBERED_ASSIGNMENTS = 1000;
+    private static final Patient.SeverityLevel[] BY_PRIORITY = Patient.SeverityLevel.values(); // most severe first
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final NetworkDispatcher dispatcher;
+    private final ExecutorService worker;
+    private volatile AnchorRegistry anchors;
+    private final Map<String, Pending> byId = new HashMap<>();
+    private final Map<Patient.SeverityLevel, Tier> tiers = new EnumMap<>(Patient.SeverityLevel.class);
+    private final Map<String, AmbulanceAssignmentResult> assigned =
+        new LinkedHashMap<String, AmbulanceAssignmentResult>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AmbulanceAssignmentResult> eldest) {
+                return size() > MAX_REMEMBERED_ASSIGNMENTS;
+            }
+        };
+    private long sequence;
+
+    public PendingEmergencyQueue(GraphExtractor graph, AmbulanceFleet fleet, NetworkDispatcher dispatcher) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.dispatcher = dispatcher;
+        for (Patient.SeverityLevel severity : BY_PRIORITY) {
+            tiers.put(severity, new Tier());
+        }
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pending-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fleet.addListener(new AmbulanceListener() {
+            @Override
+            public void onStatusChanged(Ambulance ambulance, Ambulance.AmbulanceStatus oldStatus) {
+                if (ambulance.isAvailable() && oldStatus != Ambulance.AmbulanceStatus.AVAILABLE) {
+                    worker.execute(() -> onUnitFreed(ambulance));
+                }
+            }
+        });
+    }
+
+    /**
+     * Take ambulance nodes from shared anchors instead of snapping per request
+     */
+    public void setAnchorRegistry(AnchorRegistry anchors) {
+        this.anchors = anchors;
+    }
+
+    private int anchorOf(Ambulance ambulance) {
+        AnchorRegistry registry = anchors;
+        if (registry != null) {
+            return registry.nodeOf(ambulance);
+        }
+        Ambulance.Position position = ambulance.getPosition();
+        return graph.findNearestNode(position.lat, position.lon);
+    }
+
+    /**
+     * Queue an emergency that could not be dispatched
+     * @return future completed with the assignment once a unit takes the call
+     *         (or with null if the call is cancelled)
+     */
+    public CompletableFuture<AmbulanceAssignmentResult> enqueue(Emergency emergency) {
+        Pending pending = new Pending(emergency, graph.findNearestNode(emergency.lat, emergency.lon));
+        synchronized (this) {
+            Pending existing = byId.get(emergency.id);
+            if (existing != null) {
+                return existing.assignment; // already queued
+            }
+            pending.sequence = sequence++;
+            byId.put(emergency.id, pending);
+            tiers.get(emergency.severity).add(pending);
+        }
+        System.out.println("⏳ " + emergency.id + " (" + emergency.severity + ") queued, "
+            + size() + " pending");
+        // A unit may have freed up between the failed dispatch and now
+        worker.execute(() -> retry(pending));
+        return pending.assignment;
+    }
+
+    /**
+     * Remove a call from the queue (e.g. handled by another service)
+     * @return false if it was not pending
+     */
+    public boolean cancel(String emergencyId) {
+        Pending pending;
+        synchronized (this) {
+            pending = byId.get(emergencyId);
+            if (pending == null) {
+                return false;
+            }
+            remove(pending);
+        }
+        pending.assignment.complete(null);
+        return true;
+    }
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Pending calls, most urgent first
+     */
+    public synchronized List<Emergency> getPending() {
+        List<Pending> ordered = new ArrayList<>(byId.values());
+        Collections.sort(ordered);
+        List<Emergency> emergencies = new ArrayList<>();
+        for (Pending pending : ordered) {
+            emergencies.add(pending.emergency);
+        }
+        return emergencies;
+    }
+
+    /**
+     * Assignment made for a formerly queued call, or null if unknown or still pending
+     */
+    public synchronized AmbulanceAssignmentResult getAssignment(String emergencyId) {
+        return assigned.get(emergencyId);
+    }
+
+    public synchronized boolean isPending(String emergencyId) {
+        return byId.containsKey(emergencyId);
+    }
+
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Dispatch a queued call directly if an eligible unit is free (runs on the worker)
+     */
+    private void retry(Pending pending) {
+        Emergency emergency = pending.emergency;
+        synchronized (this) {
+            if (byId.get(emergency.id) != pending
+                    || fleet.findNearestAvailable(emergency.lat, emergency.lon, 1, emergency.requiredType).isEmpty()) {
+                return;
+            }
+        }
+        AmbulanceAssignmentResult assignment = dispatcher.dispatch(
+            emergency.lat, emergency.lon, emergency.requiredType, emergency.id);
+        if (assignment == null) {
+            return;
+        }
+        synchronized (this) {
+            if (byId.get(emergency.id) != pending) {
+                assignment.ambulance.makeAvailable(); // cancelled meanwhile: give the unit back
+                return;
+            }
+            complete(pending, assignment);
+        }
+    }
+
+    /**
+     * Give a freed unit the best pending call it can serve (runs on the worker)
+     */
+    private void onUnitFreed(Ambulance ambulance) {
+        synchronized (this) {
+            if (byId.isEmpty() || !ambulance.isAvailable()) {
+                return;
+            }
+            int start = anchorOf(ambulance);
+            for (Patient.SeverityLevel severity : BY_PRIORITY) {
+                Tier tier = tiers.get(severity);
+                Pending oldest = tier.oldestServableBy(ambulance.type);
+                if (oldest == null) {
+                    continue;
+                }
+                Match match = findMatch(tier, ambulance, start, oldest);
+                if (match == null) {
+                    continue; // nothing in this tier is reachable
+                }
+                if (!fleet.reserve(ambulance, match.pending.emergency.id)) {
+                    return; // the unit was claimed elsewhere first
+                }
+                complete(match.pending, new AmbulanceAssignmentResult(ambulance, match.path,
+                    ambulance.distanceTo(match.pending.emergency.lat, match.pending.emergency.lon)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forward search from the unit for the call with the lowest ETA minus waiting credit
+     */
+    private Match findMatch(Tier tier, Ambulance ambulance, int start, Pending oldest) {
+        long now = System.currentTimeMillis();
+        double maxCredit = WAIT_CREDIT * oldest.emergency.getWaitingSeconds(now);
+        IncrementalDijkstra search = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.FORWARD, start);
+        Pending best = null;
+        int bestNode = -1;
+        double bestKey = Double.POSITIVE_INFINITY;
+
+        while (true) {
+            double frontier = search.peekTime();
+            if (frontier > MAX_SEARCH_SECONDS || frontier - maxCredit >= bestKey) {
+                break; // no unsettled call can beat the best key
+            }
+            int node = search.settleNext();
+            if (node < 0) {
+                break;
+            }
+            List<Pending> atNode = tier.byNode.get(node);
+            if (atNode == null) {
+                continue;
+            }
+            double eta = search.getTime(node);
+            for (Pending pending : atNode) {
+                if (!ambulance.type.canServe(pending.emergency.requiredType)) {
+                    continue;
+                }
+                double key = eta - WAIT_CREDIT * pending.emergency.getWaitingSeconds(now);
+                if (key < bestKey) {
+                    bestKey = key;
+                    best = pending;
+                    bestNode = node;
+                }
+            }
+        }
+        return best == null ? null : new Match(best, search.toPathResult(bestNode, "Pending-Queue"));
+    }
+
+    private void complete(Pending pending, AmbulanceAssignmentResult assignment) {
+        remove(pending);
+        assigned.put(pending.emergency.id, assignment);
+        System.out.printf("🚑 Queued %s assigned to %s after %.0f s waiting (ETA %.1f min), %d pending%n",
+            pending.emergency.id, assignment.ambulance.id,
+            pending.emergency.getWaitingSeconds(System.currentTimeMillis()),
+            assignment.pathResult.totalTime / 60.0, byId.size());
+        pending.assignment.complete(assignment);
+    }
+
+    private void remove(Pending pending) {
+        byId.remove(pending.emergency.id);
+        tiers.get(pending.emergency.severity).remove(pending);
+    }
+
+    /**
+     * Pending calls of one severity: by road node for matching, oldest first per required type
+     */
+    private static class Tier {
+        final Map<Integer, List<Pending>> byNode = new HashMap<>();
+        final Map<Ambulance.AmbulanceType, TreeSet<Pending>> byType = new EnumMap<>(Ambulance.AmbulanceType.class);
+
+        void add(Pending pending) {
+            byNode.computeIfAbsent(pending.node, n -> new ArrayList<>(2)).add(pending);
+            byType.computeIfAbsent(pending.emergency.requiredType, t -> new TreeSet<>()).add(pending);
+        }
+
+        void remove(Pending pending) {
+            List<Pending> atNode = byNode.get(pending.node);
+            if (atNode != null) {
+                atNode.remove(pending);
+                if (atNode.isEmpty()) {
+                    byNode.remove(pending.node);
+                }
+            }
+            TreeSet<Pending> sameType = byType.get(pending.emergency.requiredType);
+            if (sameType != null) {
+                sameType.remove(pending);
+            }
+        }
+
+        /**
+         * Longest-waiting call a unit of this type can serve, or null
+         */
+        Pending oldestServableBy(Ambulance.AmbulanceType unitType) {
+            Pending oldest = null;
+            for (Map.Entry<Ambulance.AmbulanceType, TreeSet<Pending>> entry : byType.entrySet()) {
+                if (unitType.canServe(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    Pending first = entry.getValue().first();
+                    if (oldest == null || first.compareTo(oldest) < 0) {
+                        oldest = first;
+                    }
+                }
+            }
+            return oldest;
+        }
+    }
+
+    /**
+     * A queued call; ordered by severity, then arrival
+     */
+    private static class Pending implements Comparable<Pending> {
+        final Emergency emergency;
+        final int node;
+        final CompletableFuture<AmbulanceAssignmentResult> assignment = new CompletableFuture<>();
+        long sequence;
+
+        Pending(Emergency emergency, int node) {
+            this.emergency = emergency;
+            this.node = node;
+        }
+
+        @Override
+        public int compareTo(Pending other) {
+            int bySeverity = Integer.compare(other.emergency.severity.priority, this.emergency.severity.priority);
+            if (bySeverity != 0) {
+                return bySeverity;
+            }
+            int byArrival = Long.compare(this.emergency.receivedAt, other.emergency.receivedAt);
+            return byArrival != 0 ? byArrival : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private static class Match {
+        final Pending pending;
+        final PathResult path;
+
+        Match(Pending pending, PathResult path) {
+            this.pending = pending;
+            this.path = path;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.hers.service;
+
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.PathResult;
+import com.hers.algorithms.TopNSelector;
+import com.hers.model.*;
+
+import java.util.*;
+
+/**
+ * Plans the whole trip to definitive care: ambulance to scene, then scene to hospital.
+ *
+ * The two legs meet only at the scene, so one reverse search from the scene
+ * ranks ambulances by ETA (NetworkDispatcher) and one forward search from the
+ * scene ranks hospitals by transport time plus a penalty for poor suitability
+ * (HospitalMatcher's score without its distance term). A pair's cost is the sum
+ * of the two, so the best pairs come from merging the two ranked lists.
+ */
+public class TripPlanner {
+
+    // HospitalMatcher trades 2 score points per km at 40 km/h, i.e. one point per 45 s of driving
+    public static final double SECONDS_PER_SCORE_POINT = 45.0;
+    private static final double MAX_SEARCH_SECONDS = 3 * 3600.0;
+    private static final int PERFECT_SCORE = 100;
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final NetworkDispatcher dispatcher;
+    private volatile Map<Integer, List<Hospital>> hospitalsByNode;   // replaced whole on reload
+    private volatile HospitalCapacityRegistry capacity;
+
+    public TripPlanner(GraphExtractor graph, AmbulanceFleet fleet, NetworkDispatcher dispatcher,
+                       List<Hospital> hospitals) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.dispatcher = dispatcher;
+        this.hospitalsByNode = byNode(hospitals);
+    }
+
+    /**
+     * Swap in a reloaded hospital list (plans already running finish on the old one)
+     */
+    public void setHospitals(List<Hospital> hospitals) {
+        hospitalsByNode = byNode(hospitals);
+    }
+
+    private Map<Integer, List<Hospital>> byNode(List<Hospital> hospitals) {
+        Map<Integer, List<Hospital>> byNode = new HashMap<>();
+        for (Hospital hospital : hospitals) {
+            byNode.computeIfAbsent(graph.findNearestNode(hospital.lat, hospital.lon),
+                node -> new ArrayList<>()).add(hospital);
+        }
+        return byNode;
+    }
+
+    /**
+     * Skip hospitals whose ER is full and reserve an ER place for dispatched trips
+     */
+    public void setCapacityRegistry(HospitalCapacityRegistry capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Rank (ambulance, hospital) pairs for an emergency, best first
+     */
+    public List<TripOption> plan(Emergency emergency, int count) {
+        List<AmbulanceAssignmentResult> ambulances =
+            dispatcher.findBest(emergency.lat, emergency.lon, emergency.requiredType, count);
+        if (ambulances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<HospitalLeg> legs = rankHospitals(emergency, count);
+
+        // Both lists are sorted, so the best pairs are found with a small frontier over (i, j)
+        List<TripOption> options = new ArrayList<>();
+        PriorityQueue<int[]> frontier = new PriorityQueue<>(Comparator.comparingDouble(
+            pair -> ambulances.get(pair[0]).pathResult.totalTime + legs.get(pair[1]).cost));
+        Set<Long> seen = new HashSet<>();
+        if (!legs.isEmpty()) {
+            frontier.add(new int[]{0, 0});
+            seen.add(0L);
+        }
+        while (!frontier.isEmpty() && options.size() < count) {
+            int[] pair = frontier.poll();
+            options.add(new TripOption(ambulances.get(pair[0]), legs.get(pair[1])));
+            if (pair[0] + 1 < ambulances.size() && seen.add(((long) (pair[0] + 1) << 32) | pair[1])) {
+                frontier.add(new int[]{pair[0] + 1, pair[1]});
+            }
+            if (pair[1] + 1 < legs.size() && seen.add(((long) pair[0] << 32) | (pair[1] + 1))) {
+                frontier.add(new int[]{pair[0], pair[1] + 1});
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Plan and atomically claim the ambulance of the best pair whose unit is still free,
+     * together with an ER place at its hospital when capacity is tracked
+     * @return the claimed trip, or null if no ambulance could be claimed
+     */
+    public TripOption planAndDispatch(Emergency emergency, int count) {
+        HospitalCapacityRegistry registry = capacity;
+        for (TripOption option : plan(emergency, count)) {
+            if (!fleet.reserve(option.ambulance.ambulance, emergency.id)) {
+                continue;
+            }
+            if (registry == null) {
+                return option;
+            }
+            String reservation = registry.reserve(option.hospital.hospital,
+                HospitalCapacityRegistry.Department.EMERGENCY, emergency.id);
+            if (reservation != null) {
+                return new TripOption(option.ambulance, option.hospital, reservation);
+            }
+            option.ambulance.ambulance.makeAvailable(); // ER filled up meanwhile: try the next pair
+        }
+        return null;
+    }
+
+    /**
+     * Forward search from the scene until the `count` cheapest hospitals are proven
+     */
+    private List<HospitalLeg> rankHospitals(Emergency emergency, int count) {
+        Patient patient = emergency.patient != null ? emergency.patient
+            : new Patient("Unknown", 40, Patient.EmergencyType.GENERAL, emergency.severity, ""); // neutral adult
+        int scene = graph.findNearestNode(emergency.lat, emergency.lon);
+        IncrementalDijkstra search = new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.FORWARD, scene);
+
+        Map<Integer, List<Hospital>> hospitalsByNode = this.hospitalsByNode;
+        HospitalCapacityRegistry registry = capacity;
+        HospitalCapacityRegistry.Snapshot beds = registry == null ? null : registry.snapshot();
+        Map<Hospital, Double> penalties = new HashMap<>();
+        Map<Hospital, Integer> scores = new HashMap<>();
+        Set<Hospital> unreached = new HashSet<>();
+        for (List<Hospital> atNode : hospitalsByNode.values()) {
+            for (Hospital hospital : atNode) {
+                if (beds != null && !beds.hasRoom(hospital, HospitalCapacityRegistry.Department.EMERGENCY)) {
+                    continue; // ER full
+                }
+                unreached.add(hospital);
+                int score = HospitalMatcher.scoreSuitability(hospital, patient);
+                scores.put(hospital, score);
+                penalties.put(hospital, Math.max(0, PERFECT_SCORE - score) * SECONDS_PER_SCORE_POINT);
+            }
+        }
+        // Penalties are fixed for the call: sort once, skip past reached hospitals for the bound
+        List<Hospital> byPenalty = new ArrayList<>(unreached);
+        byPenalty.sort(Comparator.comparingDouble(penalties::get));
+        int cheapest = 0;
+
+        // Best legs by cost; a leg (and its path) is only built once its cost makes the cut
+        TopNSelector best = new TopNSelector(count);
+        List<HospitalLeg> accepted = new ArrayList<>();
+        while (!unreached.isEmpty()) {
+            double frontier = search.peekTime();
+            if (frontier > MAX_SEARCH_SECONDS) {
+                break;
+            }
+            if (best.isFull()) {
+                // Unreached hospitals cost at least the frontier plus the smallest unreached penalty
+                while (!unreached.contains(byPenalty.get(cheapest))) {
+                    cheapest++;
+                }
+                double bound = frontier + penalties.get(byPenalty.get(cheapest));
+                if (best.threshold() <= bound) {
+                    break;
+                }
+            }
+            int node = search.settleNext();
+            if (node < 0) {
+                break;
+            }
+            List<Hospital> atNode = hospitalsByNode.get(node);
+            if (atNode == null) {
+                continue;
+            }
+            PathResult path = null;
+            for (Hospital hospital : atNode) {
+                if (!unreached.remove(hospital)) {
+                    continue;
+                }
+                double cost = search.getTime(node) + penalties.get(hospital);
+                if (!best.accepts(cost)) {
+                    continue;
+                }
+                if (path == null) {
+                    path = search.toPathResult(node, "Trip-Hospital");
+                }
+                accepted.add(new HospitalLeg(hospital, path, scores.get(hospital), cost));
+                best.offer(cost, accepted.size() - 1);
+            }
+        }
+
+        List<HospitalLeg> ranked = new ArrayList<>(best.size());
+        for (int id : best.drainSortedIds()) {
+            ranked.add(accepted.get(id));
+        }
+        return ranked;
+    }
+
+    /**
+     * Scene-to-hospital leg with its ranking cost
+     */
+    public static class HospitalLeg {
+        public final Hospital hospital;
+        public final PathResult path;
+        public final int suitability;   // HospitalMatcher score without distance
+        public final double cost;       // transport seconds plus suitability penalty
+
+        HospitalLeg(Hospital hospital, PathResult path, int suitability, double cost) {
+            this.hospital = hospital;
+            this.path = path;
+            this.suitability = suitability;
+            this.cost = cost;
+        }
+    }
+
+    /**
+     * One ranked (ambulance, hospital) pair
+     */
+    public static class TripOption {
+        public final AmbulanceAssignmentResult ambulance;
+        public final HospitalLeg hospital;
+        public final double totalSeconds;   // drive to scene plus transport, excluding time on scene
+        public final double cost;           // totalSeconds plus suitability penalty
+        public final String bedReservation; // ER place held for the patient, or null
+
+        TripOption(AmbulanceAssignmentResult ambulance, HospitalLeg hospital) {
+            this(ambulance, hospital, null);
+        }
+
+        TripOption(AmbulanceAssignmentResult ambulance, HospitalLeg hospital, String bedReservation) {
+            this.ambulance = ambulance;
+            this.hospital = hospital;
+            this.totalSeconds = ambulance.pathResult.totalTime + hospital.path.totalTime;
+            this.cost = ambulance.pathResult.totalTime + hospital.cost;
+            this.bedReservation = bedReservation;
+        }
+    }
+}
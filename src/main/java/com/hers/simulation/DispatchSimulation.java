@@ -0,0 +1,507 @@
+package com.hers.simulation;
+
+import com.hers.algorithms.AStarAlgorithm;
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.algorithms.PathResult;
+import com.hers.model.*;
+import com.hers.service.HospitalMatcher;
+import com.hers.service.NetworkDispatcher;
+
+import java.util.*;
+
+/**
+ * Discrete-event simulation of city-wide dispatch.
+ *
+ * Time is a simulated clock driven by an event priority queue, so nothing sleeps:
+ * a simulated day runs as fast as the dispatch and routing code allows. Emergencies
+ * arrive as a Poisson process at random road locations inside the service area and
+ * go through the real pipeline: NetworkDispatcher picks and claims the unit, the
+ * unit drives its PathResult (its location is advanced along the path edges so the
+ * fleet's spatial index stays current), HospitalMatcher picks the destination,
+ * and after handover the unit is available again while it drives back to station.
+ * Calls that find no eligible unit wait in a severity-ordered queue.
+ */
+public class DispatchSimulation {
+
+    private static final double MAX_ROUTE_SECONDS = 3 * 3600.0;
+
+    /**
+     * Simulation parameters (defaults model a busy day in Karachi)
+     */
+    public static class Config {
+        public double arrivalsPerHour = 120;
+        public double durationHours = 24;
+        public long seed = 42;
+        public double onSceneMinutes = 15;           // mean, uniform in [0.5x, 1.5x]
+        public double handoverMinutes = 20;          // mean, uniform in [0.5x, 1.5x]
+        public double positionUpdateSeconds = 60;    // how often moving units report location
+        public double criticalShare = 0.15;
+        public double seriousShare = 0.35;
+        public double maxSnapMeters = 300;           // sampled call locations must be this close to a road
+        public double minLat = 24.80, maxLat = 25.00;
+        public double minLon = 66.95, maxLon = 67.20;
+    }
+
+    private enum EventType {
+        CALL, ARRIVE_SCENE, LEAVE_SCENE, ARRIVE_HOSPITAL, HANDOVER_DONE, POSITION_UPDATE
+    }
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final List<Hospital> hospitals;
+    private final Config config;
+    private final NetworkDispatcher dispatcher;
+    private final AStarAlgorithm aStar;
+    private final Random random;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final PriorityQueue<Incident> waiting = new PriorityQueue<>();
+    private final Map<Ambulance, Movement> movements = new HashMap<>();
+    private final Map<Ambulance, double[]> stations = new HashMap<>();       // home position
+    private final Map<Ambulance, Double> busySince = new HashMap<>();
+    private final Map<Hospital, IncrementalDijkstra> hospitalTrees = new HashMap<>();
+    private final Map<String, PathResult> returnRoutes = new HashMap<>();   // hospital|station -> route
+    private long sequence;
+    private double now;
+    private int incidentCount;
+    private long processedEvents;
+
+    // Results
+    private final SampleDistribution responseTimes = new SampleDistribution();
+    private final Map<Patient.SeverityLevel, SampleDistribution> responseBySeverity =
+        new EnumMap<>(Patient.SeverityLevel.class);
+    private final SampleDistribution queueWaits = new SampleDistribution();
+    private final SampleDistribution dispatchLatencyMs = new SampleDistribution();
+    private final Map<String, Double> stationBusySeconds = new TreeMap<>();
+    private final Map<String, Integer> stationUnits = new TreeMap<>();
+    private int completed;
+
+    public DispatchSimulation(GraphExtractor graph, AmbulanceFleet fleet, List<Hospital> hospitals, Config config) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.hospitals = hospitals;
+        this.config = config;
+        this.dispatcher = new NetworkDispatcher(graph, fleet);
+        this.aStar = new AStarAlgorithm(graph);
+        this.random = new Random(config.seed);
+        for (Patient.SeverityLevel severity : Patient.SeverityLevel.values()) {
+            responseBySeverity.put(severity, new SampleDistribution());
+        }
+    }
+
+    /**
+     * Run the whole simulated period
+     */
+    public Report run() {
+        long wallStart = System.nanoTime();
+        double end = config.durationHours * 3600.0;
+
+        for (Ambulance ambulance : fleet.getAllAmbulances()) {
+            stations.put(ambulance, new double[]{ambulance.stationLat, ambulance.stationLon});
+            stationUnits.merge(ambulance.stationName, 1, Integer::sum);
+            stationBusySeconds.putIfAbsent(ambulance.stationName, 0.0);
+        }
+        schedule(nextArrivalGap(), EventType.CALL, null, null, 0);
+
+        while (!events.isEmpty() && events.peek().time <= end) {
+            Event event = events.poll();
+            now = event.time;
+            processedEvents++;
+            handle(event);
+        }
+
+        // Close busy intervals still open at the end of the period
+        now = end;
+        for (Map.Entry<Ambulance, Double> busy : busySince.entrySet()) {
+            stationBusySeconds.merge(busy.getKey().stationName, end - busy.getValue(), Double::sum);
+        }
+        busySince.clear();
+
+        return new Report(this, (System.nanoTime() - wallStart) / 1_000_000.0);
+    }
+
+    private void handle(Event event) {
+        switch (event.type) {
+            case CALL:
+                onCall();
+                break;
+            case ARRIVE_SCENE:
+                onArriveScene(event.incident);
+                break;
+            case LEAVE_SCENE:
+                onLeaveScene(event.incident);
+                break;
+            case ARRIVE_HOSPITAL:
+                onArriveHospital(event.incident);
+                break;
+            case HANDOVER_DONE:
+                onHandoverDone(event.incident);
+                break;
+            case POSITION_UPDATE:
+                onPositionUpdate(event.ambulance, event.version);
+                break;
+        }
+    }
+
+    private void onCall() {
+        schedule(now + nextArrivalGap(), EventType.CALL, null, null, 0);
+
+        Incident incident = newIncident();
+        if (incident == null) {
+            return;
+        }
+        if (!tryDispatch(incident)) {
+            waiting.add(incident);
+        }
+    }
+
+    private void onArriveScene(Incident incident) {
+        Ambulance ambulance = incident.ambulance;
+        stopMovement(ambulance);
+        ambulance.updateLocation(incident.emergency.lat, incident.emergency.lon);
+        ambulance.compareAndSetStatus(Ambulance.AmbulanceStatus.DISPATCHED, Ambulance.AmbulanceStatus.ON_SCENE);
+
+        double response = now - incident.callTime;
+        responseTimes.add(response);
+        responseBySeverity.get(incident.emergency.severity).add(response);
+        schedule(now + varied(config.onSceneMinutes * 60), EventType.LEAVE_SCENE, incident, ambulance, 0);
+    }
+
+    private void onLeaveScene(Incident incident) {
+        Ambulance ambulance = incident.ambulance;
+        Emergency emergency = incident.emergency;
+        HospitalRecommendation best = HospitalMatcher.findBestHospitals(
+            emergency.patient, emergency.lat, emergency.lon, hospitals, 1).get(0);
+        incident.hospital = best.hospital;
+
+        ambulance.compareAndSetStatus(Ambulance.AmbulanceStatus.ON_SCENE, Ambulance.AmbulanceStatus.TRANSPORTING);
+
+        // Shared reverse tree per hospital, grown on demand: path is scene ... hospital
+        IncrementalDijkstra tree = hospitalTrees.computeIfAbsent(best.hospital, h ->
+            new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.REVERSE,
+                graph.findNearestNode(h.lat, h.lon)));
+        double travel = tree.settleTarget(incident.sceneNode, MAX_ROUTE_SECONDS);
+        if (travel == Double.MAX_VALUE) {
+            travel = best.eta * 60.0; // no road route: fall back to the matcher's estimate
+        } else {
+            startMovement(ambulance, tree.getPath(incident.sceneNode));
+        }
+        schedule(now + travel, EventType.ARRIVE_HOSPITAL, incident, ambulance, 0);
+    }
+
+    private void onArriveHospital(Incident incident) {
+        Ambulance ambulance = incident.ambulance;
+        stopMovement(ambulance);
+        ambulance.updateLocation(incident.hospital.lat, incident.hospital.lon);
+        schedule(now + varied(config.handoverMinutes * 60), EventType.HANDOVER_DONE, incident, ambulance, 0);
+    }
+
+    private void onHandoverDone(Incident incident) {
+        Ambulance ambulance = incident.ambulance;
+        completed++;
+        markIdle(ambulance);
+        ambulance.makeAvailable();
+
+        // Drive back to station; the unit can be dispatched again on the way
+        double[] home = stations.get(ambulance);
+        String key = incident.hospital.name + "|" + ambulance.stationName;
+        PathResult back = returnRoutes.computeIfAbsent(key, k -> aStar.findPath(
+            graph.findNearestNode(incident.hospital.lat, incident.hospital.lon),
+            graph.findNearestNode(home[0], home[1])));
+        if (back.isPathFound()) {
+            startMovement(ambulance, back.path);
+        }
+
+        dispatchWaiting();
+    }
+
+    private void onPositionUpdate(Ambulance ambulance, long version) {
+        Movement movement = movements.get(ambulance);
+        if (movement == null || movement.version != version) {
+            return; // the unit started a new leg or stopped since this update was scheduled
+        }
+        double elapsed = now - movement.startTime;
+        double[] position = movement.positionAt(elapsed);
+        ambulance.updateLocation(position[0], position[1]);
+
+        if (elapsed >= movement.totalTime()) {
+            movements.remove(ambulance); // leg finished (only return legs end this way)
+        } else {
+            schedule(now + config.positionUpdateSeconds, EventType.POSITION_UPDATE, null, ambulance, version);
+        }
+    }
+
+    /**
+     * Try to dispatch a unit to the incident with the real dispatcher
+     */
+    private boolean tryDispatch(Incident incident) {
+        Emergency emergency = incident.emergency;
+        if (fleet.findNearestAvailable(emergency.lat, emergency.lon, 1, emergency.requiredType).isEmpty()) {
+            return false; // cheap index check before running a search
+        }
+
+        long start = System.nanoTime();
+        AmbulanceAssignmentResult assignment = dispatcher.dispatch(
+            emergency.lat, emergency.lon, emergency.requiredType, emergency.id);
+        dispatchLatencyMs.add((System.nanoTime() - start) / 1_000_000.0);
+        if (assignment == null) {
+            return false;
+        }
+
+        Ambulance ambulance = assignment.ambulance;
+        incident.ambulance = ambulance;
+        queueWaits.add(now - incident.callTime);
+        busySince.put(ambulance, now);
+        startMovement(ambulance, assignment.pathResult.path);
+        schedule(now + assignment.pathResult.totalTime, EventType.ARRIVE_SCENE, incident, ambulance, 0);
+        return true;
+    }
+
+    /**
+     * Serve waiting calls, most severe first, while eligible units are free
+     */
+    private void dispatchWaiting() {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        List<Incident> stillWaiting = new ArrayList<>();
+        while (!waiting.isEmpty() && fleet.getSpatialIndex().size() > 0) {
+            Incident incident = waiting.poll();
+            if (!tryDispatch(incident)) {
+                stillWaiting.add(incident);
+            }
+        }
+        waiting.addAll(stillWaiting);
+    }
+
+    private void markIdle(Ambulance ambulance) {
+        Double since = busySince.remove(ambulance);
+        if (since != null) {
+            stationBusySeconds.merge(ambulance.stationName, now - since, Double::sum);
+        }
+    }
+
+    private void startMovement(Ambulance ambulance, List<Integer> path) {
+        Movement previous = movements.get(ambulance);
+        long version = previous == null ? 1 : previous.version + 1;
+        Movement movement = new Movement(path, now, version);
+        movements.put(ambulance, movement);
+        if (movement.totalTime() > 0) {
+            schedule(now + Math.min(config.positionUpdateSeconds, movement.totalTime()),
+                EventType.POSITION_UPDATE, null, ambulance, version);
+        }
+    }
+
+    private void stopMovement(Ambulance ambulance) {
+        movements.remove(ambulance);
+    }
+
+    /**
+     * Create an emergency at a random road location inside the service area
+     */
+    private Incident newIncident() {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            double lat = config.minLat + random.nextDouble() * (config.maxLat - config.minLat);
+            double lon = config.minLon + random.nextDouble() * (config.maxLon - config.minLon);
+            int node = graph.findNearestNode(lat, lon);
+            Node snapped = graph.getNode(node);
+            if (snapped == null
+                    || GraphExtractor.haversineDistance(lat, lon, snapped.lat, snapped.lon) > config.maxSnapMeters) {
+                continue; // sea, airport, empty land
+            }
+
+            Patient patient = randomPatient();
+            String id = "SIM-" + (++incidentCount);
+            Emergency emergency = new Emergency(id, snapped.lat, snapped.lon, patient,
+                patient.severity, (long) (now * 1000));
+            return new Incident(emergency, node, now);
+        }
+        return null;
+    }
+
+    private Patient randomPatient() {
+        double roll = random.nextDouble();
+        Patient.SeverityLevel severity = roll < config.criticalShare ? Patient.SeverityLevel.CRITICAL
+            : roll < config.criticalShare + config.seriousShare ? Patient.SeverityLevel.SERIOUS
+            : Patient.SeverityLevel.MODERATE;
+        Patient.EmergencyType[] types = Patient.EmergencyType.values();
+        return new Patient("Simulated", 5 + random.nextInt(85), types[random.nextInt(types.length)], severity, "");
+    }
+
+    private double nextArrivalGap() {
+        double ratePerSecond = config.arrivalsPerHour / 3600.0;
+        return -Math.log(1.0 - random.nextDouble()) / ratePerSecond;
+    }
+
+    private double varied(double mean) {
+        return mean * (0.5 + random.nextDouble());
+    }
+
+    private void schedule(double time, EventType type, Incident incident, Ambulance ambulance, long version) {
+        events.add(new Event(time, sequence++, type, incident, ambulance, version));
+    }
+
+    /**
+     * A scheduled event; ties are broken by scheduling order
+     */
+    private static class Event implements Comparable<Event> {
+        final double time;
+        final long sequence;
+        final EventType type;
+        final Incident incident;
+        final Ambulance ambulance;
+        final long version;
+
+        Event(double time, long sequence, EventType type, Incident incident, Ambulance ambulance, long version) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.incident = incident;
+            this.ambulance = ambulance;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Double.compare(this.time, other.time);
+            return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    /**
+     * One emergency moving through the pipeline; waiting order is severity, then call time
+     */
+    private static class Incident implements Comparable<Incident> {
+        final Emergency emergency;
+        final int sceneNode;
+        final double callTime;
+        Ambulance ambulance;
+        Hospital hospital;
+
+        Incident(Emergency emergency, int sceneNode, double callTime) {
+            this.emergency = emergency;
+            this.sceneNode = sceneNode;
+            this.callTime = callTime;
+        }
+
+        @Override
+        public int compareTo(Incident other) {
+            int bySeverity = Integer.compare(other.emergency.severity.priority, this.emergency.severity.priority);
+            return bySeverity != 0 ? bySeverity : Double.compare(this.callTime, other.callTime);
+        }
+    }
+
+    /**
+     * A unit driving along a path, with cumulative travel time per node
+     */
+    private class Movement {
+        final List<Integer> path;
+        final double[] arrival;   // seconds from leg start at each path node
+        final double startTime;
+        final long version;
+
+        Movement(List<Integer> path, double startTime, long version) {
+            this.path = path;
+            this.startTime = startTime;
+            this.version = version;
+            this.arrival = new double[path.size()];
+            for (int i = 1; i < path.size(); i++) {
+                Edge edge = graph.findEdge(path.get(i - 1), path.get(i));
+                arrival[i] = arrival[i - 1] + (edge == null ? 0.0 : edge.weight);
+            }
+        }
+
+        double totalTime() {
+            return arrival.length == 0 ? 0.0 : arrival[arrival.length - 1];
+        }
+
+        /**
+         * Interpolated lat/lon after driving for `elapsed` seconds
+         */
+        double[] positionAt(double elapsed) {
+            int i = Arrays.binarySearch(arrival, elapsed);
+            if (i < 0) {
+                i = Math.max(0, -i - 2); // index of the last node already passed
+            }
+            if (i >= path.size() - 1) {
+                Node last = graph.getNode(path.get(path.size() - 1));
+                return new double[]{last.lat, last.lon};
+            }
+            Node from = graph.getNode(path.get(i));
+            Node to = graph.getNode(path.get(i + 1));
+            double span = arrival[i + 1] - arrival[i];
+            double f = span <= 0 ? 0.0 : (elapsed - arrival[i]) / span;
+            return new double[]{from.lat + f * (to.lat - from.lat), from.lon + f * (to.lon - from.lon)};
+        }
+    }
+
+    /**
+     * Summary of a simulation run
+     */
+    public static class Report {
+        public final int calls;
+        public final int dispatched;
+        public final int completed;
+        public final int waitingAtEnd;
+        public final SampleDistribution responseTimes;        // call to arrival on scene, seconds
+        public final Map<Patient.SeverityLevel, SampleDistribution> responseBySeverity;
+        public final SampleDistribution queueWaits;           // call to dispatch, seconds
+        public final SampleDistribution dispatchLatencyMs;    // wall-clock cost of each dispatch
+        public final Map<String, Double> stationUtilization;  // busy fraction per station
+        public final double fleetUtilization;
+        public final long events;
+        public final double simulatedHours;
+        public final double wallMillis;
+
+        private Report(DispatchSimulation sim, double wallMillis) {
+            this.calls = sim.incidentCount;
+            this.dispatched = sim.queueWaits.count();
+            this.completed = sim.completed;
+            this.waitingAtEnd = sim.waiting.size();
+            this.responseTimes = sim.responseTimes;
+            this.responseBySeverity = sim.responseBySeverity;
+            this.queueWaits = sim.queueWaits;
+            this.dispatchLatencyMs = sim.dispatchLatencyMs;
+            this.events = sim.processedEvents;
+            this.simulatedHours = sim.config.durationHours;
+            this.wallMillis = wallMillis;
+
+            double period = sim.config.durationHours * 3600.0;
+            Map<String, Double> utilization = new TreeMap<>();
+            double busyTotal = 0.0;
+            int units = 0;
+            for (Map.Entry<String, Double> entry : sim.stationBusySeconds.entrySet()) {
+                int stationUnits = sim.stationUnits.getOrDefault(entry.getKey(), 1);
+                utilization.put(entry.getKey(), entry.getValue() / (stationUnits * period));
+                busyTotal += entry.getValue();
+                units += stationUnits;
+            }
+            this.stationUtilization = Collections.unmodifiableMap(utilization);
+            this.fleetUtilization = units == 0 ? 0.0 : busyTotal / (units * period);
+        }
+
+        /**
+         * Print the report to the console
+         */
+        public void print() {
+            System.out.println("\n" + "=".repeat(70));
+            System.out.println("📊 DISPATCH SIMULATION REPORT");
+            System.out.println("=".repeat(70));
+            System.out.printf("Simulated %.1f h in %.1f s wall time (%d events)%n",
+                simulatedHours, wallMillis / 1000.0, events);
+            System.out.printf("Calls: %d | Dispatched: %d | Completed: %d | Still waiting: %d%n",
+                calls, dispatched, completed, waitingAtEnd);
+            System.out.printf("Fleet utilization: %.1f%%%n", fleetUtilization * 100);
+            System.out.println("\nResponse time (call to scene, minutes):");
+            System.out.println("  ALL       " + responseTimes.summary(60, "min"));
+            for (Map.Entry<Patient.SeverityLevel, SampleDistribution> entry : responseBySeverity.entrySet()) {
+                System.out.printf("  %-9s %s%n", entry.getKey(), entry.getValue().summary(60, "min"));
+            }
+            System.out.println("\nQueue wait (call to dispatch, minutes):");
+            System.out.println("  " + queueWaits.summary(60, "min"));
+            System.out.println("\nDispatch computation (ms):");
+            System.out.println("  " + dispatchLatencyMs.summary(1, "ms"));
+            System.out.println("=".repeat(70));
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.hers.simulation;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.hers.algorithms.IncrementalDijkstra;
+import com.hers.model.*;
+import com.hers.service.HospitalMatcher;
+import com.hers.service.NetworkDispatcher;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a historical incident log through the dispatch and hospital-matching pipeline.
+ *
+ * The log is newline-delimited JSON, one emergency per line in call order:
+ * {"time":"2024-03-01T08:15:00+05:00","lat":24.86,"lon":67.01,"type":"CARDIAC","severity":"CRITICAL"}
+ * (time may also be epoch millis; "id" is optional). Records are streamed, never
+ * loaded as a whole, and paced on the log clock scaled by a speed-up factor, or
+ * pushed as fast as possible.
+ *
+ * Dispatch searches, hospital matching and hospital routing for independent calls
+ * run on a thread pool; the fleet's atomic claims keep concurrent dispatches from
+ * taking the same unit. Unit turnaround (drive, on scene, transport, handover) is
+ * computed from the routes and released on the log clock, once every call before
+ * the release has been processed, so results do not depend on the speed-up; with
+ * several threads, calls processed at the same time may win units in a different
+ * order from run to run. Calls with no eligible unit wait, most severe first, and
+ * are retried as units free up.
+ */
+public class IncidentReplay {
+
+    private static final double MAX_ROUTE_SECONDS = 3 * 3600.0;
+    private static final double RETURN_SPEED_MPS = 40.0 / 3.6;  // matches HospitalMatcher's ETA speed
+
+    /**
+     * Replay parameters
+     */
+    public static class Config {
+        public double speedFactor = 0;               // 1.0 = real time, 60 = an hour per minute, <= 0 = as fast as possible
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public double onSceneMinutes = 15;
+        public double handoverMinutes = 20;
+        public ZoneId zone = ZoneId.of("Asia/Karachi"); // for timestamps without an offset
+    }
+
+    private final GraphExtractor graph;
+    private final AmbulanceFleet fleet;
+    private final List<Hospital> hospitals;
+    private final Config config;
+    private final NetworkDispatcher dispatcher;
+    private final Map<Hospital, IncrementalDijkstra> hospitalTrees = new ConcurrentHashMap<>();
+
+    private final PriorityBlockingQueue<Release> releases = new PriorityBlockingQueue<>();
+    private final PriorityBlockingQueue<Incident> waiting = new PriorityBlockingQueue<>();
+    private final Object waitLock = new Object();   // availability check + enqueue vs. release + drain
+    private final Map<Ambulance, double[]> stations = new HashMap<>();
+    private final Map<Ambulance, Long> assignments = new ConcurrentHashMap<>();  // dispatch count per unit
+    private ExecutorService pool;
+    private Semaphore inFlight;
+    private int maxInFlight;
+    private long wallStartNanos;
+    private double firstCallTime = Double.NaN;
+    private double clock;
+
+    // Results
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger dispatched = new AtomicInteger();
+    private final AtomicInteger malformed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong hospitalFallbacks = new AtomicLong();
+    private final SampleDistribution responseTimes = new SampleDistribution();
+    private final Map<Patient.SeverityLevel, SampleDistribution> responseBySeverity =
+        new EnumMap<>(Patient.SeverityLevel.class);
+    private final SampleDistribution queueWaits = new SampleDistribution();
+    private final SampleDistribution dispatchLatencyMs = new SampleDistribution();
+    private final SampleDistribution hospitalRouteLatencyMs = new SampleDistribution();
+    private final Map<String, Double> stationBusySeconds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> stationUnits = new TreeMap<>();
+
+    public IncidentReplay(GraphExtractor graph, AmbulanceFleet fleet, List<Hospital> hospitals, Config config) {
+        this.graph = graph;
+        this.fleet = fleet;
+        this.hospitals = hospitals;
+        this.config = config;
+        if (hospitals.isEmpty()) {
+            throw new IllegalArgumentException("Replay needs at least one hospital");
+        }
+        this.dispatcher = new NetworkDispatcher(graph, fleet);
+        for (Patient.SeverityLevel severity : Patient.SeverityLevel.values()) {
+            responseBySeverity.put(severity, new SampleDistribution());
+        }
+    }
+
+    /**
+     * Replay a log file
+     */
+    public Report replay(File log) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(log), "UTF-8"))) {
+            return replay(reader);
+        }
+    }
+
+    /**
+     * Replay a log stream to the end; units still busy afterwards are played out
+     */
+    public Report replay(Reader log) throws IOException {
+        wallStartNanos = System.nanoTime();
+        for (Ambulance ambulance : fleet.getAllAmbulances()) {
+            stations.put(ambulance, new double[]{ambulance.stationLat, ambulance.stationLon});
+            stationUnits.merge(ambulance.stationName, 1, Integer::sum);
+            stationBusySeconds.putIfAbsent(ambulance.stationName, 0.0);
+        }
+
+        int threads = Math.max(1, config.threads);
+        maxInFlight = threads * 4; // bounds memory while the reader runs ahead
+        inFlight = new Semaphore(maxInFlight);
+        pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "incident-replay-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            JsonReader reader = new JsonReader(log);
+            reader.setLenient(true); // allows a stream of top-level objects
+            while (reader.peek() != JsonToken.END_DOCUMENT) {
+                Incident incident = readIncident(reader);
+                if (incident == null) {
+                    continue;
+                }
+                if (Double.isNaN(firstCallTime)) {
+                    firstCallTime = incident.callTime;
+                    clock = incident.callTime;
+                }
+                advanceTo(incident.callTime);
+                submit(incident, incident.callTime);
+            }
+
+            // Play out the units still on a job so waiting calls get served
+            awaitIdle();
+            Release next;
+            while ((next = releases.peek()) != null) {
+                advanceTo(next.time);
+                awaitIdle();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new Report(this, (System.nanoTime() - wallStartNanos) / 1_000_000.0);
+    }
+
+    /**
+     * Move the log clock forward, waiting in wall time if paced, and free units done by then
+     */
+    private void advanceTo(double time) {
+        if (time > clock && config.speedFactor > 0) {
+            long dueNanos = wallStartNanos + (long) ((time - firstCallTime) * 1e9 / config.speedFactor);
+            long wait;
+            while ((wait = dueNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+
+        // Late records are dispatched at their own time without moving the clock back
+        double target = Math.max(time, clock);
+        Release due;
+        while ((due = releases.peek()) != null && due.time <= target) {
+            // Calls still in flight were dispatched before this release and must not get its unit
+            awaitIdle();
+            Release release = releases.poll(); // they may have scheduled an earlier one meanwhile
+            clock = Math.max(clock, release.time);
+            apply(release);
+        }
+        clock = target;
+    }
+
+    private void apply(Release release) {
+        Ambulance ambulance = release.ambulance;
+        if (release.returnHome) {
+            // Still idle since the handover: it has driven back to its station
+            if (ambulance.isAvailable() && assignments.getOrDefault(ambulance, 0L) == release.assignment) {
+                double[] home = stations.get(ambulance);
+                ambulance.updateLocation(home[0], home[1]);
+            }
+            return;
+        }
+
+        ambulance.updateLocation(release.hospital.lat, release.hospital.lon);
+        List<Incident> retry = new ArrayList<>();
+        synchronized (waitLock) {
+            ambulance.makeAvailable();
+            waiting.drainTo(retry);
+        }
+        double[] home = stations.get(ambulance);
+        if (home != null) {
+            double back = GraphExtractor.haversineDistance(release.hospital.lat, release.hospital.lon, home[0], home[1]);
+            releases.add(new Release(release.time + back / RETURN_SPEED_MPS, ambulance, null, release.assignment, true));
+        }
+
+        // Retry waiting calls, most severe first; each retry is checked against the index first
+        Collections.sort(retry);
+        for (Incident incident : retry) {
+            submit(incident, release.time);
+        }
+    }
+
+    private void submit(Incident incident, double dispatchTime) {
+        inFlight.acquireUninterruptibly();
+        try {
+            pool.execute(() -> {
+                try {
+                    process(incident, dispatchTime);
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    System.out.println("⚠️  Replay of " + incident.emergency.id + " failed: " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait until every submitted call has been processed
+     */
+    private void awaitIdle() {
+        inFlight.acquireUninterruptibly(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    /**
+     * Dispatch one call, pick its hospital and schedule the unit's release (runs on the pool)
+     */
+    private void process(Incident incident, double dispatchTime) {
+        Emergency emergency = incident.emergency;
+        synchronized (waitLock) {
+            // Cheap index check before running a search; under the lock so a release cannot slip in between
+            if (fleet.findNearestAvailable(emergency.lat, emergency.lon, 1, emergency.requiredType).isEmpty()) {
+                waiting.add(incident);
+                return;
+            }
+        }
+
+        long start = System.nanoTime();
+        AmbulanceAssignmentResult assignment = dispatcher.dispatch(
+            emergency.lat, emergency.lon, emergency.requiredType, emergency.id);
+        dispatchLatencyMs.add((System.nanoTime() - start) / 1_000_000.0);
+        if (assignment == null) {
+            synchronized (waitLock) {
+                waiting.add(incident); // eligible units were taken meanwhile or are out of reach
+            }
+            return;
+        }
+
+        Ambulance ambulance = assignment.ambulance;
+        long assignmentNumber = assignments.merge(ambulance, 1L, Long::sum);
+        dispatched.incrementAndGet();
+        double driveToScene = assignment.pathResult.totalTime;
+        double response = dispatchTime - incident.callTime + driveToScene;
+        queueWaits.add(dispatchTime - incident.callTime);
+        responseTimes.add(response);
+        responseBySeverity.get(emergency.severity).add(response);
+
+        HospitalRecommendation best = HospitalMatcher.findBestHospitals(
+            emergency.patient, emergency.lat, emergency.lon, hospitals, 1).get(0);
+        start = System.nanoTime();
+        double transportSeconds = transportTime(assignment.pathResult.path, emergency, best.hospital);
+        hospitalRouteLatencyMs.add((System.nanoTime() - start) / 1_000_000.0);
+        if (transportSeconds == Double.MAX_VALUE) {
+            transportSeconds = best.eta * 60.0; // no road route: fall back to the matcher's estimate
+            hospitalFallbacks.incrementAndGet();
+        }
+
+        double releaseTime = dispatchTime + driveToScene + config.onSceneMinutes * 60
+            + transportSeconds + config.handoverMinutes * 60;
+        stationBusySeconds.merge(ambulance.stationName, releaseTime - dispatchTime, Double::sum);
+        releases.add(new Release(releaseTime, ambulance, best.hospital, assignmentNumber, false));
+    }
+
+    /**
+     * Driving time from the scene to the hospital, or Double.MAX_VALUE if unreachable.
+     * Each hospital has one reverse tree grown on demand and shared by all workers.
+     */
+    private double transportTime(List<Integer> pathToScene, Emergency emergency, Hospital hospital) {
+        int sceneNode = pathToScene.isEmpty()
+            ? graph.findNearestNode(emergency.lat, emergency.lon)
+            : pathToScene.get(pathToScene.size() - 1);
+        IncrementalDijkstra tree = hospitalTrees.computeIfAbsent(hospital, h ->
+            new IncrementalDijkstra(graph, IncrementalDijkstra.Direction.REVERSE,
+                graph.findNearestNode(h.lat, h.lon)));
+        synchronized (tree) {
+            return tree.settleTarget(sceneNode, MAX_ROUTE_SECONDS);
+        }
+    }
+
+    /**
+     * Parse one log record, or null if it is unusable
+     */
+    private Incident readIncident(JsonReader reader) throws IOException {
+        String id = null;
+        double time = Double.NaN;
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        Patient.EmergencyType type = Patient.EmergencyType.GENERAL;
+        Patient.SeverityLevel severity = Patient.SeverityLevel.MODERATE;
+        boolean valid = true;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            try {
+                switch (name) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "time":
+                        time = reader.peek() == JsonToken.NUMBER
+                            ? reader.nextLong() / 1000.0
+                            : parseTime(reader.nextString());
+                        break;
+                    case "lat":
+                        lat = reader.nextDouble();
+                        break;
+                    case "lon":
+                        lon = reader.nextDouble();
+                        break;
+                    case "type":
+                        type = Patient.EmergencyType.valueOf(reader.nextString().toUpperCase());
+                        break;
+                    case "severity":
+                        severity = Patient.SeverityLevel.valueOf(reader.nextString().toUpperCase());
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            } catch (IllegalArgumentException | DateTimeException e) {
+                valid = false; // unknown enum name or unparseable time; keep reading the record
+            }
+        }
+        reader.endObject();
+
+        if (!valid || Double.isNaN(time) || Double.isNaN(lat) || Double.isNaN(lon)) {
+            malformed.incrementAndGet();
+            return null;
+        }
+        int number = calls.incrementAndGet();
+        Patient patient = new Patient("Replay", 40, type, severity, "");
+        Emergency emergency = new Emergency(id != null ? id : "LOG-" + number, lat, lon, patient,
+            severity, (long) (time * 1000));
+        return new Incident(emergency, time);
+    }
+
+    /**
+     * ISO-8601 instant, or a local date-time in the configured zone (seconds since epoch)
+     */
+    private double parseTime(String text) {
+        try {
+            return Instant.parse(text).toEpochMilli() / 1000.0;
+        } catch (DateTimeException e) {
+            try {
+                return OffsetDateTime.parse(text).toInstant().toEpochMilli() / 1000.0;
+            } catch (DateTimeException offsetMissing) {
+                return LocalDateTime.parse(text).atZone(config.zone).toInstant().toEpochMilli() / 1000.0;
+            }
+        }
+    }
+
+    /**
+     * A logged call; waiting order is severity, then call time
+     */
+    private static class Incident implements Comparable<Incident> {
+        final Emergency emergency;
+        final double callTime;  // log time, seconds since epoch
+
+        Incident(Emergency emergency, double callTime) {
+            this.emergency = emergency;
+            this.callTime = callTime;
+        }
+
+        @Override
+        public int compareTo(Incident other) {
+            int bySeverity = Integer.compare(other.emergency.severity.priority, this.emergency.severity.priority);
+            return bySeverity != 0 ? bySeverity : Double.compare(this.callTime, other.callTime);
+        }
+    }
+
+    /**
+     * A unit finishing its handover, or arriving back at its station, at a log time
+     */
+    private static class Release implements Comparable<Release> {
+        final double time;
+        final Ambulance ambulance;
+        final Hospital hospital;
+        final long assignment;     // the unit's dispatch count when the job was assigned
+        final boolean returnHome;
+
+        Release(double time, Ambulance ambulance, Hospital hospital, long assignment, boolean returnHome) {
+            this.time = time;
+            this.ambulance = ambulance;
+            this.hospital = hospital;
+            this.assignment = assignment;
+            this.returnHome = returnHome;
+        }
+
+        @Override
+        public int compareTo(Release other) {
+            return Double.compare(this.time, other.time);
+        }
+    }
+
+    /**
+     * Summary of a replay
+     */
+    public static class Report {
+        public final int calls;
+        public final int dispatched;
+        public final int unserved;
+        public final int malformed;
+        public final int failed;
+        public final long hospitalFallbacks;                   // transports timed by the matcher's estimate
+        public final SampleDistribution responseTimes;         // call to arrival on scene, seconds
+        public final Map<Patient.SeverityLevel, SampleDistribution> responseBySeverity;
+        public final SampleDistribution queueWaits;            // call to dispatch, seconds
+        public final SampleDistribution dispatchLatencyMs;     // wall-clock cost of each dispatch search
+        public final SampleDistribution hospitalRouteLatencyMs;
+        public final Map<String, Double> stationUtilization;   // busy fraction per station
+        public final double loggedHours;
+        public final double wallMillis;
+
+        private Report(IncidentReplay replay, double wallMillis) {
+            this.calls = replay.calls.get();
+            this.dispatched = replay.dispatched.get();
+            this.unserved = replay.waiting.size();
+            this.malformed = replay.malformed.get();
+            this.failed = replay.failed.get();
+            this.hospitalFallbacks = replay.hospitalFallbacks.get();
+            this.responseTimes = replay.responseTimes;
+            this.responseBySeverity = replay.responseBySeverity;
+            this.queueWaits = replay.queueWaits;
+            this.dispatchLatencyMs = replay.dispatchLatencyMs;
+            this.hospitalRouteLatencyMs = replay.hospitalRouteLatencyMs;
+            this.wallMillis = wallMillis;
+
+            double period = Double.isNaN(replay.firstCallTime) ? 0.0 : replay.clock - replay.firstCallTime;
+            this.loggedHours = period / 3600.0;
+            Map<String, Double> utilization = new TreeMap<>();
+            for (Map.Entry<String, Integer> station : replay.stationUnits.entrySet()) {
+                double busy = replay.stationBusySeconds.getOrDefault(station.getKey(), 0.0);
+                utilization.put(station.getKey(), period <= 0 ? 0.0 : busy / (station.getValue() * period));
+            }
+            this.stationUtilization = Collections.unmodifiableMap(utilization);
+        }
+
+        /**
+         * Print the report to the console
+         */
+        public void print() {
+            System.out.println("\n" + "=".repeat(70));
+            System.out.println("📼 INCIDENT LOG REPLAY REPORT");
+            System.out.println("=".repeat(70));
+            System.out.printf("Replayed %.1f logged hours in %.1f s wall time%n", loggedHours, wallMillis / 1000.0);
+            System.out.printf("Calls: %d | Dispatched: %d | Never served: %d | Malformed: %d | Failed: %d%n",
+                calls, dispatched, unserved, malformed, failed);
+            System.out.println("\nResponse time (call to scene, minutes):");
+            System.out.println("  ALL       " + responseTimes.summary(60, "min"));
+            for (Map.Entry<Patient.SeverityLevel, SampleDistribution> entry : responseBySeverity.entrySet()) {
+                System.out.printf("  %-9s %s%n", entry.getKey(), entry.getValue().summary(60, "min"));
+            }
+            System.out.println("\nQueue wait (call to dispatch, minutes):");
+            System.out.println("  " + queueWaits.summary(60, "min"));
+            System.out.println("\nRouting latency (ms):");
+            System.out.println("  Dispatch  " + dispatchLatencyMs.summary(1, "ms"));
+            System.out.println("  Hospital  " + hospitalRouteLatencyMs.summary(1, "ms"));
+            if (hospitalFallbacks > 0) {
+                System.out.println("  (" + hospitalFallbacks + " transports had no road route; matcher ETA used)");
+            }
+            System.out.println("\nStation utilization:");
+            for (Map.Entry<String, Double> entry : stationUtilization.entrySet()) {
+                System.out.printf("  %-28s %5.1f%%%n", entry.getKey(), entry.getValue() * 100);
+            }
+            System.out.println("=".repeat(70));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.hers.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Collects numeric samples (response times, latencies) and reports percentiles.
+ * Thread-safe; sorting happens lazily when a percentile is requested.
+ */
+public class SampleDistribution {
+
+    private double[] samples = new double[64];
+    private int count;
+    private double sum;
+    private boolean sorted = true;
+
+    public synchronized void add(double value) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = value;
+        sum += value;
+        sorted = false;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized double mean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /**
+     * Get the p-th percentile (0-100) using nearest-rank, 0 if empty
+     */
+    public synchronized double percentile(double p) {
+        if (count == 0) {
+            return 0.0;
+        }
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * count);
+        return samples[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    public double max() {
+        return percentile(100);
+    }
+
+    /**
+     * One-line summary, values divided by `scale` (e.g. 60 for seconds -> minutes)
+     */
+    public String summary(double scale, String unit) {
+        return String.format("n=%d  mean %.2f %s  p50 %.2f  p90 %.2f  p95 %.2f  max %.2f",
+            count(), mean() / scale, unit, percentile(50) / scale, percentile(90) / scale,
+            percentile(95) / scale, max() / scale);
+    }
+}
@@ -0,0 +1,20 @@
+package com.hers.simulation;
+
+/**
+ * Receives every traffic mutation applied by a TrafficSimulator
+ */
+public interface TrafficListener {
+
+    enum ChangeType {
+        BLOCK,       // Road closed
+        UNBLOCK,     // Road reopened
+        CONGESTION,  // Traffic multiplier applied
+        CLEAR        // Traffic multiplier reset to normal
+    }
+
+    /**
+     * Called after the edge fromNode -> toNode has been updated
+     * @param multiplier traffic multiplier for CONGESTION, 1.0 otherwise
+     */
+    void onTrafficChange(int fromNode, int toNode, ChangeType type, double multiplier);
+}
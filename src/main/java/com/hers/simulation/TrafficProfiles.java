@@ -0,0 +1,212 @@
+package com.hers.simulation;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Time-of-day traffic profiles for every edge of the road graph.
+ *
+ * A small set of shared piecewise-linear profiles describes the daily pattern
+ * (morning/evening peaks). Each edge stores only a profile ID and a scale factor
+ * in an off-heap buffer (4 bytes per edge):
+ *
+ *   factor(t) = 1 + scale * (profile(t) - 1)
+ *
+ * so scale 0 means free flow all day and scale 1 follows the profile exactly.
+ * A freshly created instance is all free flow.
+ */
+public class TrafficProfiles {
+
+    public static final int SECONDS_PER_DAY = 24 * 3600;
+    public static final int FREE_FLOW = 0;
+    public static final int ARTERIAL = 1;
+    public static final int RESIDENTIAL = 2;
+
+    private static final int BYTES_PER_EDGE = 4;       // short profileId + unsigned short scale
+    private static final double SCALE_UNIT = 1000.0;   // fixed-point scale, 0.001 resolution
+    private static final double MAX_SCALE = 65535 / SCALE_UNIT;
+    private static final double MIN_FACTOR = 0.1;      // never faster than 10x free flow
+    private static final int TABLE_STEP = 60;          // profile table resolution in seconds
+
+    private final GraphExtractor graph;
+    private final ByteBuffer edgeData;
+    private final List<float[]> profiles;              // per-minute factor tables
+    private final List<String> profileNames;
+    private double minProfileValue;
+    private double maxAssignedScale;
+
+    public TrafficProfiles(GraphExtractor graph) {
+        this.graph = graph;
+        this.edgeData = ByteBuffer.allocateDirect(graph.getEdgeCount() * BYTES_PER_EDGE);
+        this.profiles = new ArrayList<>();
+        this.profileNames = new ArrayList<>();
+        this.minProfileValue = 1.0;
+        this.maxAssignedScale = 0.0;
+        loadDefaultProfiles();
+    }
+
+    /**
+     * Built-in profiles for Karachi weekday traffic
+     */
+    private void loadDefaultProfiles() {
+        addProfile("Free flow",
+            new int[] {0},
+            new double[] {1.0});
+
+        // Main roads: sharp morning peak, midday bump, long evening peak
+        addProfile("Arterial",
+            new int[] {0, hm(6, 0), hm(8, 30), hm(10, 30), hm(13, 0), hm(15, 0), hm(17, 30), hm(20, 0), hm(23, 0)},
+            new double[] {0.85, 0.9, 1.9, 1.2, 1.35, 1.2, 2.2, 1.3, 0.9});
+
+        // Local streets: milder peaks around school and office hours
+        addProfile("Residential",
+            new int[] {0, hm(7, 0), hm(8, 0), hm(9, 30), hm(13, 30), hm(14, 30), hm(18, 0), hm(21, 0)},
+            new double[] {0.9, 1.0, 1.4, 1.1, 1.3, 1.1, 1.5, 1.0});
+    }
+
+    private static int hm(int hours, int minutes) {
+        return hours * 3600 + minutes * 60;
+    }
+
+    /**
+     * Register a shared piecewise-linear profile.
+     * @param breakpoints seconds since midnight, ascending, first one usually 0
+     * @param factors travel-time factor at each breakpoint (wraps around midnight)
+     * @return profile ID to use with assign()
+     */
+    public synchronized int addProfile(String name, int[] breakpoints, double[] factors) {
+        if (breakpoints.length == 0 || breakpoints.length != factors.length) {
+            throw new IllegalArgumentException("Profile needs matching, non-empty breakpoints and factors");
+        }
+        if (profiles.size() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many traffic profiles");
+        }
+
+        float[] table = new float[SECONDS_PER_DAY / TABLE_STEP + 1];
+        for (int slot = 0; slot < table.length; slot++) {
+            table[slot] = (float) interpolate(breakpoints, factors, (slot * TABLE_STEP) % SECONDS_PER_DAY);
+            minProfileValue = Math.min(minProfileValue, table[slot]);
+        }
+        profiles.add(table);
+        profileNames.add(name);
+        return profiles.size() - 1;
+    }
+
+    private static double interpolate(int[] breakpoints, double[] factors, int time) {
+        int n = breakpoints.length;
+        if (n == 1) {
+            return factors[0];
+        }
+        for (int i = 0; i < n; i++) {
+            int t0 = breakpoints[i];
+            int t1 = i + 1 < n ? breakpoints[i + 1] : breakpoints[0] + SECONDS_PER_DAY;
+            int t = time < breakpoints[0] ? time + SECONDS_PER_DAY : time;
+            if (t >= t0 && t < t1) {
+                double f1 = factors[(i + 1) % n];
+                return factors[i] + (f1 - factors[i]) * (t - t0) / (double) (t1 - t0);
+            }
+        }
+        return factors[n - 1];
+    }
+
+    /**
+     * Assign a shared profile to one edge
+     * @param scale how strongly the edge follows the profile (0 = free flow, 1 = exact)
+     */
+    public void assign(int edgeId, int profileId, double scale) {
+        if (profileId < 0 || profileId >= profiles.size()) {
+            throw new IllegalArgumentException("Unknown traffic profile " + profileId);
+        }
+        int clamped = (int) Math.round(Math.max(0.0, Math.min(MAX_SCALE, scale)) * SCALE_UNIT);
+        synchronized (this) {
+            maxAssignedScale = Math.max(maxAssignedScale, clamped / SCALE_UNIT);
+        }
+        int offset = edgeId * BYTES_PER_EDGE;
+        edgeData.putShort(offset, (short) profileId);
+        edgeData.putChar(offset + 2, (char) clamped);
+    }
+
+    /**
+     * Heuristic default: longer segments are usually main roads
+     */
+    public void assignDefaultKarachiProfiles() {
+        int edgeCount = graph.getEdgeCount();
+        for (int id = 0; id < edgeCount; id++) {
+            Edge edge = graph.getEdge(id);
+            if (edge.distance >= 200.0) {
+                assign(id, ARTERIAL, 1.0);
+            } else {
+                assign(id, RESIDENTIAL, 0.8);
+            }
+        }
+    }
+
+    /**
+     * Time-of-day multiplier for an edge
+     * @param timeOfDay seconds since midnight (any value, wrapped to one day)
+     */
+    public double getFactor(int edgeId, double timeOfDay) {
+        int offset = edgeId * BYTES_PER_EDGE;
+        int profileId = edgeData.getShort(offset);
+        double scale = edgeData.getChar(offset + 2) / SCALE_UNIT;
+        if (scale == 0.0) {
+            return 1.0;
+        }
+
+        double t = timeOfDay % SECONDS_PER_DAY;
+        if (t < 0) {
+            t += SECONDS_PER_DAY;
+            if (t >= SECONDS_PER_DAY) {
+                t -= SECONDS_PER_DAY; // a tiny negative time rounds up to a full day
+            }
+        }
+        float[] table = profiles.get(profileId);
+        double pos = t / TABLE_STEP;
+        int slot = (int) pos;
+        double profile = table[slot] + (table[slot + 1] - table[slot]) * (pos - slot);
+
+        return Math.max(MIN_FACTOR, 1.0 + scale * (profile - 1.0));
+    }
+
+    /**
+     * Travel time of an edge when entered at the given time of day.
+     * Includes any static congestion already applied to edge.weight.
+     */
+    public double getTravelTime(Edge edge, double timeOfDay) {
+        if (edge.id < 0) {
+            return edge.weight;
+        }
+        return edge.weight * getFactor(edge.id, timeOfDay);
+    }
+
+    /**
+     * Lower bound of any factor, used to keep A* heuristics admissible
+     */
+    public synchronized double getMinFactor() {
+        return Math.max(MIN_FACTOR, Math.min(1.0, 1.0 + maxAssignedScale * (minProfileValue - 1.0)));
+    }
+
+    /**
+     * Get number of registered profiles
+     */
+    public int getProfileCount() {
+        return profiles.size();
+    }
+
+    /**
+     * Get display name of a profile
+     */
+    public String getProfileName(int profileId) {
+        return profileNames.get(profileId);
+    }
+
+    /**
+     * Get off-heap bytes used by per-edge data
+     */
+    public long getEdgeStorageBytes() {
+        return edgeData.capacity();
+    }
+}
@@ -0,0 +1,132 @@
+package com.hers.simulation;
+
+import java.io.*;
+
+/**
+ * Records traffic mutations (and optionally routing queries) to a compact binary timeline.
+ *
+ * File layout:
+ *   header: int magic, short version, long start time (epoch millis)
+ *   record: byte type, varint microseconds since previous record, int fromNode, int toNode,
+ *           float multiplier (CONGESTION only)
+ *
+ * A typical record is 10-14 bytes. Register with TrafficSimulator.addListener()
+ * and replay the file later with TrafficReplayer.
+ */
+public class TrafficRecorder implements TrafficListener, Closeable {
+
+    static final int MAGIC = 0x48545246; // "HTRF"
+    static final short VERSION = 1;
+
+    // Record types: ChangeType ordinals, plus routing queries
+    static final byte TYPE_QUERY = 100;
+
+    private final DataOutputStream out;
+    private final long startNanos;
+    private long lastNanos;
+    private long recordCount;
+    private boolean closed;
+
+    public TrafficRecorder(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    public TrafficRecorder(OutputStream stream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        this.startNanos = System.nanoTime();
+        this.lastNanos = startNanos;
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+    }
+
+    @Override
+    public void onTrafficChange(int fromNode, int toNode, ChangeType type, double multiplier) {
+        write((byte) type.ordinal(), fromNode, toNode, multiplier);
+    }
+
+    /**
+     * Record a routing query so load scenarios can be replayed under the same traffic
+     */
+    public void recordQuery(int source, int destination) {
+        write(TYPE_QUERY, source, destination, 0.0);
+    }
+
+    private synchronized void write(byte type, int from, int to, double multiplier) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        long deltaMicros = Math.max(0, (now - lastNanos) / 1_000);
+        // Advance by the encoded delta only, so rounding never accumulates drift
+        lastNanos += deltaMicros * 1_000;
+        try {
+            out.writeByte(type);
+            writeVarLong(out, deltaMicros);
+            out.writeInt(from);
+            out.writeInt(to);
+            if (type == ChangeType.CONGESTION.ordinal()) {
+                out.writeFloat((float) multiplier);
+            }
+            recordCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to record traffic event", e);
+        }
+    }
+
+    /**
+     * Get number of records written so far
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Get elapsed recording time in milliseconds
+     */
+    public double getElapsedMs() {
+        return (System.nanoTime() - startNanos) / 1_000_000.0;
+    }
+
+    /**
+     * Flush buffered records to the underlying stream
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Unsigned LEB128 encoding: small deltas take a single byte
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed varint in traffic recording");
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.hers.simulation;
+
+import com.hers.model.GraphExtractor;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a timeline written by TrafficRecorder against a graph.
+ * Events are loaded into primitive arrays so replay itself does not allocate.
+ */
+public class TrafficReplayer {
+
+    private static final TrafficListener.ChangeType[] CHANGE_TYPES = TrafficListener.ChangeType.values();
+
+    private final long recordedAtMillis;
+    private final int eventCount;
+    private final byte[] types;
+    private final long[] offsetMicros;   // time since start of recording
+    private final int[] fromNodes;
+    private final int[] toNodes;
+    private final float[] multipliers;
+
+    /**
+     * Receives recorded routing queries at their original (scaled) time
+     */
+    public interface QueryHandler {
+        void onQuery(int source, int destination);
+    }
+
+    public TrafficReplayer(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            CountingInput counted = new CountingInput(new BufferedInputStream(in, 64 * 1024));
+            DataInputStream data = new DataInputStream(counted);
+
+            if (data.readInt() != TrafficRecorder.MAGIC) {
+                throw new IOException("Not a HERS traffic recording: " + file);
+            }
+            short version = data.readShort();
+            if (version != TrafficRecorder.VERSION) {
+                throw new IOException("Unsupported traffic recording version " + version);
+            }
+            this.recordedAtMillis = data.readLong();
+
+            int capacity = (int) Math.max(16, Math.min(Integer.MAX_VALUE - 8, file.length() / 10));
+            byte[] t = new byte[capacity];
+            long[] o = new long[capacity];
+            int[] f = new int[capacity];
+            int[] d = new int[capacity];
+            float[] m = new float[capacity];
+
+            int count = 0;
+            long offset = 0;
+            while (true) {
+                long recordStart = counted.position;
+                int type = data.read();
+                if (type < 0) {
+                    break; // end of file
+                }
+                if (type != TrafficRecorder.TYPE_QUERY && type >= CHANGE_TYPES.length) {
+                    throw new IOException("Unknown traffic event type " + type + " at byte offset " + recordStart
+                        + " of " + file);
+                }
+                if (count == t.length) {
+                    int grown = t.length * 2;
+                    t = Arrays.copyOf(t, grown);
+                    o = Arrays.copyOf(o, grown);
+                    f = Arrays.copyOf(f, grown);
+                    d = Arrays.copyOf(d, grown);
+                    m = Arrays.copyOf(m, grown);
+                }
+                try {
+                    offset += TrafficRecorder.readVarLong(data);
+                    t[count] = (byte) type;
+                    o[count] = offset;
+                    f[count] = data.readInt();
+                    d[count] = data.readInt();
+                    m[count] = type == TrafficListener.ChangeType.CONGESTION.ordinal() ? data.readFloat() : 1.0f;
+                } catch (EOFException e) {
+                    break; // truncated last record (recorder not closed cleanly)
+                }
+                count++;
+            }
+
+            this.eventCount = count;
+            this.types = t;
+            this.offsetMicros = o;
+            this.fromNodes = f;
+            this.toNodes = d;
+            this.multipliers = m;
+        }
+    }
+
+    /**
+     * Replay against a fresh, quiet simulator on the given graph
+     */
+    public int replay(GraphExtractor graph, double speedFactor, QueryHandler queries) {
+        TrafficSimulator simulator = new TrafficSimulator(graph);
+        simulator.setVerbose(false);
+        return replay(simulator, speedFactor, queries);
+    }
+
+    /**
+     * Reapply all recorded events in order.
+     * @param speedFactor 1.0 = real time, 10.0 = ten times faster, <= 0 = as fast as possible
+     * @param queries handler for recorded queries, or null to skip them
+     * @return number of events applied
+     */
+    public int replay(TrafficSimulator simulator, double speedFactor, QueryHandler queries) {
+        long startNanos = System.nanoTime();
+        int applied = 0;
+
+        for (int i = 0; i < eventCount; i++) {
+            if (speedFactor > 0) {
+                long dueNanos = startNanos + (long) (offsetMicros[i] * 1_000 / speedFactor);
+                long wait;
+                while ((wait = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.currentThread().isInterrupted()) {
+                        return applied;
+                    }
+                }
+            }
+
+            int from = fromNodes[i];
+            int to = toNodes[i];
+
+            if (types[i] == TrafficRecorder.TYPE_QUERY) {
+                if (queries != null) {
+                    queries.onQuery(from, to);
+                }
+                applied++;
+                continue;
+            }
+
+            switch (CHANGE_TYPES[types[i]]) {
+                case BLOCK:
+                    simulator.blockRoad(from, to, "Replay");
+                    break;
+                case UNBLOCK:
+                    simulator.unblockRoad(from, to);
+                    break;
+                case CONGESTION:
+                    simulator.applyTraffic(from, to, multipliers[i], "Replay");
+                    break;
+                case CLEAR:
+                    simulator.clearTraffic(from, to);
+                    break;
+            }
+            applied++;
+        }
+
+        return applied;
+    }
+
+    /**
+     * Get number of recorded events (traffic changes and queries)
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Get recorded duration in seconds
+     */
+    public double getDurationSeconds() {
+        return eventCount == 0 ? 0.0 : offsetMicros[eventCount - 1] / 1_000_000.0;
+    }
+
+    /**
+     * Get wall-clock time the recording started (epoch millis)
+     */
+    public long getRecordedAtMillis() {
+        return recordedAtMillis;
+    }
+
+    /**
+     * Tracks the byte offset read so far, for error messages
+     */
+    private static class CountingInput extends FilterInputStream {
+        long position;
+
+        CountingInput(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = super.read(buffer, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.hers.model.Edge;
 import com.hers.model.GraphExtractor;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Simulates dynamic traffic conditions including:
@@ -16,11 +17,48 @@ public class TrafficSimulator {
     private final GraphExtractor graph;
     private final Map<String, EdgeState> edgeStates;
     private final Random random;
+    private final List<TrafficListener> listeners;
+    private boolean verbose;
     
     public TrafficSimulator(GraphExtractor graph) {
         this.graph = graph;
         this.edgeStates = new HashMap<>();
         this.random = new Random(42); // Fixed seed for reproducibility
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.verbose = true;
+    }
+    
+    /**
+     * Register a listener notified after every traffic mutation
+     */
+    public void addListener(TrafficListener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Remove a previously registered listener
+     */
+    public void removeListener(TrafficListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Enable or disable console output for each mutation (disable for replays and benchmarks)
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+    
+    private void notifyListeners(int fromNode, int toNode, TrafficListener.ChangeType type, double multiplier) {
+        for (TrafficListener listener : listeners) {
+            listener.onTrafficChange(fromNode, toNode, type, multiplier);
+        }
+    }
+    
+    private void log(String message) {
+        if (verbose) {
+            System.out.println(message);
+        }
     }
     
     /**
@@ -33,7 +71,8 @@ public class TrafficSimulator {
                 edge.block();
                 String key = fromNode + "->" + toNode;
                 edgeStates.put(key, new EdgeState(fromNode, toNode, true, 1.0, reason));
-                System.out.println("🚧 BLOCKED: Road from " + fromNode + " to " + toNode + " (" + reason + ")");
+                log("🚧 BLOCKED: Road from " + fromNode + " to " + toNode + " (" + reason + ")");
+                notifyListeners(fromNode, toNode, TrafficListener.ChangeType.BLOCK, 1.0);
                 return;
             }
         }
@@ -49,7 +88,8 @@ public class TrafficSimulator {
                 edge.unblock();
                 String key = fromNode + "->" + toNode;
                 edgeStates.remove(key);
-                System.out.println("✅ CLEARED: Road from " + fromNode + " to " + toNode);
+                log("✅ CLEARED: Road from " + fromNode + " to " + toNode);
+                notifyListeners(fromNode, toNode, TrafficListener.ChangeType.UNBLOCK, 1.0);
                 return;
             }
         }
@@ -66,8 +106,9 @@ public class TrafficSimulator {
                 edge.updateTraffic(multiplier);
                 String key = fromNode + "->" + toNode;
                 edgeStates.put(key, new EdgeState(fromNode, toNode, false, multiplier, severity));
-                System.out.println("🚗 TRAFFIC: " + severity + " on road " + fromNode + " -> " + toNode + 
-                                 " (x" + multiplier + " slower)");
+                log("🚗 TRAFFIC: " + severity + " on road " + fromNode + " -> " + toNode + 
+                    " (x" + multiplier + " slower)");
+                notifyListeners(fromNode, toNode, TrafficListener.ChangeType.CONGESTION, multiplier);
                 return;
             }
         }
@@ -83,7 +124,8 @@ public class TrafficSimulator {
                 edge.updateTraffic(1.0);
                 String key = fromNode + "->" + toNode;
                 edgeStates.remove(key);
-                System.out.println("✅ TRAFFIC CLEARED: Road " + fromNode + " -> " + toNode);
+                log("✅ TRAFFIC CLEARED: Road " + fromNode + " -> " + toNode);
+                notifyListeners(fromNode, toNode, TrafficListener.ChangeType.CLEAR, 1.0);
                 return;
             }
         }
@@ -93,7 +135,7 @@ public class TrafficSimulator {
      * Block multiple roads along a path (simulate accident or construction)
      */
     public void blockPathSegment(List<Integer> path, int startIndex, int endIndex, String reason) {
-        System.out.println("\n🚧 INCIDENT: " + reason);
+        log("\n🚧 INCIDENT: " + reason);
         for (int i = startIndex; i < endIndex && i < path.size() - 1; i++) {
             blockRoad(path.get(i), path.get(i + 1), reason);
         }
@@ -103,7 +145,7 @@ public class TrafficSimulator {
      * Apply heavy traffic to multiple road segments
      */
     public void applyTrafficJam(List<Integer> path, int startIndex, int endIndex, double multiplier) {
-        System.out.println("\n🚗 TRAFFIC JAM: Heavy congestion detected");
+        log("\n🚗 TRAFFIC JAM: Heavy congestion detected");
         for (int i = startIndex; i < endIndex && i < path.size() - 1; i++) {
             applyTraffic(path.get(i), path.get(i + 1), multiplier, "Heavy");
         }
@@ -137,7 +179,7 @@ public class TrafficSimulator {
      * Clear all traffic conditions
      */
     public void clearAllTraffic() {
-        System.out.println("\n🔄 Clearing all traffic conditions...");
+        log("\n🔄 Clearing all traffic conditions...");
         
         // Create a copy to avoid ConcurrentModificationException
         List<EdgeState> statesToClear = new ArrayList<>(edgeStates.values());
@@ -148,8 +190,10 @@ public class TrafficSimulator {
                 if (edge.toNode == state.toNode) {
                     if (state.blocked) {
                         edge.unblock();
+                        notifyListeners(state.fromNode, state.toNode, TrafficListener.ChangeType.UNBLOCK, 1.0);
                     } else {
                         edge.updateTraffic(1.0);
+                        notifyListeners(state.fromNode, state.toNode, TrafficListener.ChangeType.CLEAR, 1.0);
                     }
                     break;
                 }
@@ -157,7 +201,7 @@ public class TrafficSimulator {
         }
         
         edgeStates.clear();
-        System.out.println("✅ All traffic cleared");
+        log("✅ All traffic cleared");
     }
     
     /**
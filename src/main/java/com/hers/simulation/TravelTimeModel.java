@@ -0,0 +1,67 @@
+package com.hers.simulation;
+
+import com.hers.model.Edge;
+import com.hers.model.GraphExtractor;
+
+import java.util.Arrays;
+
+/**
+ * Per-edge travel-time uncertainty.
+ *
+ * Each edge's travel time is modelled as a lognormal variable whose mean is the
+ * current edge weight (optionally adjusted by time-of-day profiles) and whose
+ * spread is given by a coefficient of variation (stddev / mean) stored per edge.
+ */
+public class TravelTimeModel {
+
+    public static final double DEFAULT_CV = 0.25;
+
+    private final GraphExtractor graph;
+    private final TrafficProfiles profiles; // may be null
+    private final float[] variation;        // coefficient of variation per edge id
+
+    public TravelTimeModel(GraphExtractor graph) {
+        this(graph, null);
+    }
+
+    public TravelTimeModel(GraphExtractor graph, TrafficProfiles profiles) {
+        this.graph = graph;
+        this.profiles = profiles;
+        this.variation = new float[graph.getEdgeCount()];
+        Arrays.fill(variation, (float) DEFAULT_CV);
+    }
+
+    /**
+     * Set travel-time variability of one edge
+     * @param cv coefficient of variation (0 = deterministic, 0.5 = very unreliable)
+     */
+    public void setVariation(int edgeId, double cv) {
+        variation[edgeId] = (float) Math.max(0.0, cv);
+    }
+
+    /**
+     * Get travel-time variability of one edge
+     */
+    public double getVariation(Edge edge) {
+        return edge.id >= 0 ? variation[edge.id] : DEFAULT_CV;
+    }
+
+    /**
+     * Expected travel time of an edge entered at the given time of day
+     * (ignores time of day when no profiles are configured)
+     */
+    public double getMeanTime(Edge edge, double timeOfDay) {
+        return profiles != null ? profiles.getTravelTime(edge, timeOfDay) : edge.weight;
+    }
+
+    /**
+     * Lognormal shape parameter for a coefficient of variation
+     */
+    public static double sigmaFor(double cv) {
+        return Math.sqrt(Math.log1p(cv * cv));
+    }
+
+    public GraphExtractor getGraph() {
+        return graph;
+    }
+}
@@ -0,0 +1,90 @@
+package com.hers.web;
+
+import com.google.gson.stream.JsonWriter;
+import com.hers.algorithms.RouteGeometry;
+import com.hers.model.GraphExtractor;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * How a response renders route paths, from the query string:
+ * format=coordinates (default, [{lat, lon}, ...]) or format=polyline (encoded string),
+ * precision=N for the polyline (default 5), zoom=Z to simplify for that map zoom.
+ */
+final class PathFormat {
+
+    static final PathFormat COORDINATES = new PathFormat(false, RouteGeometry.DEFAULT_PRECISION, -1);
+
+    final boolean polyline;
+    final int precision;
+    final int zoom;   // -1: full geometry
+
+    private PathFormat(boolean polyline, int precision, int zoom) {
+        this.polyline = polyline;
+        this.precision = precision;
+        this.zoom = zoom;
+    }
+
+    static PathFormat from(spark.Request req) {
+        String format = req.queryParams("format");
+        String precision = req.queryParams("precision");
+        String zoom = req.queryParams("zoom");
+        if (format == null && zoom == null) {
+            return COORDINATES;
+        }
+        return new PathFormat(
+            "polyline".equalsIgnoreCase(format),
+            precision == null ? RouteGeometry.DEFAULT_PRECISION
+                : Math.max(0, Math.min(RouteGeometry.MAX_PRECISION, Integer.parseInt(precision))),
+            zoom == null ? -1 : Math.max(0, Math.min(RouteGeometry.MAX_ZOOM, Integer.parseInt(zoom))));
+    }
+
+    /**
+     * Interleaved lat/lon to send, simplified when a zoom was requested
+     */
+    double[] geometry(GraphExtractor graph, List<Integer> path) {
+        double[] latLon = RouteGeometry.coordinates(graph, path);
+        if (zoom < 0 || latLon.length == 0) {
+            return latLon;
+        }
+        return RouteGeometry.simplify(latLon, RouteGeometry.toleranceForZoom(zoom, latLon[0]));
+    }
+
+    /**
+     * Path value for a Gson response map
+     */
+    Object toJson(GraphExtractor graph, List<Integer> path) {
+        double[] latLon = geometry(graph, path);
+        if (polyline) {
+            return RouteGeometry.encodePolyline(latLon, precision);
+        }
+        List<Map<String, Double>> coords = new ArrayList<>(latLon.length / 2);
+        for (int i = 0; i < latLon.length; i += 2) {
+            Map<String, Double> coord = new HashMap<>();
+            coord.put("lat", latLon[i]);
+            coord.put("lon", latLon[i + 1]);
+            coords.add(coord);
+        }
+        return coords;
+    }
+
+    /**
+     * Path value for a streamed response
+     */
+    void write(JsonWriter out, GraphExtractor graph, List<Integer> path) throws IOException {
+        double[] latLon = geometry(graph, path);
+        if (polyline) {
+            out.value(RouteGeometry.encodePolyline(latLon, precision));
+            return;
+        }
+        out.beginArray();
+        for (int i = 0; i < latLon.length; i += 2) {
+            out.beginObject();
+            out.name("lat").value(latLon[i]);
+            out.name("lon").value(latLon[i + 1]);
+            out.endObject();
+        }
+        out.endArray();
+    }
+}
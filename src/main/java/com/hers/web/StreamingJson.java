@@ -0,0 +1,145 @@
+package com.hers.web;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * JSON helpers for hot endpoints: bodies are written with a JsonWriter straight
+ * to the servlet stream and requests are read with a JsonReader, so no
+ * intermediate Map trees or reflective Gson passes are built per call.
+ *
+ * Cached holds a pre-serialized response for data that only changes with a
+ * version key (hospital list, graph stats), served with an ETag so a client
+ * that already has it gets 304 Not Modified.
+ */
+final class StreamingJson {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Writes one JSON document
+     */
+    interface Body {
+        void write(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * Reads the value of one object field
+     */
+    interface Fields {
+        /**
+         * @return false if the field is not wanted (its value is skipped)
+         */
+        boolean read(String name, JsonReader in) throws IOException;
+    }
+
+    private StreamingJson() {
+    }
+
+    /**
+     * Stream a JSON body to the response
+     * @return "" for Spark (the body is already written)
+     */
+    static String write(spark.Response res, Body body) throws IOException {
+        res.type("application/json");
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(res.raw().getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        JsonWriter out = new JsonWriter(writer);
+        body.write(out);
+        out.flush();
+        return "";
+    }
+
+    /**
+     * Reader over the request body
+     */
+    static JsonReader reader(spark.Request req) throws IOException {
+        return new JsonReader(new InputStreamReader(req.raw().getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read one JSON object, handing each field to `fields`
+     */
+    static void readObject(JsonReader in, Fields fields) throws IOException {
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (!fields.read(name, in)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Top-level numeric fields of a JSON object body (other fields are skipped)
+     */
+    static Map<String, Double> readNumbers(spark.Request req) throws IOException {
+        Map<String, Double> numbers = new HashMap<>();
+        readObject(reader(req), (name, in) -> {
+            if (in.peek() != JsonToken.NUMBER) {
+                return false;
+            }
+            numbers.put(name, in.nextDouble());
+            return true;
+        });
+        return numbers;
+    }
+
+    /**
+     * A response serialized once per version, with its ETag
+     */
+    static class Cached {
+        private volatile Entry entry;
+
+        /**
+         * Serve the cached body for this version, rebuilding it if the version changed
+         */
+        String serve(Object version, Body body, spark.Request req, spark.Response res) throws IOException {
+            Entry current = entry;
+            if (current == null || !current.version.equals(version)) {
+                current = new Entry(version, render(body));
+                entry = current;
+            }
+            res.type("application/json");
+            res.header("ETag", current.etag);
+            res.header("Cache-Control", "no-cache"); // clients may keep it but must revalidate
+            String ifNoneMatch = req.headers("If-None-Match");
+            if (ifNoneMatch != null && ifNoneMatch.contains(current.etag)) {
+                res.status(304);
+                return "";
+            }
+            res.raw().setContentLength(current.bytes.length);
+            res.raw().getOutputStream().write(current.bytes);
+            return "";
+        }
+
+        private static byte[] render(Body body) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+            JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+            body.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class Entry {
+        final Object version;
+        final byte[] bytes;
+        final String etag;
+
+        Entry(Object version, byte[] bytes) {
+            this.version = version;
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+        }
+    }
+}
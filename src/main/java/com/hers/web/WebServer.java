@@ -2,16 +2,43 @@ package com.hers.web;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.config.Profile;
 import com.graphhopper.util.GHUtility;
 import com.hers.algorithms.AStarAlgorithm;
 import com.hers.algorithms.PathResult;
+import com.hers.algorithms.TimeDependentAStar;
 import com.hers.model.*;
+import com.hers.service.ActiveRouteRegistry;
+import com.hers.service.AnchorRegistry;
+import com.hers.service.BatchDispatcher;
+import com.hers.service.CoverageAnalyzer;
+import com.hers.service.DispatchJournal;
+import com.hers.service.GpsIngestionService;
+import com.hers.service.HospitalCapacityRegistry;
+import com.hers.service.HmmMapMatcher;
 import com.hers.service.HospitalMatcher;
+import com.hers.service.MassCasualtyDistributor;
+import com.hers.service.MonteCarloEtaSampler;
+import com.hers.service.NetworkDispatcher;
+import com.hers.service.NetworkHospitalMatcher;
+import com.hers.service.PendingEmergencyQueue;
+import com.hers.service.TripPlanner;
+import com.hers.simulation.TrafficListener;
+import com.hers.simulation.TrafficProfiles;
+import com.hers.simulation.TrafficSimulator;
+import com.hers.simulation.TravelTimeModel;
 import spark.Spark;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static spark.Spark.*;
 
@@ -23,9 +50,28 @@ public class WebServer {
     
     private final GraphExtractor graph;
     private final AStarAlgorithm aStar;
+    private final TrafficProfiles trafficProfiles;
+    private final TimeDependentAStar timeDependentAStar;
+    private final MonteCarloEtaSampler etaSampler;
     private final HospitalDatabase hospitals;
+    private final NetworkHospitalMatcher hospitalMatcher;
+    private final HospitalCapacityRegistry hospitalCapacity;
     private final AmbulanceFleet fleet;
+    private final DispatchJournal journal;
+    private final AnchorRegistry anchors;
+    private final NetworkDispatcher dispatcher;
+    private final BatchDispatcher batchDispatcher;
+    private final PendingEmergencyQueue pendingQueue;
+    private final TripPlanner tripPlanner;
+    private final MassCasualtyDistributor massCasualty;
+    private final GpsIngestionService gpsIngestion;
+    private final CoverageAnalyzer coverage;
+    private final TrafficSimulator traffic;
+    private final ActiveRouteRegistry activeRoutes;
     private final Gson gson;
+    private final StreamingJson.Cached hospitalsResponse = new StreamingJson.Cached();
+    private final StreamingJson.Cached statusResponse = new StreamingJson.Cached();
+    private final AtomicLong emergencySequence = new AtomicLong();
     
     public WebServer() {
         System.out.println("🚀 Starting HERS Web Server...");
@@ -38,8 +84,52 @@ public class WebServer {
         GraphHopper hopper = loadGraphHopper();
         this.graph = new GraphExtractor(hopper);
         this.aStar = new AStarAlgorithm(graph);
-        this.hospitals = new HospitalDatabase();
+        this.trafficProfiles = new TrafficProfiles(graph);
+        trafficProfiles.assignDefaultKarachiProfiles();
+        this.timeDependentAStar = new TimeDependentAStar(graph, trafficProfiles);
+        this.etaSampler = new MonteCarloEtaSampler(new TravelTimeModel(graph));
+        this.hospitals = openHospitals();
+        this.hospitalMatcher = new NetworkHospitalMatcher(graph, hospitals.getAllHospitals());
+        this.hospitalCapacity = new HospitalCapacityRegistry(hospitals.getAllHospitals());
+        // Capacity first, so a match on the reloaded list can reserve at any of its hospitals
+        hospitals.addReloadListener(hospitalCapacity::setHospitals);
+        hospitals.addReloadListener(hospitalMatcher::setHospitals);
         this.fleet = new AmbulanceFleet();
+        this.journal = openJournal(fleet); // restore assignments before anything else watches the fleet
+        this.anchors = new AnchorRegistry(graph, hospitals.getAllHospitals(), fleet);
+        hospitals.addReloadListener(anchors::anchorHospitals);
+        this.dispatcher = new NetworkDispatcher(graph, fleet);
+        dispatcher.setAnchorRegistry(anchors);
+        this.pendingQueue = new PendingEmergencyQueue(graph, fleet, dispatcher);
+        pendingQueue.setAnchorRegistry(anchors);
+        this.tripPlanner = new TripPlanner(graph, fleet, dispatcher, hospitals.getAllHospitals());
+        tripPlanner.setCapacityRegistry(hospitalCapacity);
+        hospitals.addReloadListener(tripPlanner::setHospitals);
+        this.massCasualty = new MassCasualtyDistributor(graph, hospitals.getAllHospitals());
+        massCasualty.setCapacityRegistry(hospitalCapacity);
+        hospitals.addReloadListener(massCasualty::setHospitals);
+        try {
+            hospitals.startWatching(); // once every reload listener is in place
+        } catch (IOException e) {
+            System.err.println("⚠️ Hospital file watcher unavailable, reloads disabled: " + e.getMessage());
+        }
+        this.batchDispatcher = new BatchDispatcher(graph, fleet,
+            Long.getLong("hers.batch.windowMs", BatchDispatcher.DEFAULT_WINDOW_MILLIS));
+        batchDispatcher.setAnchorRegistry(anchors);
+        this.gpsIngestion = new GpsIngestionService(graph, fleet,
+            Long.getLong("hers.gps.tickMs", GpsIngestionService.DEFAULT_TICK_MILLIS));
+        if (!Boolean.getBoolean("hers.gps.nearestNodeOnly")) {
+            gpsIngestion.setMapMatcher(new HmmMapMatcher(graph));
+        }
+        gpsIngestion.setAnchorRegistry(anchors);
+        gpsIngestion.start();
+        this.coverage = new CoverageAnalyzer(graph, fleet,
+            Double.parseDouble(System.getProperty("hers.coverage.targetSeconds",
+                String.valueOf(CoverageAnalyzer.DEFAULT_TARGET_SECONDS))), anchors);
+        this.traffic = new TrafficSimulator(graph);
+        traffic.setVerbose(false);
+        this.activeRoutes = new ActiveRouteRegistry(graph, fleet);
+        traffic.addListener(activeRoutes);
         this.gson = new Gson();
         
         System.out.println("✅ Backend initialized");
@@ -55,22 +145,24 @@ public class WebServer {
     }
     
     private void setupRoutes() {
-        // Health check
+        // Health check (graph stats are fixed; re-serialized only when hospitals or fleet size change)
         get("/api/status", (req, res) -> {
-            res.type("application/json");
-            Map<String, Object> status = new HashMap<>();
-            status.put("status", "online");
-            status.put("nodes", graph.getNodeCount());
-            status.put("edges", graph.getEdgeCount());
-            status.put("hospitals", hospitals.getHospitalCount());
-            status.put("ambulances", fleet.getAllAmbulances().size());
-            return gson.toJson(status);
+            int ambulanceCount = fleet.getAllAmbulances().size();
+            return statusResponse.serve(hospitals.getVersion() + ":" + ambulanceCount, out -> {
+                out.beginObject();
+                out.name("status").value("online");
+                out.name("nodes").value(graph.getNodeCount());
+                out.name("edges").value(graph.getEdgeCount());
+                out.name("hospitals").value(hospitals.getHospitalCount());
+                out.name("ambulances").value(ambulanceCount);
+                out.endObject();
+            }, req, res);
         });
         
-        // Calculate route
+        // Calculate route (?format=polyline&precision=N&zoom=Z for compact geometry, see PathFormat)
         post("/api/route", (req, res) -> {
-            res.type("application/json");
-            Map<String, Double> body = gson.fromJson(req.body(), Map.class);
+            Map<String, Double> body = StreamingJson.readNumbers(req);
+            PathFormat format = PathFormat.from(req);
             
             double fromLat = body.get("fromLat");
             double fromLon = body.get("fromLon");
@@ -80,260 +172,975 @@ public class WebServer {
             int source = graph.findNearestNode(fromLat, fromLon);
             int dest = graph.findNearestNode(toLat, toLon);
             
-            PathResult result = aStar.findPath(source, dest);
+            // Optional departure time (seconds since midnight) enables time-of-day profiles
+            PathResult result = body.containsKey("departureTime")
+                ? timeDependentAStar.findPath(source, dest, body.get("departureTime"))
+                : aStar.findPath(source, dest);
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", result.isPathFound());
-            response.put("distance", result.totalDistance);
-            response.put("time", result.totalTime);
-            response.put("nodesExpanded", result.nodesExpanded);
-            response.put("computeTime", result.computeTimeMs);
-            
-            // Convert path to coordinates
-            List<Map<String, Double>> pathCoords = new ArrayList<>();
-            for (int nodeId : result.path) {
-                Node node = graph.getNode(nodeId);
-                if (node != null) {
-                    Map<String, Double> coord = new HashMap<>();
-                    coord.put("lat", node.lat);
-                    coord.put("lon", node.lon);
-                    pathCoords.add(coord);
-                }
+            return StreamingJson.write(res, out -> {
+                out.beginObject();
+                out.name("success").value(result.isPathFound());
+                out.name("distance").value(result.totalDistance);
+                out.name("time").value(result.totalTime);
+                out.name("nodesExpanded").value(result.nodesExpanded);
+                out.name("computeTime").value(result.computeTimeMs);
+                out.name("path");
+                format.write(out, graph, result.path);
+                out.endObject();
+            });
+        });
+        
+        // Get all hospitals (serialized once per hospital data version)
+        get("/api/hospitals", (req, res) -> hospitalsResponse.serve(hospitals.getVersion(), out -> {
+            out.beginArray();
+            for (Hospital h : hospitals.getAllHospitals()) {
+                out.beginObject();
+                out.name("name").value(h.name);
+                out.name("type").value(h.type);
+                out.name("lat").value(h.lat);
+                out.name("lon").value(h.lon);
+                out.name("hasEmergency").value(h.hasEmergency);
+                out.name("hasTrauma").value(h.hasTraumaCenter);
+                out.endObject();
             }
-            response.put("path", pathCoords);
+            out.endArray();
+        }, req, res));
+        
+        // Find nearest hospitals
+        post("/api/hospitals/nearest", (req, res) -> {
+            Map<String, Double> body = StreamingJson.readNumbers(req);
             
-            return gson.toJson(response);
+            double lat = body.get("lat");
+            double lon = body.get("lon");
+            int count = body.containsKey("count") ? body.get("count").intValue() : 5;
+            
+            // Optional radius (meters) limits the search to hospitals within that straight-line distance
+            List<Hospital> nearest = body.containsKey("radius")
+                ? hospitals.findWithinRadius(lat, lon, body.get("radius"))
+                : hospitals.findNearestHospitals(lat, lon, count);
+            if (nearest.size() > count) {
+                nearest = nearest.subList(0, count);
+            }
+            int source = graph.findNearestNode(lat, lon);
+            List<PathResult> paths = new ArrayList<>(nearest.size());
+            for (Hospital h : nearest) {
+                paths.add(aStar.findPath(source, anchors.nodeOf(h)));
+            }
+            
+            List<Hospital> found = nearest;
+            return StreamingJson.write(res, out -> {
+                out.beginArray();
+                for (int i = 0; i < found.size(); i++) {
+                    Hospital h = found.get(i);
+                    PathResult path = paths.get(i);
+                    out.beginObject();
+                    out.name("name").value(h.name);
+                    out.name("type").value(h.type);
+                    out.name("lat").value(h.lat);
+                    out.name("lon").value(h.lon);
+                    out.name("distance").value(path.totalDistance);
+                    out.name("eta").value(path.totalTime / 60.0);
+                    out.name("hasEmergency").value(h.hasEmergency);
+                    out.name("hasTrauma").value(h.hasTraumaCenter);
+                    out.endObject();
+                }
+                out.endArray();
+            });
         });
         
-        // Get all hospitals
-        get("/api/hospitals", (req, res) -> {
+        // Live capacity per hospital and department (available/total, -1 = not reported)
+        get("/api/hospitals/capacity", (req, res) -> {
             res.type("application/json");
+            HospitalCapacityRegistry.Snapshot snapshot = hospitalCapacity.snapshot();
             List<Map<String, Object>> hospitalList = new ArrayList<>();
-            
-            for (Hospital h : hospitals.getAllHospitals()) {
+            for (Hospital h : hospitalCapacity.getHospitals()) {
+                Map<String, Object> departments = new HashMap<>();
+                for (HospitalCapacityRegistry.Department department : HospitalCapacityRegistry.Department.values()) {
+                    Map<String, Object> counts = new HashMap<>();
+                    counts.put("available", snapshot.getAvailable(h, department));
+                    counts.put("total", snapshot.getTotal(h, department));
+                    departments.put(department.toString(), counts);
+                }
                 Map<String, Object> hMap = new HashMap<>();
                 hMap.put("name", h.name);
-                hMap.put("type", h.type);
-                hMap.put("lat", h.lat);
-                hMap.put("lon", h.lon);
-                hMap.put("hasEmergency", h.hasEmergency);
-                hMap.put("hasTrauma", h.hasTraumaCenter);
+                hMap.put("departments", departments);
                 hospitalList.add(hMap);
             }
             
-            return gson.toJson(hospitalList);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("activeReservations", hospitalCapacity.getActiveReservationCount());
+            response.put("hospitals", hospitalList);
+            return gson.toJson(response);
         });
         
-        // Find nearest hospitals
-        post("/api/hospitals/nearest", (req, res) -> {
+        // Capacity report from a hospital: {hospital, department, total, available}
+        post("/api/hospitals/capacity", (req, res) -> {
             res.type("application/json");
-            Map<String, Object> body = gson.fromJson(req.body(), Map.class);
-            
-            double lat = (double) body.get("lat");
-            double lon = (double) body.get("lon");
-            int count = body.containsKey("count") ? 
-                ((Double) body.get("count")).intValue() : 5;
-            
-            List<Hospital> nearest = hospitals.findNearestHospitals(lat, lon, count);
-            int source = graph.findNearestNode(lat, lon);
+            JsonObject body = gson.fromJson(req.body(), JsonObject.class);
+            Hospital hospital = hospitalCapacity.findHospital(body.get("hospital").getAsString());
+            if (hospital == null) {
+                return notFound(res, "Unknown hospital " + body.get("hospital").getAsString());
+            }
+            HospitalCapacityRegistry.Department department = HospitalCapacityRegistry.Department.valueOf(
+                body.get("department").getAsString().toUpperCase());
+            hospitalCapacity.update(hospital, department, body.get("total").getAsInt(), body.get("available").getAsInt());
             
-            List<Map<String, Object>> results = new ArrayList<>();
-            for (Hospital h : nearest) {
-                int dest = graph.findNearestNode(h.lat, h.lon);
-                PathResult path = aStar.findPath(source, dest);
-                
-                Map<String, Object> hMap = new HashMap<>();
-                hMap.put("name", h.name);
-                hMap.put("type", h.type);
-                hMap.put("lat", h.lat);
-                hMap.put("lon", h.lon);
-                hMap.put("distance", path.totalDistance);
-                hMap.put("eta", path.totalTime / 60.0);
-                hMap.put("hasEmergency", h.hasEmergency);
-                hMap.put("hasTrauma", h.hasTraumaCenter);
-                results.add(hMap);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("hospital", hospital.name);
+            response.put("department", department.toString());
+            return gson.toJson(response);
+        });
+        
+        // Hold a place for a patient: {hospital, department (default EMERGENCY), patientRef}
+        post("/api/hospitals/capacity/reserve", (req, res) -> {
+            res.type("application/json");
+            JsonObject body = gson.fromJson(req.body(), JsonObject.class);
+            Hospital hospital = hospitalCapacity.findHospital(body.get("hospital").getAsString());
+            if (hospital == null) {
+                return notFound(res, "Unknown hospital " + body.get("hospital").getAsString());
             }
+            HospitalCapacityRegistry.Department department = body.has("department")
+                ? HospitalCapacityRegistry.Department.valueOf(body.get("department").getAsString().toUpperCase())
+                : HospitalCapacityRegistry.Department.EMERGENCY;
+            String reservationId = hospitalCapacity.reserve(hospital, department,
+                body.has("patientRef") ? body.get("patientRef").getAsString() : null);
             
-            return gson.toJson(results);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", reservationId != null);
+            response.put("hospital", hospital.name);
+            response.put("department", department.toString());
+            if (reservationId != null) {
+                response.put("reservationId", reservationId);
+            } else {
+                response.put("error", department + " is full");
+                res.status(409);
+            }
+            return gson.toJson(response);
+        });
+        
+        // Give a place back on discharge: {reservationId}
+        post("/api/hospitals/capacity/release", (req, res) -> {
+            res.type("application/json");
+            JsonObject body = gson.fromJson(req.body(), JsonObject.class);
+            String reservationId = body.get("reservationId").getAsString();
+            if (!hospitalCapacity.release(reservationId)) {
+                return notFound(res, "Unknown reservation " + reservationId);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("reservationId", reservationId);
+            return gson.toJson(response);
         });
         
         // Get all ambulances
-        get("/api/ambulances", (req, res) -> {
+        get("/api/ambulances", (req, res) -> StreamingJson.write(res, out -> {
+            out.beginArray();
+            for (Ambulance a : fleet.getAllAmbulances()) {
+                out.beginObject();
+                out.name("id").value(a.id);
+                out.name("station").value(a.stationName);
+                Ambulance.Position position = a.getPosition();
+                out.name("lat").value(position.lat);
+                out.name("lon").value(position.lon);
+                out.name("type").value(a.type.toString());
+                out.name("status").value(a.getStatus().toString());
+                out.name("available").value(a.isAvailable());
+                out.endObject();
+            }
+            out.endArray();
+        }));
+        
+        // GPS pings from vehicles: NDJSON, or binary with Content-Type application/octet-stream
+        post("/api/gps", (req, res) -> {
             res.type("application/json");
-            List<Map<String, Object>> ambulanceList = new ArrayList<>();
+            // Compare the media type only: "application/octet-stream; charset=binary" is binary too
+            String contentType = req.contentType();
+            boolean binary = contentType != null
+                && "application/octet-stream".equalsIgnoreCase(contentType.split(";", 2)[0].trim());
+            int accepted = binary
+                ? gpsIngestion.ingestBinary(req.raw().getInputStream())
+                : gpsIngestion.ingestNdjson(new InputStreamReader(req.raw().getInputStream(), StandardCharsets.UTF_8));
             
-            for (Ambulance a : fleet.getAllAmbulances()) {
-                Map<String, Object> aMap = new HashMap<>();
-                aMap.put("id", a.id);
-                aMap.put("station", a.stationName);
-                aMap.put("lat", a.currentLat);
-                aMap.put("lon", a.currentLon);
-                aMap.put("type", a.type.toString());
-                aMap.put("status", a.status.toString());
-                aMap.put("available", a.isAvailable());
-                ambulanceList.add(aMap);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("accepted", accepted);
+            return gson.toJson(response);
+        });
+        
+        get("/api/gps/stats", (req, res) -> {
+            res.type("application/json");
+            return gson.toJson(gpsIngestion.getStats());
+        });
+        
+        // Share of demand reachable within the target time, with optional move-up plan (?moves=N)
+        get("/api/coverage", (req, res) -> {
+            res.type("application/json");
+            int moves = req.queryParams("moves") != null ? Integer.parseInt(req.queryParams("moves")) : 3;
+            
+            CoverageAnalyzer.CoverageSnapshot snapshot = coverage.getCoverage();
+            List<Map<String, Object>> relocations = new ArrayList<>();
+            for (CoverageAnalyzer.Relocation move : coverage.recommendRelocations(moves)) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("ambulanceId", move.ambulance.id);
+                entry.put("fromStation", move.ambulance.stationName);
+                entry.put("toSite", move.toSite);
+                entry.put("lat", move.lat);
+                entry.put("lon", move.lon);
+                entry.put("coverageGain", move.coverageGain);
+                entry.put("coverageAfter", move.coverageAfter);
+                relocations.add(entry);
             }
             
-            return gson.toJson(ambulanceList);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("targetMinutes", snapshot.targetSeconds / 60.0);
+            response.put("coverage", snapshot.coverage);
+            response.put("coveredDemand", snapshot.coveredDemand);
+            response.put("totalDemand", snapshot.totalDemand);
+            response.put("availableUnits", snapshot.availableUnits);
+            response.put("updateMillis", snapshot.updateMillis);
+            response.put("relocations", relocations);
+            return gson.toJson(response);
         });
         
-        // Dispatch ambulance
+        // Dispatch ambulance; if none is free the call is queued and served when a unit frees up
         post("/api/dispatch", (req, res) -> {
+            Emergency emergency = readEmergency(StreamingJson.reader(req), null);
+            
+            // Pick by road-network ETA and claim atomically so concurrent
+            // requests never get the same unit
+            AmbulanceAssignmentResult assignment = dispatcher.dispatch(
+                emergency.lat, emergency.lon, emergency.requiredType, emergency.id);
+            
+            if (assignment == null) {
+                pendingQueue.enqueue(emergency).thenAccept(queuedAssignment -> {
+                    if (queuedAssignment != null) {
+                        activeRoutes.register(emergency.id, queuedAssignment.ambulance, queuedAssignment.pathResult);
+                    }
+                });
+                int pending = pendingQueue.size();
+                return StreamingJson.write(res, out -> {
+                    out.beginObject();
+                    out.name("success").value(true);
+                    out.name("queued").value(true);
+                    out.name("emergencyId").value(emergency.id);
+                    out.name("severity").value(emergency.severity.toString());
+                    out.name("pending").value(pending);
+                    out.name("message").value("No ambulances available, emergency queued");
+                    out.endObject();
+                });
+            }
+            
+            activeRoutes.register(emergency.id, assignment.ambulance, assignment.pathResult);
+            return writeAssignment(res, emergency.id, assignment, PathFormat.from(req));
+        });
+        
+        // Queued emergencies, most urgent first
+        get("/api/dispatch/pending", (req, res) -> {
             res.type("application/json");
-            Map<String, Object> body = gson.fromJson(req.body(), Map.class);
+            long now = System.currentTimeMillis();
+            List<Map<String, Object>> pending = new ArrayList<>();
+            for (Emergency emergency : pendingQueue.getPending()) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("emergencyId", emergency.id);
+                entry.put("severity", emergency.severity.toString());
+                entry.put("requiredType", emergency.requiredType.toString());
+                entry.put("lat", emergency.lat);
+                entry.put("lon", emergency.lon);
+                entry.put("waitingSeconds", emergency.getWaitingSeconds(now));
+                pending.add(entry);
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("count", pending.size());
+            response.put("pending", pending);
+            return gson.toJson(response);
+        });
+        
+        // Outcome of a queued emergency: still pending, or its assignment
+        get("/api/dispatch/pending/:id", (req, res) -> {
+            String emergencyId = req.params(":id");
+            if (pendingQueue.isPending(emergencyId)) {
+                return StreamingJson.write(res, out -> {
+                    out.beginObject();
+                    out.name("success").value(true);
+                    out.name("queued").value(true);
+                    out.name("emergencyId").value(emergencyId);
+                    out.endObject();
+                });
+            }
+            AmbulanceAssignmentResult assignment = pendingQueue.getAssignment(emergencyId);
+            if (assignment == null) {
+                return notFound(res, "Unknown emergency " + emergencyId);
+            }
+            return writeAssignment(res, emergencyId, assignment, PathFormat.from(req));
+        });
+        
+        // Batch dispatch: emergencies arriving within the batch window are assigned together
+        post("/api/dispatch/batch", (req, res) -> {
+            PathFormat format = PathFormat.from(req);
+            List<Emergency> emergencies = new ArrayList<>();
+            StreamingJson.readObject(StreamingJson.reader(req), (name, in) -> {
+                if (!name.equals("emergencies")) {
+                    return false;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    emergencies.add(readEmergency(in, null));
+                }
+                in.endArray();
+                return true;
+            });
+            
+            List<CompletableFuture<AmbulanceAssignmentResult>> futures = new ArrayList<>();
+            for (Emergency emergency : emergencies) {
+                futures.add(batchDispatcher.submit(emergency));
+            }
+            
+            List<AmbulanceAssignmentResult> results = new ArrayList<>();
+            int assigned = 0;
+            for (int i = 0; i < emergencies.size(); i++) {
+                AmbulanceAssignmentResult assignment = futures.get(i).get(30, TimeUnit.SECONDS);
+                if (assignment != null) {
+                    assigned++;
+                    activeRoutes.register(emergencies.get(i).id, assignment.ambulance, assignment.pathResult);
+                }
+                results.add(assignment);
+            }
+            
+            int assignedCount = assigned;
+            return StreamingJson.write(res, out -> {
+                out.beginObject();
+                out.name("success").value(true);
+                out.name("assigned").value(assignedCount);
+                out.name("unassigned").value(emergencies.size() - assignedCount);
+                out.name("assignments").beginArray();
+                for (int i = 0; i < emergencies.size(); i++) {
+                    Emergency emergency = emergencies.get(i);
+                    AmbulanceAssignmentResult assignment = results.get(i);
+                    out.beginObject();
+                    out.name("emergencyId").value(emergency.id);
+                    out.name("severity").value(emergency.severity.toString());
+                    out.name("requiredType").value(emergency.requiredType.toString());
+                    out.name("assigned").value(assignment != null);
+                    if (assignment != null) {
+                        out.name("ambulanceId").value(assignment.ambulance.id);
+                        out.name("ambulanceType").value(assignment.ambulance.type.toString());
+                        out.name("station").value(assignment.ambulance.stationName);
+                        out.name("distance").value(assignment.pathResult.totalDistance);
+                        out.name("eta").value(assignment.pathResult.totalTime / 60.0);
+                        out.name("path");
+                        format.write(out, graph, assignment.pathResult.path);
+                    }
+                    out.endObject();
+                }
+                out.endArray();
+                out.endObject();
+            });
+        });
+        
+        // Ambulance and hospital chosen together by total time to definitive care.
+        // Body as /api/dispatch plus optional count (default 5) and dispatch (claim the best unit).
+        post("/api/trip/plan", (req, res) -> {
+            PathFormat format = PathFormat.from(req);
+            int[] count = {5};
+            boolean[] dispatchFlag = {false};
+            Emergency emergency = readEmergency(StreamingJson.reader(req), (name, in) -> {
+                switch (name) {
+                    case "count":
+                        count[0] = in.nextInt();
+                        return true;
+                    case "dispatch":
+                        dispatchFlag[0] = in.nextBoolean();
+                        return true;
+                    default:
+                        return false;
+                }
+            });
+            boolean dispatch = dispatchFlag[0];
+            
+            List<TripPlanner.TripOption> options;
+            if (dispatch) {
+                TripPlanner.TripOption claimed = tripPlanner.planAndDispatch(emergency, count[0]);
+                options = claimed == null ? Collections.emptyList() : Collections.singletonList(claimed);
+                if (claimed != null) {
+                    activeRoutes.register(emergency.id, claimed.ambulance.ambulance, claimed.ambulance.pathResult);
+                }
+            } else {
+                options = tripPlanner.plan(emergency, count[0]);
+            }
             
-            double lat = (double) body.get("lat");
-            double lon = (double) body.get("lon");
+            return StreamingJson.write(res, out -> {
+                out.beginObject();
+                out.name("success").value(!options.isEmpty());
+                out.name("emergencyId").value(emergency.id);
+                out.name("requiredType").value(emergency.requiredType.toString());
+                out.name("dispatched").value(dispatch && !options.isEmpty());
+                out.name("trips").beginArray();
+                for (TripPlanner.TripOption option : options) {
+                    out.beginObject();
+                    out.name("ambulanceId").value(option.ambulance.ambulance.id);
+                    out.name("station").value(option.ambulance.ambulance.stationName);
+                    out.name("ambulanceType").value(option.ambulance.ambulance.type.toString());
+                    out.name("toSceneMinutes").value(option.ambulance.pathResult.totalTime / 60.0);
+                    out.name("hospital").value(option.hospital.hospital.name);
+                    out.name("hospitalLat").value(option.hospital.hospital.lat);
+                    out.name("hospitalLon").value(option.hospital.hospital.lon);
+                    out.name("suitability").value(option.hospital.suitability);
+                    out.name("toHospitalMinutes").value(option.hospital.path.totalTime / 60.0);
+                    out.name("totalMinutes").value(option.totalSeconds / 60.0);
+                    out.name("cost").value(option.cost / 60.0);
+                    if (option.bedReservation != null) {
+                        out.name("bedReservation").value(option.bedReservation);
+                    }
+                    out.endObject();
+                }
+                out.endArray();
+                if (options.isEmpty()) {
+                    out.name("error").value("No reachable ambulance and hospital");
+                } else {
+                    // Full route for the best trip only
+                    out.name("ambulancePath");
+                    format.write(out, graph, options.get(0).ambulance.pathResult.path);
+                    out.name("hospitalPath");
+                    format.write(out, graph, options.get(0).hospital.path.path);
+                }
+                out.endObject();
+            });
+        });
+        
+        // Traffic changes: {type: block|unblock|congestion|clear, fromNode, toNode, multiplier}
+        // or {changes: [...]}; active routes crossing a changed road get new ETAs or paths
+        post("/api/traffic", (req, res) -> {
+            res.type("application/json");
+            JsonObject body = gson.fromJson(req.body(), JsonObject.class);
+            List<JsonObject> changes = new ArrayList<>();
+            if (body.has("changes")) {
+                for (com.google.gson.JsonElement change : body.getAsJsonArray("changes")) {
+                    changes.add(change.getAsJsonObject());
+                }
+            } else {
+                changes.add(body);
+            }
             
-            Ambulance nearest = fleet.findNearestAvailable(lat, lon);
+            long firstSequence = activeRoutes.getLatestSequence();
+            int applied = 0;
+            synchronized (traffic) {
+                for (JsonObject change : changes) {
+                    int fromNode = change.get("fromNode").getAsInt();
+                    int toNode = change.get("toNode").getAsInt();
+                    if (graph.findEdge(fromNode, toNode) == null) {
+                        continue;
+                    }
+                    TrafficListener.ChangeType type = TrafficListener.ChangeType.valueOf(
+                        change.get("type").getAsString().toUpperCase());
+                    switch (type) {
+                        case BLOCK:
+                            traffic.blockRoad(fromNode, toNode,
+                                change.has("reason") ? change.get("reason").getAsString() : "Reported");
+                            break;
+                        case UNBLOCK:
+                            traffic.unblockRoad(fromNode, toNode);
+                            break;
+                        case CONGESTION:
+                            traffic.applyTraffic(fromNode, toNode, change.get("multiplier").getAsDouble(),
+                                change.has("severity") ? change.get("severity").getAsString() : "Reported");
+                            break;
+                        default:
+                            traffic.clearTraffic(fromNode, toNode);
+                    }
+                    applied++;
+                }
+            }
             
-            if (nearest == null) {
-                Map<String, Object> error = new HashMap<>();
-                error.put("success", false);
-                error.put("error", "No ambulances available");
-                return gson.toJson(error);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("applied", applied);
+            response.put("ignored", changes.size() - applied);
+            response.put("routeUpdates", activeRoutes.getLatestSequence() - firstSequence);
+            return gson.toJson(response);
+        });
+        
+        // Routes currently being driven, with live ETA
+        get("/api/routes/active", (req, res) -> {
+            res.type("application/json");
+            List<Map<String, Object>> routes = new ArrayList<>();
+            for (ActiveRouteRegistry.RouteStatus route : activeRoutes.getActiveRoutes()) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("routeId", route.routeId);
+                entry.put("ambulanceId", route.ambulanceId);
+                entry.put("eta", route.stranded ? null : route.etaSeconds / 60.0);
+                entry.put("stranded", route.stranded);
+                entry.put("reroutes", route.reroutes);
+                entry.put("startedAt", route.startedAt);
+                routes.add(entry);
             }
             
-            int ambNode = graph.findNearestNode(nearest.currentLat, nearest.currentLon);
-            int emergencyNode = graph.findNearestNode(lat, lon);
-            PathResult path = aStar.findPath(ambNode, emergencyNode);
-            
-            nearest.dispatch("WEB-EMG-" + System.currentTimeMillis());
-            
-            // Convert path to coordinates
-            List<Map<String, Double>> pathCoords = new ArrayList<>();
-            for (int nodeId : path.path) {
-                Node node = graph.getNode(nodeId);
-                if (node != null) {
-                    Map<String, Double> coord = new HashMap<>();
-                    coord.put("lat", node.lat);
-                    coord.put("lon", node.lon);
-                    pathCoords.add(coord);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("count", routes.size());
+            response.put("latestUpdate", activeRoutes.getLatestSequence());
+            response.put("routes", routes);
+            return gson.toJson(response);
+        });
+        
+        // Long poll for ETA changes and reroutes: ?since=<last sequence seen>&waitMs=<max wait, default 25000>
+        get("/api/routes/updates", (req, res) -> {
+            res.type("application/json");
+            long since = req.queryParams("since") != null ? Long.parseLong(req.queryParams("since")) : 0;
+            long waitMillis = req.queryParams("waitMs") != null
+                ? Math.min(60_000, Long.parseLong(req.queryParams("waitMs"))) : 25_000;
+            PathFormat format = PathFormat.from(req);
+            
+            List<Map<String, Object>> updates = new ArrayList<>();
+            long latest = since;
+            for (ActiveRouteRegistry.RouteUpdate update : activeRoutes.getUpdates(since, waitMillis)) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("sequence", update.sequence);
+                entry.put("routeId", update.routeId);
+                entry.put("ambulanceId", update.ambulanceId);
+                entry.put("reason", update.reason.toString());
+                entry.put("eta", Double.isInfinite(update.etaSeconds) ? null : update.etaSeconds / 60.0);
+                entry.put("previousEta", Double.isInfinite(update.previousEtaSeconds)
+                    ? null : update.previousEtaSeconds / 60.0);
+                entry.put("timestamp", update.timestamp);
+                if (update.path != null) {
+                    entry.put("path", format.toJson(graph, update.path));
                 }
+                updates.add(entry);
+                latest = update.sequence;
             }
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("ambulanceId", nearest.id);
-            response.put("station", nearest.stationName);
-            response.put("distance", path.totalDistance);
-            response.put("eta", path.totalTime / 60.0);
-            response.put("path", pathCoords);
+            response.put("latest", latest);
+            response.put("updates", updates);
+            return gson.toJson(response);
+        });
+        
+        // Stop tracking a route (unit arrived or call closed)
+        post("/api/routes/:id/complete", (req, res) -> {
+            res.type("application/json");
+            boolean completed = activeRoutes.complete(req.params(":id"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", completed);
+            if (!completed) {
+                response.put("error", "Unknown route " + req.params(":id"));
+                res.status(404);
+            }
+            return gson.toJson(response);
+        });
+        
+        // Mass-casualty incident: spread patients over hospitals by suitability, network ETA and free ER places.
+        // Body: {lat, lon, patients: [{severity, emergencyType?, age?, name?, notes?}], reserve?, id?}
+        post("/api/incident/distribute", (req, res) -> {
+            res.type("application/json");
+            double[] at = {Double.NaN, Double.NaN};
+            boolean[] reserveFlag = {false};
+            String[] id = {null};
+            List<Patient> patients = new ArrayList<>();
+            StreamingJson.readObject(StreamingJson.reader(req), (name, in) -> {
+                switch (name) {
+                    case "lat":
+                        at[0] = in.nextDouble();
+                        return true;
+                    case "lon":
+                        at[1] = in.nextDouble();
+                        return true;
+                    case "reserve":
+                        reserveFlag[0] = in.nextBoolean();
+                        return true;
+                    case "id":
+                        id[0] = in.nextString();
+                        return true;
+                    case "patients":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            patients.add(readPatient(in));
+                        }
+                        in.endArray();
+                        return true;
+                    default:
+                        return false;
+                }
+            });
+            double lat = requireCoordinate(at[0], "lat");
+            double lon = requireCoordinate(at[1], "lon");
+            boolean reserve = reserveFlag[0];
+            String incidentId = id[0] != null ? id[0] : nextEmergencyId();
+            
+            MassCasualtyDistributor.Distribution distribution =
+                massCasualty.distribute(patients, lat, lon, reserve, incidentId);
+            System.out.println(String.format("🚑 Incident %s: %d/%d patients placed in %.1f ms",
+                incidentId, distribution.assignments.size(), patients.size(), distribution.solveMillis));
+            
+            List<Map<String, Object>> assignments = new ArrayList<>();
+            Map<String, Integer> perHospital = new LinkedHashMap<>();
+            for (MassCasualtyDistributor.Assignment assignment : distribution.assignments) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("patientIndex", assignment.patientIndex);
+                entry.put("name", assignment.patient.name);
+                entry.put("severity", assignment.patient.severity.toString());
+                entry.put("emergencyType", assignment.patient.emergencyType.toString());
+                entry.put("hospital", assignment.hospital.name);
+                entry.put("hospitalLat", assignment.hospital.lat);
+                entry.put("hospitalLon", assignment.hospital.lon);
+                entry.put("distance", assignment.distanceMeters);
+                entry.put("eta", assignment.etaMinutes);
+                entry.put("score", assignment.score);
+                if (assignment.reservationId != null) {
+                    entry.put("reservationId", assignment.reservationId);
+                }
+                assignments.add(entry);
+                perHospital.merge(assignment.hospital.name, 1, Integer::sum);
+            }
             
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("incidentId", incidentId);
+            response.put("assigned", distribution.assignments.size());
+            response.put("unassigned", distribution.unassigned);
+            response.put("perHospital", perHospital);
+            response.put("reachableHospitals", distribution.reachableHospitals);
+            response.put("rounds", distribution.rounds);
+            response.put("solveMs", distribution.solveMillis);
+            response.put("assignments", assignments);
             return gson.toJson(response);
         });
         
         // ⭐ NEW ENDPOINT: Patient Assessment & Hospital Matching
         post("/api/patient/assess", (req, res) -> {
-            res.type("application/json");
-            
+            Patient patient;
+            double lat;
+            double lon;
+            boolean straightLine;
+            List<HospitalRecommendation> recommendations;
+            HospitalRecommendation reserved = null;
+            String reservationId = null;
             try {
                 // Parse request
-                JsonObject requestBody = gson.fromJson(req.body(), JsonObject.class);
-                JsonObject emergencyLoc = requestBody.getAsJsonObject("emergencyLocation");
-                JsonObject patientData = requestBody.getAsJsonObject("patient");
-                
-                double lat = emergencyLoc.get("lat").getAsDouble();
-                double lon = emergencyLoc.get("lon").getAsDouble();
-                
-                // Create Patient object
-                String name = patientData.get("name").getAsString();
-                int age = patientData.get("age").getAsInt();
-                String emergencyTypeStr = patientData.get("emergencyType").getAsString().toUpperCase();
-                String severityStr = patientData.get("severity").getAsString().toUpperCase();
-                String notes = patientData.has("notes") ? patientData.get("notes").getAsString() : "";
-                
-                Patient.EmergencyType emergencyType = Patient.EmergencyType.valueOf(emergencyTypeStr);
-                Patient.SeverityLevel severity = Patient.SeverityLevel.valueOf(severityStr);
-                
-                Patient patient = new Patient(name, age, emergencyType, severity, notes);
+                double[] at = {Double.NaN, Double.NaN};
+                Patient[] patientData = {null};
+                String[] mode = {null};
+                boolean[] reserve = {false};
+                StreamingJson.readObject(StreamingJson.reader(req), (name, in) -> {
+                    switch (name) {
+                        case "emergencyLocation":
+                            StreamingJson.readObject(in, (field, value) -> {
+                                if (field.equals("lat")) {
+                                    at[0] = value.nextDouble();
+                                } else if (field.equals("lon")) {
+                                    at[1] = value.nextDouble();
+                                } else {
+                                    return false;
+                                }
+                                return true;
+                            });
+                            return true;
+                        case "patient":
+                            patientData[0] = readPatient(in);
+                            return true;
+                        case "mode":
+                            mode[0] = in.nextString();
+                            return true;
+                        case "reserve":
+                            reserve[0] = in.nextBoolean();
+                            return true;
+                        default:
+                            return false;
+                    }
+                });
+                if (patientData[0] == null) {
+                    throw new IllegalArgumentException("Missing patient");
+                }
+                patient = patientData[0];
+                lat = requireCoordinate(at[0], "emergencyLocation.lat");
+                lon = requireCoordinate(at[1], "emergencyLocation.lon");
                 
                 System.out.println("\n=== PATIENT ASSESSMENT REQUEST ===");
                 System.out.println(patient.getDetailedInfo());
                 System.out.println(String.format("Emergency Location: (%.4f, %.4f)", lat, lon));
                 
-                // Get hospital recommendations
-                List<HospitalRecommendation> recommendations = HospitalMatcher.findBestHospitals(
-                    patient, lat, lon, hospitals.getAllHospitals(), 5
-                );
+                // Get hospital recommendations: road-network ETAs unless "mode": "straightLine"
+                straightLine = "straightLine".equalsIgnoreCase(mode[0]);
+                // Hospitals with a full ER are left out; "reserve": true holds an ER place at the best one
+                HospitalCapacityRegistry.Snapshot beds = hospitalCapacity.snapshot();
+                recommendations = straightLine
+                    ? HospitalMatcher.findBestHospitals(patient, lat, lon, hospitals.getAllHospitals(), 5, beds)
+                    : hospitalMatcher.findBestHospitals(patient, lat, lon, 5, beds);
+                if (reserve[0]) {
+                    for (HospitalRecommendation rec : recommendations) {
+                        reservationId = hospitalCapacity.reserve(rec.hospital,
+                            HospitalCapacityRegistry.Department.EMERGENCY, patient.name);
+                        if (reservationId != null) {
+                            reserved = rec;
+                            break;
+                        }
+                    }
+                }
                 
                 System.out.println("\n--- Recommendations Generated ---");
                 for (int i = 0; i < recommendations.size(); i++) {
                     System.out.println(String.format("#%d: %s", i + 1, recommendations.get(i)));
                 }
+            } catch (Exception e) {
+                System.err.println("Error in patient assessment: " + e.getMessage());
+                e.printStackTrace();
                 
-                // Build response
-                JsonObject response = new JsonObject();
-                response.addProperty("success", true);
+                res.status(500);
+                return StreamingJson.write(res, out -> {
+                    out.beginObject();
+                    out.name("success").value(false);
+                    out.name("error").value(e.getMessage());
+                    out.endObject();
+                });
+            }
+            
+            System.out.println("\n✓ Assessment complete\n");
+            
+            // Build response
+            HospitalRecommendation reservedHospital = reserved;
+            String reservedId = reservationId;
+            String modeName = straightLine ? "straightLine" : "network";
+            return StreamingJson.write(res, out -> {
+                out.beginObject();
+                out.name("success").value(true);
+                out.name("mode").value(modeName);
+                if (reservedHospital != null) {
+                    out.name("reservationId").value(reservedId);
+                    out.name("reservedHospital").value(reservedHospital.hospital.name);
+                }
                 
-                // Add patient info
-                JsonObject patientInfo = new JsonObject();
-                patientInfo.addProperty("name", patient.name);
-                patientInfo.addProperty("age", patient.age);
-                patientInfo.addProperty("emergencyType", patient.emergencyType.name());
-                patientInfo.addProperty("emergencyTypeDesc", patient.emergencyType.description);
-                patientInfo.addProperty("severity", patient.severity.name());
-                patientInfo.addProperty("severityDesc", patient.severity.description);
-                patientInfo.addProperty("notes", patient.notes);
-                patientInfo.addProperty("requiredAmbulanceType", patient.getRequiredAmbulanceType().name());
-                response.add("patient", patientInfo);
+                // Patient info
+                out.name("patient").beginObject();
+                out.name("name").value(patient.name);
+                out.name("age").value(patient.age);
+                out.name("emergencyType").value(patient.emergencyType.name());
+                out.name("emergencyTypeDesc").value(patient.emergencyType.description);
+                out.name("severity").value(patient.severity.name());
+                out.name("severityDesc").value(patient.severity.description);
+                out.name("notes").value(patient.notes);
+                out.name("requiredAmbulanceType").value(patient.getRequiredAmbulanceType().name());
+                out.endObject();
                 
-                // Add recommendations array
-                com.google.gson.JsonArray recsArray = new com.google.gson.JsonArray();
+                // Recommendations array
+                out.name("recommendations").beginArray();
                 for (HospitalRecommendation rec : recommendations) {
-                    JsonObject recObj = new JsonObject();
+                    out.beginObject();
                     
                     // Hospital details
-                    JsonObject hospitalObj = new JsonObject();
-                    hospitalObj.addProperty("name", rec.hospital.name);
-                    hospitalObj.addProperty("type", rec.hospital.type);
-                    hospitalObj.addProperty("lat", rec.hospital.lat);
-                    hospitalObj.addProperty("lon", rec.hospital.lon);
-                    hospitalObj.addProperty("capacity", rec.hospital.capacity);
-                    hospitalObj.addProperty("hasEmergency", rec.hospital.hasEmergency);
-                    hospitalObj.addProperty("hasTrauma", rec.hospital.hasTraumaCenter);
-                    recObj.add("hospital", hospitalObj);
+                    out.name("hospital").beginObject();
+                    out.name("name").value(rec.hospital.name);
+                    out.name("type").value(rec.hospital.type);
+                    out.name("lat").value(rec.hospital.lat);
+                    out.name("lon").value(rec.hospital.lon);
+                    out.name("capacity").value(rec.hospital.capacity);
+                    out.name("hasEmergency").value(rec.hospital.hasEmergency);
+                    out.name("hasTrauma").value(rec.hospital.hasTraumaCenter);
+                    out.endObject();
                     
                     // Scoring details
-                    recObj.addProperty("distance", rec.distance);
-                    recObj.addProperty("eta", rec.eta);
-                    recObj.addProperty("score", rec.score);
-                    recObj.addProperty("reasoning", rec.reasoning);
-                    
-                    recsArray.add(recObj);
+                    out.name("distance").value(rec.distance);
+                    out.name("eta").value(rec.eta);
+                    out.name("score").value(rec.score);
+                    out.name("reasoning").value(rec.reasoning);
+                    out.endObject();
                 }
-                response.add("recommendations", recsArray);
+                out.endArray();
                 
-                // Add best hospital (first recommendation)
+                // Best hospital (first recommendation)
                 if (!recommendations.isEmpty()) {
                     HospitalRecommendation best = recommendations.get(0);
-                    JsonObject bestHospital = new JsonObject();
-                    bestHospital.addProperty("name", best.hospital.name);
-                    bestHospital.addProperty("type", best.hospital.type);
-                    bestHospital.addProperty("lat", best.hospital.lat);
-                    bestHospital.addProperty("lon", best.hospital.lon);
-                    bestHospital.addProperty("distance", best.distance);
-                    bestHospital.addProperty("eta", best.eta);
-                    bestHospital.addProperty("score", best.score);
-                    bestHospital.addProperty("reasoning", best.reasoning);
-                    response.add("bestHospital", bestHospital);
+                    out.name("bestHospital").beginObject();
+                    out.name("name").value(best.hospital.name);
+                    out.name("type").value(best.hospital.type);
+                    out.name("lat").value(best.hospital.lat);
+                    out.name("lon").value(best.hospital.lon);
+                    out.name("distance").value(best.distance);
+                    out.name("eta").value(best.eta);
+                    out.name("score").value(best.score);
+                    out.name("reasoning").value(best.reasoning);
+                    out.endObject();
                 }
-                
-                System.out.println("\n✓ Assessment complete\n");
-                
-                return gson.toJson(response);
-                
-            } catch (Exception e) {
-                System.err.println("Error in patient assessment: " + e.getMessage());
-                e.printStackTrace();
-                
-                JsonObject error = new JsonObject();
-                error.addProperty("success", false);
-                error.addProperty("error", e.getMessage());
-                res.status(500);
-                return gson.toJson(error);
+                out.endObject();
+            });
+        });
+    }
+    
+    /**
+     * Read an Emergency from {lat, lon, id?, severity?} or {lat, lon, id?, patient: {...}}
+     * @param extra handles caller-specific fields, may be null
+     */
+    private Emergency readEmergency(JsonReader in, StreamingJson.Fields extra) throws IOException {
+        double[] at = {Double.NaN, Double.NaN};
+        String[] id = {null};
+        Patient.SeverityLevel[] severity = {Patient.SeverityLevel.MODERATE};
+        Patient[] patient = {null};
+        StreamingJson.readObject(in, (name, value) -> {
+            switch (name) {
+                case "lat":
+                    at[0] = value.nextDouble();
+                    return true;
+                case "lon":
+                    at[1] = value.nextDouble();
+                    return true;
+                case "id":
+                    id[0] = value.nextString();
+                    return true;
+                case "severity":
+                    severity[0] = Patient.SeverityLevel.valueOf(value.nextString().toUpperCase());
+                    return true;
+                case "patient":
+                    patient[0] = readPatient(value);
+                    return true;
+                default:
+                    return extra != null && extra.read(name, value);
+            }
+        });
+        double lat = requireCoordinate(at[0], "lat");
+        double lon = requireCoordinate(at[1], "lon");
+        String emergencyId = id[0] != null ? id[0] : nextEmergencyId();
+        return patient[0] != null
+            ? new Emergency(emergencyId, lat, lon, patient[0])
+            : new Emergency(emergencyId, lat, lon, severity[0]);
+    }
+    
+    /**
+     * Read a Patient from {severity, name?, age?, emergencyType?, notes?}
+     */
+    private static Patient readPatient(JsonReader in) throws IOException {
+        String[] name = {"Unknown"};
+        int[] age = {0};
+        Patient.EmergencyType[] emergencyType = {Patient.EmergencyType.GENERAL};
+        Patient.SeverityLevel[] severity = {null};
+        String[] notes = {""};
+        StreamingJson.readObject(in, (field, value) -> {
+            switch (field) {
+                case "name":
+                    name[0] = value.nextString();
+                    return true;
+                case "age":
+                    age[0] = value.nextInt();
+                    return true;
+                case "emergencyType":
+                    emergencyType[0] = Patient.EmergencyType.valueOf(value.nextString().toUpperCase());
+                    return true;
+                case "severity":
+                    severity[0] = Patient.SeverityLevel.valueOf(value.nextString().toUpperCase());
+                    return true;
+                case "notes":
+                    notes[0] = value.nextString();
+                    return true;
+                default:
+                    return false;
             }
         });
+        if (severity[0] == null) {
+            throw new IllegalArgumentException("Patient needs a severity");
+        }
+        return new Patient(name[0], age[0], emergencyType[0], severity[0], notes[0]);
+    }
+    
+    private static double requireCoordinate(double value, String field) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+    
+    private String notFound(spark.Response res, String message) throws IOException {
+        res.status(404);
+        return StreamingJson.write(res, out -> {
+            out.beginObject();
+            out.name("success").value(false);
+            out.name("error").value(message);
+            out.endObject();
+        });
+    }
+    
+    /**
+     * Stream the dispatch response for an assigned unit, with route and ETA spread.
+     * With the journal on, it first waits for the unit's dispatch record to reach disk
+     * (one group commit) and reports "durable": false if it did not in time.
+     */
+    private String writeAssignment(spark.Response res, String emergencyId, AmbulanceAssignmentResult assignment,
+                                   PathFormat format) throws IOException, InterruptedException {
+        Ambulance ambulance = assignment.ambulance;
+        PathResult path = assignment.pathResult;
+        EtaEstimate etaEstimate = etaSampler.estimate(path, MonteCarloEtaSampler.DEFAULT_SAMPLES);
+        Boolean durable = null;
+        if (journal != null) {
+            long sequence = journal.getStatusSequence(ambulance, emergencyId);
+            durable = sequence >= 0 && journal.awaitDurable(sequence, 1000);
+            if (!durable) {
+                System.err.println("⚠️ Dispatch of " + ambulance.id + " to " + emergencyId
+                    + " is not on disk yet; it may be lost on a crash");
+            }
+        }
+        
+        Boolean onDisk = durable;
+        return StreamingJson.write(res, out -> {
+            out.beginObject();
+            out.name("success").value(true);
+            out.name("ambulanceId").value(ambulance.id);
+            out.name("emergencyId").value(emergencyId);
+            out.name("station").value(ambulance.stationName);
+            out.name("distance").value(path.totalDistance);
+            out.name("eta").value(path.totalTime / 60.0);
+            if (etaEstimate.isReachable()) {
+                out.name("etaP50").value(etaEstimate.p50 / 60.0);
+                out.name("etaP90").value(etaEstimate.p90 / 60.0);
+            }
+            out.name("path");
+            format.write(out, graph, path.path);
+            if (onDisk != null) {
+                out.name("durable").value(onDisk);
+            }
+            out.endObject();
+        });
+    }
+    
+    /**
+     * Hospitals from the file in hers.hospitals.file (reloaded when it changes), else the built-in Karachi list
+     */
+    private static HospitalDatabase openHospitals() {
+        String file = System.getProperty("hers.hospitals.file", "");
+        if (file.isEmpty()) {
+            return new HospitalDatabase();
+        }
+        try {
+            HospitalDatabase database = new HospitalDatabase(java.nio.file.Paths.get(file));
+            System.out.println("🏥 Loaded " + database.getHospitalCount() + " hospitals from " + file);
+            return database;
+        } catch (IOException e) {
+            System.err.println("⚠️ Hospital file unavailable, using built-in list: " + e.getMessage());
+            return new HospitalDatabase();
+        }
+    }
+    
+    /**
+     * Recover the fleet from its journal and keep journaling it (disabled with -Dhers.journal.dir=)
+     */
+    private static DispatchJournal openJournal(AmbulanceFleet fleet) {
+        String directory = System.getProperty("hers.journal.dir", "journal");
+        if (directory.isEmpty()) {
+            return null;
+        }
+        try {
+            DispatchJournal journal = new DispatchJournal(new File(directory), fleet);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-close"));
+            return journal;
+        } catch (IOException e) {
+            System.err.println("⚠️ Dispatch journal unavailable, running without crash recovery: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private String nextEmergencyId() {
+        return "WEB-EMG-" + System.currentTimeMillis() + "-" + emergencySequence.incrementAndGet();
     }
     
     private void enableCORS() {